@@ -0,0 +1,51 @@
+package io.vertx.fastdfs;
+
+import io.vertx.core.AsyncResult;
+
+/**
+ * The result of a batch operation for one file.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public final class FdfsBatchResult<T> implements AsyncResult<T> {
+	private final FdfsFileId fileId;
+	private final AsyncResult<T> result;
+
+	public FdfsBatchResult(FdfsFileId fileId, AsyncResult<T> result) {
+		this.fileId = fileId;
+		this.result = result;
+	}
+
+	public FdfsFileId fileId() {
+		return fileId;
+	}
+
+	@Override
+	public T result() {
+		return result.result();
+	}
+
+	@Override
+	public Throwable cause() {
+		return result.cause();
+	}
+
+	@Override
+	public boolean succeeded() {
+		return result.succeeded();
+	}
+
+	@Override
+	public boolean failed() {
+		return result.failed();
+	}
+
+	@Override
+	public String toString() {
+		return fileId + (succeeded() ? ": " + result() : ": " + cause());
+	}
+}
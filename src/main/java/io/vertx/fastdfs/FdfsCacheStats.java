@@ -0,0 +1,69 @@
+package io.vertx.fastdfs;
+
+/**
+ * FastDFS client cache statistics.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public final class FdfsCacheStats {
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long size;
+	private long bytes;
+
+	public long getHits() {
+		return hits;
+	}
+
+	public FdfsCacheStats setHits(long hits) {
+		this.hits = hits;
+		return this;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public FdfsCacheStats setMisses(long misses) {
+		this.misses = misses;
+		return this;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public FdfsCacheStats setEvictions(long evictions) {
+		this.evictions = evictions;
+		return this;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public FdfsCacheStats setSize(long size) {
+		this.size = size;
+		return this;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public FdfsCacheStats setBytes(long bytes) {
+		this.bytes = bytes;
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size=" + size + ", bytes="
+				+ bytes;
+	}
+}
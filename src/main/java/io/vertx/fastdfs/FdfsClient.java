@@ -1,6 +1,8 @@
 package io.vertx.fastdfs;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import io.vertx.core.AsyncResult;
@@ -125,6 +127,47 @@ public interface FdfsClient {
 	   * @return the client
 	   */
 	FdfsClient upload(Buffer buffer, String ext, Handler<AsyncResult<FdfsFileId>> handler);
+
+	/**
+	   * upload {@code Buffer} objects. The store storages are got once for the batch and the uploads
+	   * are spread across them, with at most {@code batchConcurrency} uploads in flight.
+	   *
+	   * @param buffers the {@code Buffer} objects
+	   * @param ext the extension
+	   * @param handler the handler that will receive the result of each upload, in the order of the buffers
+	   * @return the client
+	   */
+	FdfsClient uploadAll(List<Buffer> buffers, String ext, Handler<AsyncResult<List<AsyncResult<FdfsFileId>>>> handler);
+
+	/**
+	   * upload a local file in chunks. The first chunk creates an appender file, then the other chunks
+	   * are written after it. They are only written concurrently at their offsets if the storage can
+	   * extend the appender file to its full size with a truncate. Stock FastDFS storages refuse that,
+	   * which is remembered per storage, so the rest of the file is sent to them as one request.
+	   * The file is deleted if the upload fails.
+	   *
+	   * @param fileFullPathName full path to the file
+	   * @param ext the extension
+	   * @param progressHandler the handler that will receive the number of bytes uploaded so far, can be null
+	   * @param handler the handler that will receive the ID of the appender file
+	   * @return the client
+	   */
+	FdfsClient uploadParallel(String fileFullPathName, String ext, Handler<Long> progressHandler, Handler<AsyncResult<FdfsFileId>> handler);
+
+	/**
+	   * upload a local file as an appender file which can be resumed. The progress is saved in a checkpoint
+	   * under the checkpoint directory, and checked against the size of the appender file on the storage.
+	   * Uploading the same unchanged file again goes on from the last confirmed chunk. The upload starts
+	   * over when the file changed, after the previous appender file is deleted, or when the appender file
+	   * is gone. Any other failure keeps the checkpoint. The checkpoint is removed when the upload completes.
+	   *
+	   * @param fileFullPathName full path to the file
+	   * @param ext the extension
+	   * @param progressHandler the handler that will receive the number of bytes uploaded so far, can be null
+	   * @param handler the handler that will receive the ID of the appender file
+	   * @return the client
+	   */
+	FdfsClient uploadResumable(String fileFullPathName, String ext, Handler<Long> progressHandler, Handler<AsyncResult<FdfsFileId>> handler);
 	
 	/**
 	   * upload a {@code ReadStream<Buffer>} object as appender.
@@ -156,6 +199,54 @@ public interface FdfsClient {
 	   * @return the client
 	   */
 	FdfsClient uploadAppender(Buffer buffer, String ext, Handler<AsyncResult<FdfsFileId>> handler);
+
+	/**
+	   * upload a {@code ReadStream<Buffer>} object as a slave file of a master file.
+	   *
+	   * @param stream the {@code ReadStream<Buffer>} object
+	   * @param size the size
+	   * @param masterFileId the master file ID
+	   * @param prefix the prefix appended to the master file name
+	   * @param ext the extension
+	   * @param handler the handler that will receive the result
+	   * @return the client
+	   */
+	FdfsClient uploadSlave(ReadStream<Buffer> stream, long size, FdfsFileId masterFileId, String prefix, String ext, Handler<AsyncResult<FdfsFileId>> handler);
+
+	/**
+	   * upload a local file as a slave file of a master file.
+	   *
+	   * @param fileFullPathName full path to the file
+	   * @param masterFileId the master file ID
+	   * @param prefix the prefix appended to the master file name
+	   * @param ext the extension
+	   * @param handler the handler that will receive the result
+	   * @return the client
+	   */
+	FdfsClient uploadSlave(String fileFullPathName, FdfsFileId masterFileId, String prefix, String ext, Handler<AsyncResult<FdfsFileId>> handler);
+
+	/**
+	   * upload a {@code Buffer} object as a slave file of a master file.
+	   *
+	   * @param buffer the {@code Buffer} object
+	   * @param masterFileId the master file ID
+	   * @param prefix the prefix appended to the master file name
+	   * @param ext the extension
+	   * @param handler the handler that will receive the result
+	   * @return the client
+	   */
+	FdfsClient uploadSlave(Buffer buffer, FdfsFileId masterFileId, String prefix, String ext, Handler<AsyncResult<FdfsFileId>> handler);
+
+	/**
+	   * upload {@code Buffer} objects as slave files of a master file, back to back over one connection.
+	   *
+	   * @param renditions the {@code Buffer} objects by prefix
+	   * @param masterFileId the master file ID
+	   * @param ext the extension
+	   * @param handler the handler that will receive the slave file IDs by prefix
+	   * @return the client
+	   */
+	FdfsClient uploadSlaves(Map<String, Buffer> renditions, FdfsFileId masterFileId, String ext, Handler<AsyncResult<Map<String, FdfsFileId>>> handler);
 	
 	/**
 	   * append a {@code ReadStream<Buffer>} object to a server file.
@@ -222,6 +313,17 @@ public interface FdfsClient {
 	   */
 	FdfsClient modify(Buffer buffer, FdfsFileId fileId, long offset, Handler<AsyncResult<Void>> handler);
 
+	/**
+	   * truncate an appender file, or extend it with zeros. Together with modify, an appender file can be
+	   * rewritten in place.
+	   *
+	   * @param fileId file ID
+	   * @param size the new size
+	   * @param handler the handler that will receive the result
+	   * @return the client
+	   */
+	FdfsClient truncate(FdfsFileId fileId, long size, Handler<AsyncResult<Void>> handler);
+
 	/**
 	   * download a server file to a {@code WriteStream<Buffer>} object.
 	   *
@@ -247,12 +349,51 @@ public interface FdfsClient {
 	FdfsClient download(FdfsFileId fileId, String fileFullPathName, long offset, long bytes, Handler<AsyncResult<Void>> handler);
 	
 	/**
-	   * download a server file to a {@code WriteStream<Buffer>} object.
+	   * download a server file to a local file with positional writes. The local
+	   * file is deleted if the download fails.
 	   *
 	   * @param fileId file ID
+	   * @param fileFullPathName full path to the local file
 	   * @param offset the offset
 	   * @param bytes number of bytes
-	   * @param handler the handler that will receive the {@code Buffer} result
+	   * @param preallocate whether to extend the local file to the body length before writing it
+	   * @param handler the handler that will receive the transfer statistics
+	   * @return the client
+	   */
+	FdfsClient download(FdfsFileId fileId, String fileFullPathName, long offset, long bytes, boolean preallocate, Handler<AsyncResult<FdfsTransferStats>> handler);
+
+	/**
+	   * download a server file to a {@code WriteStream<Buffer>} object as concurrent ranges, which are written to the stream in order.
+	   *
+	   * @param fileId file ID
+	   * @param stream the {@code WriteStream<Buffer>} object
+	   * @param offset the offset
+	   * @param bytes number of bytes, 0 means to the end of the file
+	   * @param handler the handler that will receive the transfer statistics
+	   * @return the client
+	   */
+	FdfsClient downloadParallel(FdfsFileId fileId, WriteStream<Buffer> stream, long offset, long bytes, Handler<AsyncResult<FdfsTransferStats>> handler);
+
+	/**
+	   * download a server file to a local file as concurrent ranges, which are written at their positions.
+	   *
+	   * @param fileId file ID
+	   * @param fileFullPathName full path to the local file
+	   * @param offset the offset
+	   * @param bytes number of bytes, 0 means to the end of the file
+	   * @param handler the handler that will receive the transfer statistics
+	   * @return the client
+	   */
+	FdfsClient downloadParallel(FdfsFileId fileId, String fileFullPathName, long offset, long bytes, Handler<AsyncResult<FdfsTransferStats>> handler);
+
+	/**
+	   * download a server file to a {@code Buffer}. This is the download which is hedged over the
+	   * replicas when a hedge delay is set.
+	   *
+	   * @param fileId file ID
+	   * @param offset the offset
+	   * @param bytes number of bytes
+	   * @param handler the handler that will receive the {@code Buffer} result, which is always read-only, whether it is downloaded or served from a cache
 	   * @return the client
 	   */
 	FdfsClient download(FdfsFileId fileId, long offset, long bytes, Handler<AsyncResult<Buffer>> handler);
@@ -277,6 +418,24 @@ public interface FdfsClient {
 	   */
 	FdfsClient getMetaData(FdfsFileId fileId, Handler<AsyncResult<JsonObject>> handler);
 
+	/**
+	   * get meta data of server files, with at most {@code batchConcurrency} requests in flight. The
+	   * storage of each group is looked up once.
+	   *
+	   * @param fileIds file IDs
+	   * @param handler the handler that will receive the result of each file
+	   * @return the client
+	   */
+	FdfsClient getMetaDataAll(Collection<FdfsFileId> fileIds, Handler<AsyncResult<Map<FdfsFileId, AsyncResult<JsonObject>>>> handler);
+
+	/**
+	   * get meta data of server files, and stream the result of each file as it completes.
+	   *
+	   * @param fileIds file IDs
+	   * @return the stream of the results, the batch starts when its handler is set
+	   */
+	ReadStream<FdfsBatchResult<JsonObject>> getMetaDataAll(Iterable<FdfsFileId> fileIds);
+
 	/**
 	   * delete a server file.
 	   *
@@ -286,6 +445,25 @@ public interface FdfsClient {
 	   */
 	FdfsClient delete(FdfsFileId fileId, Handler<AsyncResult<Void>> handler);
 
+	/**
+	   * delete server files, with at most {@code batchConcurrency} requests in flight. The storage of each
+	   * group is looked up once.
+	   *
+	   * @param fileIds file IDs
+	   * @param handler the handler that will receive the result of each file
+	   * @return the client
+	   */
+	FdfsClient deleteAll(Collection<FdfsFileId> fileIds, Handler<AsyncResult<Map<FdfsFileId, AsyncResult<Void>>>> handler);
+
+	/**
+	   * delete server files, and stream the result of each file as it completes. The file IDs are pulled
+	   * from the iterable only when there is room for them, so a paused stream stops the batch.
+	   *
+	   * @param fileIds file IDs
+	   * @return the stream of the results, the batch starts when its handler is set
+	   */
+	ReadStream<FdfsBatchResult<Void>> deleteAll(Iterable<FdfsFileId> fileIds);
+
 	/**
 	   * get file info of a server file.
 	   *
@@ -295,6 +473,24 @@ public interface FdfsClient {
 	   */
 	FdfsClient fileInfo(FdfsFileId fileId, Handler<AsyncResult<FdfsFileInfo>> handler);
 
+	/**
+	   * get file info of server files, with at most {@code batchConcurrency} requests in flight. The
+	   * storage of each group is looked up once.
+	   *
+	   * @param fileIds file IDs
+	   * @param handler the handler that will receive the result of each file
+	   * @return the client
+	   */
+	FdfsClient fileInfoAll(Collection<FdfsFileId> fileIds, Handler<AsyncResult<Map<FdfsFileId, AsyncResult<FdfsFileInfo>>>> handler);
+
+	/**
+	   * get file info of server files, and stream the result of each file as it completes.
+	   *
+	   * @param fileIds file IDs
+	   * @return the stream of the results, the batch starts when its handler is set
+	   */
+	ReadStream<FdfsBatchResult<FdfsFileInfo>> fileInfoAll(Iterable<FdfsFileId> fileIds);
+
 	/**
 	   * get groups of the server.
 	   *
@@ -312,6 +508,34 @@ public interface FdfsClient {
 	   */
 	FdfsClient storages(String group, Handler<AsyncResult<List<FdfsStorageInfo>>> handler);
 	
+	/**
+	   * get the statistics of the routing cache.
+	   *
+	   * @return the statistics
+	   */
+	FdfsCacheStats routeCacheStats();
+
+	/**
+	   * get the statistics of the download cache.
+	   *
+	   * @return the statistics
+	   */
+	FdfsCacheStats downloadCacheStats();
+
+	/**
+	   * get the statistics of the disk cache.
+	   *
+	   * @return the statistics
+	   */
+	FdfsCacheStats diskCacheStats();
+
+	/**
+	   * get the statistics of the metadata cache.
+	   *
+	   * @return the statistics
+	   */
+	FdfsCacheStats metaDataCacheStats();
+
 	/**
 	   * get a tracker.
 	   *
@@ -335,7 +559,7 @@ public interface FdfsClient {
 	/**
 	   * close the client
 	   * 
-	   * @param completeHandler the handler
+	   * @param completeHandler the handler called once the files being added to the disk cache are written
 	   */
 	void close(Handler<AsyncResult<Void>> completeHandler);
 }
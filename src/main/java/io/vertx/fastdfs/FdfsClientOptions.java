@@ -18,6 +18,36 @@ import io.vertx.fastdfs.options.AbstractFdfsOptions;
  * * `connectTimeout`: 10000
  * * `networkTimeout`: 10000
  * * `poolSize`: 15
+ * * `minPoolSize`: 0
+ * * `maxWaitQueueSize`: -1
+ * * `acquireTimeout`: 10000
+ * * `idleTimeout`: 60000
+ * * `maxLifetime`: 0
+ * * `keepAliveInterval`: 0
+ * * `testOnBorrow`: false
+ * * `firstByteTimeout`: 0
+ * * `pipelineDepth`: 1
+ * * `routeCacheTtl`: 0
+ * * `routeCacheMaxSize`: 1024
+ * * `sourceRouting`: false
+ * * `localFileInfo`: false
+ * * `contextPool`: false
+ * * `chunkSize`: 8388608
+ * * `chunkConcurrency`: 4
+ * * `chunkRetries`: 2
+ * * `checkpointDir`: `fastdfs-checkpoints`
+ * * `batchConcurrency`: 32
+ * * `readBalancePolicy`: `NONE`
+ * * `hedgeDelay`: 0
+ * * `hedgePercentile`: 0
+ * * `downloadCacheMaxBytes`: 0
+ * * `downloadCacheMaxEntryBytes`: 65536
+ * * `downloadCacheTtl`: 0
+ * * `downloadCacheDirectBuffers`: false
+ * * `diskCacheDir`: `fastdfs-cache`
+ * * `diskCacheMaxBytes`: 0
+ * * `metaDataCacheTtl`: 0
+ * * `metaDataCacheMaxSize`: 1024
  * * `trackers` : [
  * * ]
  * <p>
@@ -34,18 +64,112 @@ public class FdfsClientOptions extends AbstractFdfsOptions {
 			.put(FdfsClientOptions.CONNECT_TIMEOUT, FdfsClientOptions.DEFAULT_CONNECT_TIMEOUT)
 			.put(FdfsClientOptions.NETWORK_TIMEOUT, FdfsClientOptions.DEFAULT_NETWORK_TIMEOUT)
 			.put(FdfsClientOptions.POOLSIZE, FdfsClientOptions.DEFAULT_POOLSIZE)
-			.put(FdfsClientOptions.DEFAULT_EXT, FdfsClientOptions.DEFAULT_DEFAULT_EXT).put(FdfsClientOptions.TRACKERS,
+			.put(FdfsClientOptions.MIN_POOL_SIZE, FdfsClientOptions.DEFAULT_MIN_POOL_SIZE)
+			.put(FdfsClientOptions.MAX_WAIT_QUEUE_SIZE, FdfsClientOptions.DEFAULT_MAX_WAIT_QUEUE_SIZE)
+			.put(FdfsClientOptions.ACQUIRE_TIMEOUT, FdfsClientOptions.DEFAULT_ACQUIRE_TIMEOUT)
+			.put(FdfsClientOptions.IDLE_TIMEOUT, FdfsClientOptions.DEFAULT_IDLE_TIMEOUT)
+			.put(FdfsClientOptions.MAX_LIFETIME, FdfsClientOptions.DEFAULT_MAX_LIFETIME)
+			.put(FdfsClientOptions.DEFAULT_EXT, FdfsClientOptions.DEFAULT_DEFAULT_EXT)
+			.put(FdfsClientOptions.KEEP_ALIVE_INTERVAL, FdfsClientOptions.DEFAULT_KEEP_ALIVE_INTERVAL)
+			.put(FdfsClientOptions.TEST_ON_BORROW, FdfsClientOptions.DEFAULT_TEST_ON_BORROW)
+			.put(FdfsClientOptions.FIRST_BYTE_TIMEOUT, FdfsClientOptions.DEFAULT_FIRST_BYTE_TIMEOUT)
+			.put(FdfsClientOptions.PIPELINE_DEPTH, FdfsClientOptions.DEFAULT_PIPELINE_DEPTH)
+			.put(FdfsClientOptions.ROUTE_CACHE_TTL, FdfsClientOptions.DEFAULT_ROUTE_CACHE_TTL)
+			.put(FdfsClientOptions.ROUTE_CACHE_MAX_SIZE, FdfsClientOptions.DEFAULT_ROUTE_CACHE_MAX_SIZE)
+			.put(FdfsClientOptions.SOURCE_ROUTING, FdfsClientOptions.DEFAULT_SOURCE_ROUTING)
+			.put(FdfsClientOptions.LOCAL_FILE_INFO, FdfsClientOptions.DEFAULT_LOCAL_FILE_INFO)
+			.put(FdfsClientOptions.CONTEXT_POOL, FdfsClientOptions.DEFAULT_CONTEXT_POOL)
+			.put(FdfsClientOptions.CHUNK_SIZE, FdfsClientOptions.DEFAULT_CHUNK_SIZE)
+			.put(FdfsClientOptions.CHUNK_CONCURRENCY, FdfsClientOptions.DEFAULT_CHUNK_CONCURRENCY)
+			.put(FdfsClientOptions.CHUNK_RETRIES, FdfsClientOptions.DEFAULT_CHUNK_RETRIES)
+			.put(FdfsClientOptions.CHECKPOINT_DIR, FdfsClientOptions.DEFAULT_CHECKPOINT_DIR)
+			.put(FdfsClientOptions.BATCH_CONCURRENCY, FdfsClientOptions.DEFAULT_BATCH_CONCURRENCY)
+			.put(FdfsClientOptions.READ_BALANCE_POLICY, FdfsClientOptions.DEFAULT_READ_BALANCE_POLICY.name())
+			.put(FdfsClientOptions.HEDGE_DELAY, FdfsClientOptions.DEFAULT_HEDGE_DELAY)
+			.put(FdfsClientOptions.HEDGE_PERCENTILE, FdfsClientOptions.DEFAULT_HEDGE_PERCENTILE)
+			.put(FdfsClientOptions.DOWNLOAD_CACHE_MAX_BYTES, FdfsClientOptions.DEFAULT_DOWNLOAD_CACHE_MAX_BYTES)
+			.put(FdfsClientOptions.DOWNLOAD_CACHE_MAX_ENTRY_BYTES, FdfsClientOptions.DEFAULT_DOWNLOAD_CACHE_MAX_ENTRY_BYTES)
+			.put(FdfsClientOptions.DOWNLOAD_CACHE_TTL, FdfsClientOptions.DEFAULT_DOWNLOAD_CACHE_TTL)
+			.put(FdfsClientOptions.DOWNLOAD_CACHE_DIRECT_BUFFERS, FdfsClientOptions.DEFAULT_DOWNLOAD_CACHE_DIRECT_BUFFERS)
+			.put(FdfsClientOptions.DISK_CACHE_DIR, FdfsClientOptions.DEFAULT_DISK_CACHE_DIR)
+			.put(FdfsClientOptions.DISK_CACHE_MAX_BYTES, FdfsClientOptions.DEFAULT_DISK_CACHE_MAX_BYTES)
+			.put(FdfsClientOptions.META_DATA_CACHE_TTL, FdfsClientOptions.DEFAULT_META_DATA_CACHE_TTL)
+			.put(FdfsClientOptions.META_DATA_CACHE_MAX_SIZE, FdfsClientOptions.DEFAULT_META_DATA_CACHE_MAX_SIZE)
+			.put(FdfsClientOptions.TRACKERS,
 					new JsonArray().add(new JsonObject().put(FdfsClientOptions.HOST, FdfsClientOptions.DEFAULT_HOST)
 							.put(FdfsClientOptions.PORT, FdfsClientOptions.DEFAULT_PORT)));
 
 	public static final String TRACKERS = "trackers";
 	public static final String HOST = "host";
 	public static final String PORT = "port";
+	public static final String ROUTE_CACHE_TTL = "routeCacheTtl";
+	public static final String ROUTE_CACHE_MAX_SIZE = "routeCacheMaxSize";
+	public static final String SOURCE_ROUTING = "sourceRouting";
+	public static final String LOCAL_FILE_INFO = "localFileInfo";
+	public static final String CONTEXT_POOL = "contextPool";
+	public static final String CHUNK_SIZE = "chunkSize";
+	public static final String CHUNK_CONCURRENCY = "chunkConcurrency";
+	public static final String CHUNK_RETRIES = "chunkRetries";
+	public static final String CHECKPOINT_DIR = "checkpointDir";
+	public static final String BATCH_CONCURRENCY = "batchConcurrency";
+	public static final String READ_BALANCE_POLICY = "readBalancePolicy";
+	public static final String HEDGE_DELAY = "hedgeDelay";
+	public static final String HEDGE_PERCENTILE = "hedgePercentile";
+	public static final String DOWNLOAD_CACHE_MAX_BYTES = "downloadCacheMaxBytes";
+	public static final String DOWNLOAD_CACHE_MAX_ENTRY_BYTES = "downloadCacheMaxEntryBytes";
+	public static final String DOWNLOAD_CACHE_TTL = "downloadCacheTtl";
+	public static final String DOWNLOAD_CACHE_DIRECT_BUFFERS = "downloadCacheDirectBuffers";
+	public static final String DISK_CACHE_DIR = "diskCacheDir";
+	public static final String DISK_CACHE_MAX_BYTES = "diskCacheMaxBytes";
+	public static final String META_DATA_CACHE_TTL = "metaDataCacheTtl";
+	public static final String META_DATA_CACHE_MAX_SIZE = "metaDataCacheMaxSize";
 
 	public static final String DEFAULT_HOST = "127.0.0.1";
 	public static final int DEFAULT_PORT = 22122;
+	public static final long DEFAULT_ROUTE_CACHE_TTL = 0;
+	public static final int DEFAULT_ROUTE_CACHE_MAX_SIZE = 1024;
+	public static final boolean DEFAULT_SOURCE_ROUTING = false;
+	public static final boolean DEFAULT_LOCAL_FILE_INFO = false;
+	public static final boolean DEFAULT_CONTEXT_POOL = false;
+	public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+	public static final int DEFAULT_CHUNK_CONCURRENCY = 4;
+	public static final int DEFAULT_CHUNK_RETRIES = 2;
+	public static final String DEFAULT_CHECKPOINT_DIR = "fastdfs-checkpoints";
+	public static final int DEFAULT_BATCH_CONCURRENCY = 32;
+	public static final FdfsReadBalancePolicy DEFAULT_READ_BALANCE_POLICY = FdfsReadBalancePolicy.NONE;
+	public static final long DEFAULT_HEDGE_DELAY = 0;
+	public static final double DEFAULT_HEDGE_PERCENTILE = 0;
+	public static final long DEFAULT_DOWNLOAD_CACHE_MAX_BYTES = 0;
+	public static final long DEFAULT_DOWNLOAD_CACHE_MAX_ENTRY_BYTES = 64 * 1024;
+	public static final long DEFAULT_DOWNLOAD_CACHE_TTL = 0;
+	public static final boolean DEFAULT_DOWNLOAD_CACHE_DIRECT_BUFFERS = false;
+	public static final String DEFAULT_DISK_CACHE_DIR = "fastdfs-cache";
+	public static final long DEFAULT_DISK_CACHE_MAX_BYTES = 0;
+	public static final long DEFAULT_META_DATA_CACHE_TTL = 0;
+	public static final int DEFAULT_META_DATA_CACHE_MAX_SIZE = 1024;
 
 	private List<SocketAddress> trackers;
+	private long routeCacheTtl;
+	private int routeCacheMaxSize;
+	private boolean sourceRouting;
+	private boolean localFileInfo;
+	private boolean contextPool;
+	private int chunkSize;
+	private int chunkConcurrency;
+	private int chunkRetries;
+	private String checkpointDir;
+	private int batchConcurrency;
+	private FdfsReadBalancePolicy readBalancePolicy;
+	private long hedgeDelay;
+	private double hedgePercentile;
+	private long downloadCacheMaxBytes;
+	private long downloadCacheMaxEntryBytes;
+	private long downloadCacheTtl;
+	private boolean downloadCacheDirectBuffers;
+	private String diskCacheDir;
+	private long diskCacheMaxBytes;
+	private long metaDataCacheTtl;
+	private int metaDataCacheMaxSize;
 
 	/**
 	   * Default constructor
@@ -53,6 +177,27 @@ public class FdfsClientOptions extends AbstractFdfsOptions {
 	public FdfsClientOptions() {
 		super();
 		trackers = new ArrayList<>();
+		routeCacheTtl = DEFAULT_ROUTE_CACHE_TTL;
+		routeCacheMaxSize = DEFAULT_ROUTE_CACHE_MAX_SIZE;
+		sourceRouting = DEFAULT_SOURCE_ROUTING;
+		localFileInfo = DEFAULT_LOCAL_FILE_INFO;
+		contextPool = DEFAULT_CONTEXT_POOL;
+		chunkSize = DEFAULT_CHUNK_SIZE;
+		chunkConcurrency = DEFAULT_CHUNK_CONCURRENCY;
+		chunkRetries = DEFAULT_CHUNK_RETRIES;
+		checkpointDir = DEFAULT_CHECKPOINT_DIR;
+		batchConcurrency = DEFAULT_BATCH_CONCURRENCY;
+		readBalancePolicy = DEFAULT_READ_BALANCE_POLICY;
+		hedgeDelay = DEFAULT_HEDGE_DELAY;
+		hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+		downloadCacheMaxBytes = DEFAULT_DOWNLOAD_CACHE_MAX_BYTES;
+		downloadCacheMaxEntryBytes = DEFAULT_DOWNLOAD_CACHE_MAX_ENTRY_BYTES;
+		downloadCacheTtl = DEFAULT_DOWNLOAD_CACHE_TTL;
+		downloadCacheDirectBuffers = DEFAULT_DOWNLOAD_CACHE_DIRECT_BUFFERS;
+		diskCacheDir = DEFAULT_DISK_CACHE_DIR;
+		diskCacheMaxBytes = DEFAULT_DISK_CACHE_MAX_BYTES;
+		metaDataCacheTtl = DEFAULT_META_DATA_CACHE_TTL;
+		metaDataCacheMaxSize = DEFAULT_META_DATA_CACHE_MAX_SIZE;
 	}
 	
 	/**
@@ -74,6 +219,27 @@ public class FdfsClientOptions extends AbstractFdfsOptions {
 	public FdfsClientOptions(AbstractFdfsOptions other) {
 		super(other);
 		trackers = new ArrayList<>();
+		routeCacheTtl = DEFAULT_ROUTE_CACHE_TTL;
+		routeCacheMaxSize = DEFAULT_ROUTE_CACHE_MAX_SIZE;
+		sourceRouting = DEFAULT_SOURCE_ROUTING;
+		localFileInfo = DEFAULT_LOCAL_FILE_INFO;
+		contextPool = DEFAULT_CONTEXT_POOL;
+		chunkSize = DEFAULT_CHUNK_SIZE;
+		chunkConcurrency = DEFAULT_CHUNK_CONCURRENCY;
+		chunkRetries = DEFAULT_CHUNK_RETRIES;
+		checkpointDir = DEFAULT_CHECKPOINT_DIR;
+		batchConcurrency = DEFAULT_BATCH_CONCURRENCY;
+		readBalancePolicy = DEFAULT_READ_BALANCE_POLICY;
+		hedgeDelay = DEFAULT_HEDGE_DELAY;
+		hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+		downloadCacheMaxBytes = DEFAULT_DOWNLOAD_CACHE_MAX_BYTES;
+		downloadCacheMaxEntryBytes = DEFAULT_DOWNLOAD_CACHE_MAX_ENTRY_BYTES;
+		downloadCacheTtl = DEFAULT_DOWNLOAD_CACHE_TTL;
+		downloadCacheDirectBuffers = DEFAULT_DOWNLOAD_CACHE_DIRECT_BUFFERS;
+		diskCacheDir = DEFAULT_DISK_CACHE_DIR;
+		diskCacheMaxBytes = DEFAULT_DISK_CACHE_MAX_BYTES;
+		metaDataCacheTtl = DEFAULT_META_DATA_CACHE_TTL;
+		metaDataCacheMaxSize = DEFAULT_META_DATA_CACHE_MAX_SIZE;
 	}
 	
 	/**
@@ -139,11 +305,487 @@ public class FdfsClientOptions extends AbstractFdfsOptions {
 		return this;
 	}
 
+	/**
+	 * get the time to live of the routing cache entries.
+	 * 
+	 * @return the time to live in milliseconds, 0 means the routing cache is disabled
+	 */
+	public long getRouteCacheTtl() {
+		return routeCacheTtl;
+	}
+
+	/**
+	 * set the time to live of the routing cache entries.
+	 * 
+	 * @param routeCacheTtl the time to live in milliseconds, 0 disables the routing cache
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setRouteCacheTtl(long routeCacheTtl) {
+		this.routeCacheTtl = routeCacheTtl;
+		return this;
+	}
+
+	/**
+	 * get the maximum number of routing cache entries.
+	 * 
+	 * @return the maximum number of entries
+	 */
+	public int getRouteCacheMaxSize() {
+		return routeCacheMaxSize;
+	}
+
+	/**
+	 * set the maximum number of routing cache entries.
+	 * 
+	 * @param routeCacheMaxSize the maximum number of entries
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setRouteCacheMaxSize(int routeCacheMaxSize) {
+		this.routeCacheMaxSize = routeCacheMaxSize;
+		return this;
+	}
+
+	/**
+	 * whether reads and updates are sent straight to the source storage decoded
+	 * from the file id.
+	 * 
+	 * @return true if source routing is enabled
+	 */
+	public boolean isSourceRouting() {
+		return sourceRouting;
+	}
+
+	/**
+	 * set whether reads and updates are sent straight to the source storage
+	 * decoded from the file id, the port of which is learned from the storages of
+	 * the group and kept in the routing cache. The tracker is still asked when the
+	 * source storage is not active. Source routing needs the routing cache, see
+	 * {@link #setRouteCacheTtl(long)}, and is ignored while it is disabled.
+	 * 
+	 * @param sourceRouting true to enable source routing
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setSourceRouting(boolean sourceRouting) {
+		this.sourceRouting = sourceRouting;
+		return this;
+	}
+
+	/**
+	 * whether file info is decoded from the file id when possible.
+	 * 
+	 * @return true if local file info is enabled
+	 */
+	public boolean isLocalFileInfo() {
+		return localFileInfo;
+	}
+
+	/**
+	 * set whether file info is decoded from the file id when possible. Appender
+	 * and slave files are still queried from the storage, since the size encoded in
+	 * their names may be stale. The source ip is null when the storages are
+	 * identified by storage ids.
+	 * 
+	 * @param localFileInfo true to enable local file info
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setLocalFileInfo(boolean localFileInfo) {
+		this.localFileInfo = localFileInfo;
+		return this;
+	}
+
+	/**
+	 * whether each context owns its own connections.
+	 * 
+	 * @return true if context pools are enabled
+	 */
+	public boolean isContextPool() {
+		return contextPool;
+	}
+
+	/**
+	 * set whether each context owns its own connections. When enabled, the
+	 * connections are created and used on the context of the caller, so no
+	 * connection is shared between event loops.
+	 * 
+	 * @param contextPool true to enable context pools
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setContextPool(boolean contextPool) {
+		this.contextPool = contextPool;
+		return this;
+	}
+
+	/**
+	 * get the size of the chunks of the parallel transfers.
+	 * 
+	 * @return the chunk size
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * set the size of the chunks of the parallel transfers, in bytes.
+	 * 
+	 * @param chunkSize the chunk size
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+		return this;
+	}
+
+	/**
+	 * get the number of chunks transferred at the same time.
+	 * 
+	 * @return the chunk concurrency
+	 */
+	public int getChunkConcurrency() {
+		return chunkConcurrency;
+	}
+
+	/**
+	 * set the number of chunks transferred at the same time by a parallel transfer.
+	 * 
+	 * @param chunkConcurrency the chunk concurrency
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setChunkConcurrency(int chunkConcurrency) {
+		this.chunkConcurrency = chunkConcurrency;
+		return this;
+	}
+
+	/**
+	 * get the number of times a failed chunk is transferred again.
+	 * 
+	 * @return the chunk retries
+	 */
+	public int getChunkRetries() {
+		return chunkRetries;
+	}
+
+	/**
+	 * set the number of times a failed chunk is transferred again before the
+	 * whole transfer fails.
+	 * 
+	 * @param chunkRetries the chunk retries
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setChunkRetries(int chunkRetries) {
+		this.chunkRetries = chunkRetries;
+		return this;
+	}
+
+	/**
+	 * get the directory of the checkpoints of the resumable uploads.
+	 *
+	 * @return the checkpoint directory
+	 */
+	public String getCheckpointDir() {
+		return checkpointDir;
+	}
+
+	/**
+	 * set the directory where the resumable uploads keep their checkpoints.
+	 *
+	 * @param checkpointDir the checkpoint directory
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setCheckpointDir(String checkpointDir) {
+		this.checkpointDir = checkpointDir;
+		return this;
+	}
+
+	/**
+	 * get the number of requests a batch operation keeps in flight.
+	 * 
+	 * @return the batch concurrency
+	 */
+	public int getBatchConcurrency() {
+		return batchConcurrency;
+	}
+
+	/**
+	 * set the number of requests a batch operation keeps in flight.
+	 * 
+	 * @param batchConcurrency the batch concurrency
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setBatchConcurrency(int batchConcurrency) {
+		this.batchConcurrency = batchConcurrency;
+		return this;
+	}
+
+	/**
+	 * get how the downloads of a file are spread over its replicas.
+	 *
+	 * @return the read balance policy
+	 */
+	public FdfsReadBalancePolicy getReadBalancePolicy() {
+		return readBalancePolicy;
+	}
+
+	/**
+	 * set how the downloads of a file are spread over its replicas. Any policy
+	 * but NONE asks the tracker for all the storages holding the file.
+	 *
+	 * @param readBalancePolicy the read balance policy
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setReadBalancePolicy(FdfsReadBalancePolicy readBalancePolicy) {
+		this.readBalancePolicy = readBalancePolicy;
+		return this;
+	}
+
+	/**
+	 * get the time to wait for the first byte of a download before the same range is requested from another replica.
+	 * 
+	 * @return the hedge delay in milliseconds
+	 */
+	public long getHedgeDelay() {
+		return hedgeDelay;
+	}
+
+	/**
+	 * set the time to wait for the first byte of a download before the same range is
+	 * requested from another replica, 0 disables the hedged downloads unless a
+	 * hedge percentile is set.
+	 * <p>
+	 * Only the downloads into a {@code Buffer}, and the chunks of a parallel download
+	 * into a {@code WriteStream}, are hedged. The other downloads into a
+	 * {@code WriteStream} or a local file write the bytes as they arrive, so they are
+	 * sent to a single replica.
+	 * 
+	 * @param hedgeDelay the hedge delay in milliseconds
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setHedgeDelay(long hedgeDelay) {
+		this.hedgeDelay = hedgeDelay;
+		return this;
+	}
+
+	/**
+	 * get the percentile of the recent first byte latencies used as the hedge delay.
+	 * 
+	 * @return the hedge percentile
+	 */
+	public double getHedgePercentile() {
+		return hedgePercentile;
+	}
+
+	/**
+	 * set the percentile of the recent first byte latencies used as the hedge delay,
+	 * for example 95. The hedge delay is used until enough latencies are known, 0
+	 * disables it. It applies to the same downloads as {@link #setHedgeDelay(long)}.
+	 * 
+	 * @param hedgePercentile the hedge percentile
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setHedgePercentile(double hedgePercentile) {
+		this.hedgePercentile = hedgePercentile;
+		return this;
+	}
+
+	/**
+	 * get the maximum total size of the downloaded ranges kept in memory.
+	 * 
+	 * @return the maximum total size in bytes
+	 */
+	public long getDownloadCacheMaxBytes() {
+		return downloadCacheMaxBytes;
+	}
+
+	/**
+	 * set the maximum total size of the downloaded ranges kept in memory, 0 disables
+	 * the download cache. The cached ranges are served as read-only buffers. Only the
+	 * cached ranges count, not the evicted ones still held by the callers.
+	 * 
+	 * @param downloadCacheMaxBytes the maximum total size in bytes
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setDownloadCacheMaxBytes(long downloadCacheMaxBytes) {
+		this.downloadCacheMaxBytes = downloadCacheMaxBytes;
+		return this;
+	}
+
+	/**
+	 * get the maximum size of a downloaded range kept in memory.
+	 * 
+	 * @return the maximum size in bytes
+	 */
+	public long getDownloadCacheMaxEntryBytes() {
+		return downloadCacheMaxEntryBytes;
+	}
+
+	/**
+	 * set the maximum size of a downloaded range kept in memory.
+	 * 
+	 * @param downloadCacheMaxEntryBytes the maximum size in bytes
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setDownloadCacheMaxEntryBytes(long downloadCacheMaxEntryBytes) {
+		this.downloadCacheMaxEntryBytes = downloadCacheMaxEntryBytes;
+		return this;
+	}
+
+	/**
+	 * get the time to live of a downloaded range kept in memory.
+	 * 
+	 * @return the time to live in milliseconds
+	 */
+	public long getDownloadCacheTtl() {
+		return downloadCacheTtl;
+	}
+
+	/**
+	 * set the time to live of a downloaded range kept in memory, 0 means the ranges
+	 * are kept until they are evicted or invalidated.
+	 * 
+	 * @param downloadCacheTtl the time to live in milliseconds
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setDownloadCacheTtl(long downloadCacheTtl) {
+		this.downloadCacheTtl = downloadCacheTtl;
+		return this;
+	}
+
+	/**
+	 * get whether the downloaded ranges are kept in direct buffers, out of the heap.
+	 * 
+	 * @return whether the ranges are kept in direct buffers
+	 */
+	public boolean isDownloadCacheDirectBuffers() {
+		return downloadCacheDirectBuffers;
+	}
+
+	/**
+	 * set whether the downloaded ranges are kept in direct buffers, out of the heap. The
+	 * cached ranges are then served as read-only buffers over the direct memory,
+	 * without a heap copy.
+	 * <p>
+	 * This is not a hard limit on the direct memory. An evicted range is freed by the
+	 * garbage collector once the buffers served from it are unreachable, so the direct
+	 * memory in use can go over the maximum size of the cache, up to
+	 * {@code -XX:MaxDirectMemorySize}.
+	 * 
+	 * @param downloadCacheDirectBuffers true to keep the ranges in direct buffers
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setDownloadCacheDirectBuffers(boolean downloadCacheDirectBuffers) {
+		this.downloadCacheDirectBuffers = downloadCacheDirectBuffers;
+		return this;
+	}
+
+	/**
+	 * get the directory of the disk cache.
+	 * 
+	 * @return the directory
+	 */
+	public String getDiskCacheDir() {
+		return diskCacheDir;
+	}
+
+	/**
+	 * set the directory of the disk cache.
+	 * 
+	 * @param diskCacheDir the directory
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setDiskCacheDir(String diskCacheDir) {
+		this.diskCacheDir = diskCacheDir;
+		return this;
+	}
+
+	/**
+	 * get the maximum total size of the downloaded files kept on the local disk.
+	 * 
+	 * @return the maximum total size in bytes
+	 */
+	public long getDiskCacheMaxBytes() {
+		return diskCacheMaxBytes;
+	}
+
+	/**
+	 * set the maximum total size of the downloaded files kept on the local disk, 0
+	 * disables the disk cache. Only whole files are cached.
+	 * 
+	 * @param diskCacheMaxBytes the maximum total size in bytes
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setDiskCacheMaxBytes(long diskCacheMaxBytes) {
+		this.diskCacheMaxBytes = diskCacheMaxBytes;
+		return this;
+	}
+
+	/**
+	 * get the time to live of the metadata cache entries.
+	 * 
+	 * @return the time to live in milliseconds, 0 means the metadata cache is disabled
+	 */
+	public long getMetaDataCacheTtl() {
+		return metaDataCacheTtl;
+	}
+
+	/**
+	 * set the time to live of the metadata cache entries.
+	 * 
+	 * @param metaDataCacheTtl the time to live in milliseconds, 0 disables the metadata cache
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setMetaDataCacheTtl(long metaDataCacheTtl) {
+		this.metaDataCacheTtl = metaDataCacheTtl;
+		return this;
+	}
+
+	/**
+	 * get the maximum number of metadata cache entries.
+	 * 
+	 * @return the maximum number of entries
+	 */
+	public int getMetaDataCacheMaxSize() {
+		return metaDataCacheMaxSize;
+	}
+
+	/**
+	 * set the maximum number of metadata cache entries.
+	 * 
+	 * @param metaDataCacheMaxSize the maximum number of entries
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsClientOptions setMetaDataCacheMaxSize(int metaDataCacheMaxSize) {
+		this.metaDataCacheMaxSize = metaDataCacheMaxSize;
+		return this;
+	}
+
 	@Override
 	public FdfsClientOptions fromJson(JsonObject json) {
 
 		super.fromJson(json);
 
+		this.routeCacheTtl = json.getLong(ROUTE_CACHE_TTL, DEFAULT_ROUTE_CACHE_TTL);
+		this.routeCacheMaxSize = json.getInteger(ROUTE_CACHE_MAX_SIZE, DEFAULT_ROUTE_CACHE_MAX_SIZE);
+		this.sourceRouting = json.getBoolean(SOURCE_ROUTING, DEFAULT_SOURCE_ROUTING);
+		this.localFileInfo = json.getBoolean(LOCAL_FILE_INFO, DEFAULT_LOCAL_FILE_INFO);
+		this.contextPool = json.getBoolean(CONTEXT_POOL, DEFAULT_CONTEXT_POOL);
+		this.chunkSize = json.getInteger(CHUNK_SIZE, DEFAULT_CHUNK_SIZE);
+		this.chunkConcurrency = json.getInteger(CHUNK_CONCURRENCY, DEFAULT_CHUNK_CONCURRENCY);
+		this.chunkRetries = json.getInteger(CHUNK_RETRIES, DEFAULT_CHUNK_RETRIES);
+		this.checkpointDir = json.getString(CHECKPOINT_DIR, DEFAULT_CHECKPOINT_DIR);
+		this.batchConcurrency = json.getInteger(BATCH_CONCURRENCY, DEFAULT_BATCH_CONCURRENCY);
+		this.readBalancePolicy = FdfsReadBalancePolicy
+				.valueOf(json.getString(READ_BALANCE_POLICY, DEFAULT_READ_BALANCE_POLICY.name()));
+		this.hedgeDelay = json.getLong(HEDGE_DELAY, DEFAULT_HEDGE_DELAY);
+		this.hedgePercentile = json.getDouble(HEDGE_PERCENTILE, DEFAULT_HEDGE_PERCENTILE);
+		this.downloadCacheMaxBytes = json.getLong(DOWNLOAD_CACHE_MAX_BYTES, DEFAULT_DOWNLOAD_CACHE_MAX_BYTES);
+		this.downloadCacheMaxEntryBytes = json.getLong(DOWNLOAD_CACHE_MAX_ENTRY_BYTES, DEFAULT_DOWNLOAD_CACHE_MAX_ENTRY_BYTES);
+		this.downloadCacheTtl = json.getLong(DOWNLOAD_CACHE_TTL, DEFAULT_DOWNLOAD_CACHE_TTL);
+		this.downloadCacheDirectBuffers = json.getBoolean(DOWNLOAD_CACHE_DIRECT_BUFFERS,
+				DEFAULT_DOWNLOAD_CACHE_DIRECT_BUFFERS);
+		this.diskCacheDir = json.getString(DISK_CACHE_DIR, DEFAULT_DISK_CACHE_DIR);
+		this.diskCacheMaxBytes = json.getLong(DISK_CACHE_MAX_BYTES, DEFAULT_DISK_CACHE_MAX_BYTES);
+		this.metaDataCacheTtl = json.getLong(META_DATA_CACHE_TTL, DEFAULT_META_DATA_CACHE_TTL);
+		this.metaDataCacheMaxSize = json.getInteger(META_DATA_CACHE_MAX_SIZE, DEFAULT_META_DATA_CACHE_MAX_SIZE);
+
 		JsonArray array = json.getJsonArray(TRACKERS);
 
 		if (array != null && array.size() > 0) {
@@ -166,8 +808,27 @@ public class FdfsClientOptions extends AbstractFdfsOptions {
 
 	@Override
 	public JsonObject toJson() {
-		return super.toJson().put(TRACKERS,
-				new JsonArray(trackers.stream()
+		return super.toJson().put(ROUTE_CACHE_TTL, routeCacheTtl).put(ROUTE_CACHE_MAX_SIZE, routeCacheMaxSize)
+				.put(SOURCE_ROUTING, sourceRouting)
+				.put(LOCAL_FILE_INFO, localFileInfo)
+				.put(CONTEXT_POOL, contextPool)
+				.put(CHUNK_SIZE, chunkSize)
+				.put(CHUNK_CONCURRENCY, chunkConcurrency)
+				.put(CHUNK_RETRIES, chunkRetries)
+				.put(CHECKPOINT_DIR, checkpointDir)
+				.put(BATCH_CONCURRENCY, batchConcurrency)
+				.put(READ_BALANCE_POLICY, readBalancePolicy.name())
+				.put(HEDGE_DELAY, hedgeDelay)
+				.put(HEDGE_PERCENTILE, hedgePercentile)
+				.put(DOWNLOAD_CACHE_MAX_BYTES, downloadCacheMaxBytes)
+				.put(DOWNLOAD_CACHE_MAX_ENTRY_BYTES, downloadCacheMaxEntryBytes)
+				.put(DOWNLOAD_CACHE_TTL, downloadCacheTtl)
+				.put(DOWNLOAD_CACHE_DIRECT_BUFFERS, downloadCacheDirectBuffers)
+				.put(DISK_CACHE_DIR, diskCacheDir)
+				.put(DISK_CACHE_MAX_BYTES, diskCacheMaxBytes)
+				.put(META_DATA_CACHE_TTL, metaDataCacheTtl)
+				.put(META_DATA_CACHE_MAX_SIZE, metaDataCacheMaxSize)
+				.put(TRACKERS, new JsonArray(trackers.stream()
 						.map(sockAddr -> new JsonObject().put(HOST, sockAddr.host()).put(PORT, sockAddr.port()))
 						.collect(Collectors.toList())));
 	}
@@ -201,4 +862,57 @@ public class FdfsClientOptions extends AbstractFdfsOptions {
 		super.setPoolSize(poolSize);
 		return this;
 	}
+	@Override
+	public FdfsClientOptions setMinPoolSize(int minPoolSize) {
+		super.setMinPoolSize(minPoolSize);
+		return this;
+	}
+	
+	@Override
+	public FdfsClientOptions setMaxWaitQueueSize(int maxWaitQueueSize) {
+		super.setMaxWaitQueueSize(maxWaitQueueSize);
+		return this;
+	}
+	
+	@Override
+	public FdfsClientOptions setAcquireTimeout(long acquireTimeout) {
+		super.setAcquireTimeout(acquireTimeout);
+		return this;
+	}
+	
+	@Override
+	public FdfsClientOptions setIdleTimeout(long idleTimeout) {
+		super.setIdleTimeout(idleTimeout);
+		return this;
+	}
+	
+	@Override
+	public FdfsClientOptions setMaxLifetime(long maxLifetime) {
+		super.setMaxLifetime(maxLifetime);
+		return this;
+	}
+	
+	@Override
+	public FdfsClientOptions setKeepAliveInterval(long keepAliveInterval) {
+		super.setKeepAliveInterval(keepAliveInterval);
+		return this;
+	}
+	
+	@Override
+	public FdfsClientOptions setTestOnBorrow(boolean testOnBorrow) {
+		super.setTestOnBorrow(testOnBorrow);
+		return this;
+	}
+	
+	@Override
+	public FdfsClientOptions setFirstByteTimeout(long firstByteTimeout) {
+		super.setFirstByteTimeout(firstByteTimeout);
+		return this;
+	}
+	
+	@Override
+	public FdfsClientOptions setPipelineDepth(int pipelineDepth) {
+		super.setPipelineDepth(pipelineDepth);
+		return this;
+	}
 }
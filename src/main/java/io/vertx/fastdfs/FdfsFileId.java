@@ -1,7 +1,18 @@
 package io.vertx.fastdfs;
 
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Objects;
+
+import io.vertx.fastdfs.utils.FdfsProtocol;
+
 /**
  * FastDFS file id (filename and group).
+ * <p>
+ * The storage server encodes the source storage, the creation timestamp, the
+ * size and the CRC32 of the file in the base64 part of the file name, they are
+ * decoded lazily by the accessors below.
  * 
  * @author GengTeng
  * <p>
@@ -13,9 +24,18 @@ public final class FdfsFileId {
 	
 	public static final String SEPARATOR = "/";
 	
+	private static final int DECODED_LENGTH = 20;
+
 	private String group;
 	private String name;
 
+	private boolean decoded;
+	private boolean decodable;
+	private int sourceServer;
+	private long createTimestamp;
+	private long encodedSize;
+	private long crc32;
+
 	private FdfsFileId() {
 	}
 
@@ -53,8 +73,184 @@ public final class FdfsFileId {
 	
 	public FdfsFileId setName(String name) {
 		this.name = name;
+		this.decoded = false;
 		return this;
 	}
+
+	/**
+	 * whether the file name contains the encoded file information.
+	 *
+	 * @return true if the name can be decoded
+	 */
+	public boolean isDecodable() {
+		decode();
+		return decodable;
+	}
+
+	/**
+	 * get the ip address of the source storage server.
+	 *
+	 * @return the ip address, or null if the name can not be decoded or the
+	 *         storage servers are identified by storage ids
+	 */
+	public String sourceIp() {
+		if (!isDecodable() || isServerId(sourceServer)) {
+			return null;
+		}
+
+		return (sourceServer >>> 24) + "." + ((sourceServer >>> 16) & 0xFF) + "." + ((sourceServer >>> 8) & 0xFF) + "."
+				+ (sourceServer & 0xFF);
+	}
+
+	/**
+	 * get the id of the source storage server.
+	 *
+	 * @return the storage id, or null if the name can not be decoded or the
+	 *         storage servers are identified by ip addresses
+	 */
+	public String sourceId() {
+		if (!isDecodable() || !isServerId(sourceServer)) {
+			return null;
+		}
+
+		return String.valueOf(sourceServer);
+	}
+
+	/**
+	 * get the creation time of the file.
+	 *
+	 * @return the creation time, or null if the name can not be decoded
+	 */
+	public Instant timestamp() {
+		return isDecodable() ? Instant.ofEpochSecond(createTimestamp) : null;
+	}
+
+	/**
+	 * get the size of the file when it was created.
+	 *
+	 * @return the size, or -1 if the name can not be decoded
+	 */
+	public long size() {
+		if (!isDecodable()) {
+			return -1;
+		}
+
+		if ((encodedSize >> 63) != 0 || isTrunk()) {
+			return encodedSize & 0xFFFFFFFFL;
+		}
+
+		return encodedSize;
+	}
+
+	/**
+	 * get the CRC32 of the file when it was created, sign extended as the storage
+	 * server reports it.
+	 *
+	 * @return the CRC32, or 0 if the name can not be decoded
+	 */
+	public long crc32() {
+		return isDecodable() ? crc32 : 0;
+	}
+
+	/**
+	 * whether this is an appender file.
+	 *
+	 * @return true if this is an appender file
+	 */
+	public boolean isAppender() {
+		return isDecodable() && (encodedSize & FdfsProtocol.FDFS_APPENDER_FILE_SIZE) != 0;
+	}
+
+	/**
+	 * whether this file is stored in a trunk file.
+	 *
+	 * @return true if this file is stored in a trunk file
+	 */
+	public boolean isTrunk() {
+		return isDecodable() && (encodedSize & FdfsProtocol.FDFS_TRUNK_FILE_MARK_SIZE) != 0
+				&& name.length() >= FdfsProtocol.FDFS_FILE_PATH_LEN + FdfsProtocol.FDFS_FILENAME_BASE64_LENGTH
+						+ FdfsProtocol.FDFS_TRUNK_FILE_INFO_LEN;
+	}
+
+	/**
+	 * whether this is a slave file, the name of which is the master file name with
+	 * a prefix inserted before the extension.
+	 *
+	 * @return true if this is a slave file
+	 */
+	public boolean isSlave() {
+		if (!isDecodable()) {
+			return false;
+		}
+
+		int length = name.length();
+		if (length > FdfsProtocol.FDFS_TRUNK_LOGIC_FILENAME_LENGTH
+				|| (length > FdfsProtocol.FDFS_NORMAL_LOGIC_FILENAME_LENGTH && !isTrunk())) {
+			return true;
+		}
+
+		int suffixIndex = FdfsProtocol.FDFS_FILE_PATH_LEN + FdfsProtocol.FDFS_FILENAME_BASE64_LENGTH
+				+ (isTrunk() ? FdfsProtocol.FDFS_TRUNK_FILE_INFO_LEN : 0);
+		String suffix = name.substring(suffixIndex);
+
+		return !suffix.isEmpty() && (suffix.charAt(0) != '.' || suffix.indexOf('.', 1) >= 0);
+	}
+
+	private void decode() {
+		if (decoded) {
+			return;
+		}
+
+		decoded = true;
+		decodable = false;
+
+		if (name == null
+				|| name.length() < FdfsProtocol.FDFS_FILE_PATH_LEN + FdfsProtocol.FDFS_FILENAME_BASE64_LENGTH) {
+			return;
+		}
+
+		byte[] bytes;
+		try {
+			bytes = Base64.getUrlDecoder().decode(name.substring(FdfsProtocol.FDFS_FILE_PATH_LEN,
+					FdfsProtocol.FDFS_FILE_PATH_LEN + FdfsProtocol.FDFS_FILENAME_BASE64_LENGTH));
+		} catch (IllegalArgumentException e) {
+			return;
+		}
+
+		if (bytes.length < DECODED_LENGTH) {
+			return;
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		sourceServer = buffer.getInt(0);
+		createTimestamp = buffer.getInt(Integer.BYTES) & 0xFFFFFFFFL;
+		encodedSize = buffer.getLong(Integer.BYTES * 2);
+		crc32 = buffer.getInt(Integer.BYTES * 2 + Long.BYTES);
+		decodable = true;
+	}
+
+	private static boolean isServerId(int sourceServer) {
+		return sourceServer > 0 && sourceServer <= FdfsProtocol.FDFS_MAX_SERVER_ID;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+
+		if (!(obj instanceof FdfsFileId)) {
+			return false;
+		}
+
+		FdfsFileId other = (FdfsFileId) obj;
+		return Objects.equals(group, other.group) && Objects.equals(name, other.name);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(group, name);
+	}
 	
 	@Override
 	public String toString() {
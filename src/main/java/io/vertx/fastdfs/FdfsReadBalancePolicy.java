@@ -0,0 +1,34 @@
+package io.vertx.fastdfs;
+
+/**
+ * How the downloads of a file are spread over the storages holding a replica of
+ * it.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public enum FdfsReadBalancePolicy {
+
+	/**
+	 * read from the one storage picked by the tracker.
+	 */
+	NONE,
+
+	/**
+	 * read from the replicas in turn.
+	 */
+	ROUND_ROBIN,
+
+	/**
+	 * read from the replica with the fewest downloads in flight.
+	 */
+	LEAST_IN_FLIGHT,
+
+	/**
+	 * read from the replica with the lowest recent latency.
+	 */
+	LOWEST_LATENCY
+}
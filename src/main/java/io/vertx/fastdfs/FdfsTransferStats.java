@@ -0,0 +1,52 @@
+package io.vertx.fastdfs;
+
+/**
+ * FastDFS transfer statistics.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public final class FdfsTransferStats {
+	private long bytes;
+	private long elapsed;
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public FdfsTransferStats setBytes(long bytes) {
+		this.bytes = bytes;
+		return this;
+	}
+
+	/**
+	 * get the elapsed time in milliseconds.
+	 *
+	 * @return the elapsed time
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	public FdfsTransferStats setElapsed(long elapsed) {
+		this.elapsed = elapsed;
+		return this;
+	}
+
+	/**
+	 * get the throughput in bytes per second.
+	 *
+	 * @return the throughput
+	 */
+	public long getBytesPerSecond() {
+		return elapsed > 0 ? bytes * 1000 / elapsed : bytes;
+	}
+
+	@Override
+	public String toString() {
+		return "bytes=" + bytes + ", elapsed=" + elapsed + "ms, bytesPerSecond=" + getBytesPerSecond();
+	}
+}
@@ -0,0 +1,34 @@
+package io.vertx.fastdfs.exp;
+
+/**
+ * A response of the tracker or the storage with a non-zero status, such as
+ * {@code ENOENT} for a missing file.
+ * <p>
+ * The server answered, so the connection and the route to it are fine.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsStatusException extends FdfsException {
+
+	private static final long serialVersionUID = -2318306924128394512L;
+
+	private final byte status;
+
+	public FdfsStatusException(byte status) {
+		super("receive packet errno is: " + status);
+		this.status = status;
+	}
+
+	/**
+	 * get the status of the response.
+	 *
+	 * @return the errno
+	 */
+	public byte getStatus() {
+		return status;
+	}
+}
@@ -0,0 +1,205 @@
+package io.vertx.fastdfs.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.fastdfs.FdfsBatchResult;
+import io.vertx.fastdfs.FdfsFileId;
+
+/**
+ * Runs an operation on the files of an iterator with bounded concurrency, and
+ * emits the results as they complete.
+ * <p>
+ * The files are pulled from the iterator only when there is room for them: the
+ * operations in flight plus the results not emitted yet never exceed the
+ * concurrency. So a paused stream stops pulling files, and a batch of millions
+ * of files is never held in memory. The flow starts when the handler is set,
+ * and the results are emitted by one thread at a time.
+ * <p>
+ * A failure of the iterator is reported once to the exception handler, and
+ * ends the stream without calling the end handler.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsBatchStream<T> implements ReadStream<FdfsBatchResult<T>> {
+
+	private final Iterator<FdfsFileId> fileIds;
+	private final int concurrency;
+	private final Function<FdfsFileId, Future<T>> operation;
+	private final Deque<FdfsBatchResult<T>> ready = new ArrayDeque<>();
+
+	private Handler<FdfsBatchResult<T>> handler;
+	private Handler<Void> endHandler;
+	private Handler<Throwable> exceptionHandler;
+	private long demand = Long.MAX_VALUE;
+	private int running;
+	private boolean pumping;
+	private boolean repump;
+	private boolean ended;
+
+	public FdfsBatchStream(Iterator<FdfsFileId> fileIds, int concurrency,
+			Function<FdfsFileId, Future<T>> operation) {
+		this.fileIds = fileIds;
+		this.concurrency = Math.max(concurrency, 1);
+		this.operation = operation;
+	}
+
+	@Override
+	public FdfsBatchStream<T> exceptionHandler(Handler<Throwable> handler) {
+		synchronized (this) {
+			exceptionHandler = handler;
+		}
+		return this;
+	}
+
+	@Override
+	public FdfsBatchStream<T> handler(Handler<FdfsBatchResult<T>> handler) {
+		synchronized (this) {
+			this.handler = handler;
+		}
+
+		if (handler != null) {
+			pump();
+		}
+		return this;
+	}
+
+	@Override
+	public FdfsBatchStream<T> pause() {
+		synchronized (this) {
+			demand = 0;
+		}
+		return this;
+	}
+
+	@Override
+	public FdfsBatchStream<T> resume() {
+		return fetch(Long.MAX_VALUE);
+	}
+
+	@Override
+	public FdfsBatchStream<T> fetch(long amount) {
+		synchronized (this) {
+			demand += amount;
+			if (demand < 0) {
+				demand = Long.MAX_VALUE;
+			}
+		}
+
+		pump();
+		return this;
+	}
+
+	@Override
+	public FdfsBatchStream<T> endHandler(Handler<Void> endHandler) {
+		synchronized (this) {
+			this.endHandler = endHandler;
+		}
+		return this;
+	}
+
+	private void pump() {
+		synchronized (this) {
+			if (handler == null) {
+				return;
+			}
+
+			if (pumping) {
+				repump = true;
+				return;
+			}
+
+			pumping = true;
+		}
+
+		while (true) {
+			List<FdfsBatchResult<T>> emitted = new ArrayList<>();
+			List<FdfsFileId> started = new ArrayList<>();
+			Handler<FdfsBatchResult<T>> resultHandler;
+			Handler<Void> end = null;
+			Throwable failure = null;
+
+			synchronized (this) {
+				repump = false;
+				resultHandler = handler;
+
+				while (demand > 0 && !ready.isEmpty()) {
+					emitted.add(ready.pollFirst());
+					if (demand != Long.MAX_VALUE) {
+						--demand;
+					}
+				}
+
+				// once ended, by the last file or by a failure of the iterator, nothing is pulled again
+				if (!ended) {
+					try {
+						while (demand > 0 && running + ready.size() < concurrency && fileIds.hasNext()) {
+							started.add(fileIds.next());
+							++running;
+						}
+
+						if (running == 0 && ready.isEmpty() && !fileIds.hasNext()) {
+							ended = true;
+							end = endHandler;
+						}
+					} catch (RuntimeException e) {
+						ended = true;
+						failure = e;
+					}
+				}
+
+				if (emitted.isEmpty() && started.isEmpty() && end == null && failure == null && !repump) {
+					pumping = false;
+					return;
+				}
+			}
+
+			emitted.forEach(resultHandler::handle);
+			started.forEach(this::run);
+
+			if (failure != null) {
+				Handler<Throwable> exception;
+				synchronized (this) {
+					exception = exceptionHandler;
+				}
+				if (exception != null) {
+					exception.handle(failure);
+				}
+			}
+
+			if (end != null) {
+				end.handle(null);
+			}
+		}
+	}
+
+	private void run(FdfsFileId fileId) {
+		Future<T> future;
+
+		try {
+			future = operation.apply(fileId);
+		} catch (RuntimeException e) {
+			future = Future.failedFuture(e);
+		}
+
+		future.onComplete(ar -> {
+			synchronized (this) {
+				--running;
+				ready.addLast(new FdfsBatchResult<>(fileId, ar));
+			}
+
+			pump();
+		});
+	}
+}
@@ -0,0 +1,117 @@
+package io.vertx.fastdfs.impl;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.CopyOptions;
+import io.vertx.core.file.FileSystem;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Keeps the checkpoints of the resumable uploads as small JSON files, one per
+ * local file, in a directory.
+ * <p>
+ * A checkpoint is written to a temporary file which is then moved over the
+ * previous one, and the saves of a checkpoint are done one after another, so a
+ * crash leaves either the previous or the next checkpoint.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsCheckpointStore {
+
+	private static final String EXTENSION = ".json";
+	private static final String TEMP_EXTENSION = ".tmp";
+
+	private final FileSystem fs;
+	private final String dir;
+	private final Map<String, Future<Void>> saving = new ConcurrentHashMap<>();
+
+	public FdfsCheckpointStore(Vertx vertx, String dir) {
+		this.fs = vertx.fileSystem();
+		this.dir = dir;
+	}
+
+	/**
+	 * load the checkpoint of a local file.
+	 *
+	 * @param path the path of the local file
+	 * @return the checkpoint, null if there is none or it can not be read
+	 */
+	public Future<FdfsUploadCheckpoint> load(String path) {
+		String file = file(path);
+
+		return fs.exists(file).compose(exists -> {
+			if (!exists) {
+				return Future.succeededFuture();
+			}
+
+			return fs.readFile(file).map(buffer -> new FdfsUploadCheckpoint(new JsonObject(buffer)));
+		}).otherwise((FdfsUploadCheckpoint) null);
+	}
+
+	/**
+	 * save a checkpoint.
+	 *
+	 * @param checkpoint the checkpoint
+	 * @return the future completed when the checkpoint is saved
+	 */
+	public Future<Void> save(FdfsUploadCheckpoint checkpoint) {
+		String file = file(checkpoint.getPath());
+
+		return saving.compute(file, (key, previous) -> {
+			Future<Void> ready = previous == null ? Future.succeededFuture() : previous.otherwiseEmpty();
+
+			return ready.compose(v -> {
+				Buffer buffer = checkpoint.toJson().toBuffer();
+
+				return fs.mkdirs(dir).compose(d -> fs.writeFile(file + TEMP_EXTENSION, buffer))
+						.compose(w -> fs.move(file + TEMP_EXTENSION, file,
+								new CopyOptions().setReplaceExisting(true).setAtomicMove(true)));
+			});
+		});
+	}
+
+	/**
+	 * remove the checkpoint of a local file.
+	 *
+	 * @param path the path of the local file
+	 * @return the future completed when the checkpoint is removed
+	 */
+	public Future<Void> remove(String path) {
+		String file = file(path);
+		Future<Void> previous = saving.remove(file);
+		Future<Void> ready = previous == null ? Future.succeededFuture() : previous.otherwiseEmpty();
+
+		return ready.compose(v -> fs.exists(file)).compose(exists -> exists ? fs.delete(file) : Future.succeededFuture());
+	}
+
+	private String file(String path) {
+		return dir + File.separator + digest(new File(path).getAbsolutePath()) + EXTENSION;
+	}
+
+	private static String digest(String value) {
+		try {
+			byte[] bytes = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+			StringBuilder builder = new StringBuilder(bytes.length * 2);
+
+			for (byte b : bytes) {
+				builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			return Integer.toHexString(value.hashCode());
+		}
+	}
+}
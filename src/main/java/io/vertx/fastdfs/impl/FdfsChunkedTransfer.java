@@ -0,0 +1,215 @@
+package io.vertx.fastdfs.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+
+/**
+ * Transfers a range of a file as concurrent chunks.
+ * <p>
+ * The range is split in chunks of {@code chunkSize} bytes, and at most
+ * {@code concurrency} of them are in flight. A failed chunk is transferred
+ * again up to {@code retries} times before the whole transfer fails.
+ * <p>
+ * When a consumer is given, the chunk results are handed to it in order, one at
+ * a time, and a chunk keeps its slot until it is consumed. So a slow consumer
+ * or a slow chunk holds at most {@code concurrency} chunks in memory.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsChunkedTransfer<T> {
+
+	private final long offset;
+	private final long length;
+	private final int chunkSize;
+	private final int concurrency;
+	private final int retries;
+	private final BiFunction<Long, Long, Future<T>> task;
+	private final Function<T, Future<Void>> consumer;
+	private final int chunks;
+	private final Promise<Void> promise = Promise.promise();
+	private final Map<Integer, T> results = new HashMap<>();
+
+	private int nextChunk;
+	private int nextConsumed;
+	private int running;
+	private int done;
+	private long transferred;
+	private boolean consuming;
+	private boolean failed;
+	private Handler<Long> progressHandler;
+
+	/**
+	 * @param offset the offset of the range
+	 * @param length the length of the range
+	 * @param chunkSize the chunk size
+	 * @param concurrency the number of chunks in flight
+	 * @param retries the number of times a failed chunk is transferred again
+	 * @param task transfers a chunk, given its offset and length
+	 * @param consumer consumes the chunk results in order, can be null
+	 */
+	public FdfsChunkedTransfer(long offset, long length, int chunkSize, int concurrency, int retries,
+			BiFunction<Long, Long, Future<T>> task, Function<T, Future<Void>> consumer) {
+		this.offset = offset;
+		this.length = length;
+		this.chunkSize = Math.max(chunkSize, 1);
+		this.concurrency = Math.max(concurrency, 1);
+		this.retries = Math.max(retries, 0);
+		this.task = task;
+		this.consumer = consumer;
+		this.chunks = (int) ((length + this.chunkSize - 1) / this.chunkSize);
+	}
+
+	/**
+	 * set the handler called with the number of bytes transferred so far, each
+	 * time a chunk is transferred.
+	 *
+	 * @param handler the progress handler
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsChunkedTransfer<T> progressHandler(Handler<Long> handler) {
+		this.progressHandler = handler;
+		return this;
+	}
+
+	/**
+	 * start the transfer.
+	 *
+	 * @return the future completed when all the chunks are transferred
+	 */
+	public Future<Void> start() {
+		if (chunks == 0) {
+			promise.tryComplete();
+		} else {
+			fill();
+		}
+
+		return promise.future();
+	}
+
+	private void fill() {
+		List<Integer> started = new ArrayList<>();
+
+		synchronized (this) {
+			while (!failed && running < concurrency && nextChunk < chunks) {
+				started.add(nextChunk++);
+				++running;
+			}
+		}
+
+		started.forEach(index -> transfer(index, 0));
+	}
+
+	private void transfer(int index, int attempt) {
+		long chunkOffset = (long) index * chunkSize;
+		long chunkLength = Math.min(chunkSize, length - chunkOffset);
+
+		task.apply(offset + chunkOffset, chunkLength).onComplete(ar -> {
+			if (ar.succeeded()) {
+				progress(chunkLength);
+				onChunk(index, ar.result());
+			} else if (attempt < retries && !isFailed()) {
+				transfer(index, attempt + 1);
+			} else {
+				fail(ar.cause());
+			}
+		});
+	}
+
+	private void onChunk(int index, T result) {
+		if (consumer == null) {
+			boolean completed;
+
+			synchronized (this) {
+				--running;
+				completed = ++done == chunks;
+			}
+
+			if (completed) {
+				promise.tryComplete();
+			} else {
+				fill();
+			}
+			return;
+		}
+
+		synchronized (this) {
+			results.put(index, result);
+		}
+
+		consume();
+	}
+
+	private void consume() {
+		T result;
+
+		synchronized (this) {
+			if (consuming || failed || !results.containsKey(nextConsumed)) {
+				return;
+			}
+
+			result = results.remove(nextConsumed);
+			consuming = true;
+		}
+
+		consumer.apply(result).onComplete(ar -> {
+			if (ar.failed()) {
+				fail(ar.cause());
+				return;
+			}
+
+			boolean completed;
+
+			synchronized (this) {
+				consuming = false;
+				--running;
+				completed = ++nextConsumed == chunks;
+			}
+
+			if (completed) {
+				promise.tryComplete();
+			} else {
+				fill();
+				consume();
+			}
+		});
+	}
+
+	private void progress(long chunkLength) {
+		if (progressHandler == null) {
+			return;
+		}
+
+		long total;
+
+		synchronized (this) {
+			total = transferred += chunkLength;
+		}
+
+		progressHandler.handle(total);
+	}
+
+	private synchronized boolean isFailed() {
+		return failed;
+	}
+
+	private void fail(Throwable cause) {
+		synchronized (this) {
+			failed = true;
+			results.clear();
+		}
+
+		promise.tryFail(cause);
+	}
+}
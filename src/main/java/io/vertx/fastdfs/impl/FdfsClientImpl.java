@@ -1,6 +1,17 @@
 package io.vertx.fastdfs.impl;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Context;
@@ -9,17 +20,29 @@ import io.vertx.core.Handler;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.CopyOptions;
+import io.vertx.core.file.FileSystemException;
+import io.vertx.core.file.OpenOptions;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.net.NetClientOptions;
+import io.vertx.core.net.SocketAddress;
 import io.vertx.core.shareddata.LocalMap;
 import io.vertx.core.streams.ReadStream;
 import io.vertx.core.streams.WriteStream;
+import io.vertx.fastdfs.FdfsBatchResult;
+import io.vertx.fastdfs.FdfsCacheStats;
 import io.vertx.fastdfs.FdfsClient;
 import io.vertx.fastdfs.FdfsClientOptions;
 import io.vertx.fastdfs.FdfsFileId;
 import io.vertx.fastdfs.FdfsFileInfo;
 import io.vertx.fastdfs.FdfsGroupInfo;
+import io.vertx.fastdfs.FdfsReadBalancePolicy;
 import io.vertx.fastdfs.FdfsStorageInfo;
+import io.vertx.fastdfs.FdfsTransferStats;
+import io.vertx.fastdfs.exp.FdfsException;
+import io.vertx.fastdfs.exp.FdfsStatusException;
+import io.vertx.fastdfs.options.FdfsStorageOptions;
 import io.vertx.fastdfs.options.FdfsTrackerOptions;
 import io.vertx.fastdfs.utils.FdfsProtocol;
 
@@ -42,6 +65,13 @@ public class FdfsClientImpl implements FdfsClient {
 	private final int trackerCount;
 	private final String poolName;
 	private LocalMap<String, FdfsConnectionPool> map;
+	private final FdfsRoutingCache routes;
+	private final FdfsCheckpointStore checkpoints;
+	private final FdfsReadBalancer balancer;
+	private final FdfsDownloadCache downloads;
+	private final FdfsDiskCache disk;
+	private final FdfsMetaDataCache metaDatas;
+	private final Set<SocketAddress> unextendable = ConcurrentHashMap.newKeySet();
 
 	public FdfsClientImpl(Vertx vertx, FdfsClientOptions options, String poolName) {
 		this.vertx = vertx;
@@ -50,6 +80,16 @@ public class FdfsClientImpl implements FdfsClient {
 		this.pool = lookUpSharedPool(poolName);
 		this.currentTrackerIndex = 0;
 		this.trackerCount = options.getTrackers().size();
+		this.routes = new FdfsRoutingCache(options.getRouteCacheTtl(), options.getRouteCacheMaxSize());
+		this.checkpoints = new FdfsCheckpointStore(vertx, options.getCheckpointDir());
+		this.balancer = options.getReadBalancePolicy() == FdfsReadBalancePolicy.NONE && !isHedged() ? null
+				: new FdfsReadBalancer(options.getReadBalancePolicy());
+		this.downloads = new FdfsDownloadCache(options.getDownloadCacheMaxBytes(),
+				options.getDownloadCacheMaxEntryBytes(), options.getDownloadCacheTtl(),
+				options.isDownloadCacheDirectBuffers());
+		this.disk = new FdfsDiskCache(vertx, options.getDiskCacheDir(), options.getDiskCacheMaxBytes());
+		this.metaDatas = new FdfsMetaDataCache(options.getMetaDataCacheTtl(), options.getMetaDataCacheMaxSize(),
+				options.getCharset());
 		setupCloseHook();
 	}
 
@@ -71,21 +111,7 @@ public class FdfsClientImpl implements FdfsClient {
 			return this;
 		}
 
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getStoreStorage(storage -> {
-					if (storage.succeeded()) {
-						storage.result().upload(stream, size, ext, upload -> {
-							handler.handle(upload);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
-					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
+		withStorage(getStoreStorage(null), (storage, upload) -> storage.upload(stream, size, ext, upload), handler);
 
 		return this;
 	}
@@ -99,21 +125,8 @@ public class FdfsClientImpl implements FdfsClient {
 			return this;
 		}
 
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getStoreStorage(storage -> {
-					if (storage.succeeded()) {
-						storage.result().upload(fileFullPathName, ext, upload -> {
-							handler.handle(upload);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
-					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
+		withStorage(getStoreStorage(null), (storage, upload) -> storage.upload(fileFullPathName, ext, upload),
+				handler);
 
 		return this;
 	}
@@ -127,21 +140,114 @@ public class FdfsClientImpl implements FdfsClient {
 			return this;
 		}
 
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getStoreStorage(storage -> {
-					if (storage.succeeded()) {
-						storage.result().upload(buffer, ext, upload -> {
-							handler.handle(upload);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
+		withStorage(getStoreStorage(null), (storage, upload) -> storage.upload(buffer, ext, upload), handler);
+
+		return this;
+	}
+
+	@Override
+	public FdfsClient uploadAll(List<Buffer> buffers, String ext,
+			Handler<AsyncResult<List<AsyncResult<FdfsFileId>>>> handler) {
+
+		if (Buffer.buffer(ext, options.getCharset()).length() > FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN) {
+			handler.handle(Future
+					.failedFuture("ext is too long ( greater than " + FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN + ")"));
+			return this;
+		}
+
+		getStoreStorages().compose(storages -> runAll(buffers.size(),
+				index -> Future.<FdfsFileId>future(promise -> withStorage(
+						Future.succeededFuture(storages.get(index % storages.size())),
+						(storage, upload) -> storage.upload(buffers.get(index), ext, upload), promise))))
+				.onComplete(handler);
+
+		return this;
+	}
+
+	@Override
+	public FdfsClient uploadParallel(String fileFullPathName, String ext, Handler<Long> progressHandler,
+			Handler<AsyncResult<FdfsFileId>> handler) {
+
+		if (Buffer.buffer(ext, options.getCharset()).length() > FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN) {
+			handler.handle(Future
+					.failedFuture("ext is too long ( greater than " + FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN + ")"));
+			return this;
+		}
+
+		vertx.fileSystem().props(fileFullPathName).compose(props -> getStoreStorage(null).compose(storage -> {
+			long size = props.size();
+			long first = Math.min(size, options.getChunkSize());
+
+			// every step goes to the storage holding the appender file
+			return readChunk(fileFullPathName, 0, first)
+					.compose(buffer -> Future.<FdfsFileId>future(promise -> storage.uploadAppender(buffer, ext, promise)))
+					.compose(fileId -> {
+						if (progressHandler != null) {
+							progressHandler.handle(first);
+						}
+
+						if (first == size) {
+							return Future.succeededFuture(fileId);
+						}
+
+						// a file which can not be extended gets the rest in one request, as large
+						// as a chunk can be, rather than in a chunk per round trip
+						return extend(storage, fileId, size)
+								.compose(extended -> new FdfsChunkedTransfer<Void>(first, size - first,
+										extended ? options.getChunkSize() : (int) Math.min(size - first, Integer.MAX_VALUE),
+										extended ? options.getChunkConcurrency() : 1, options.getChunkRetries(),
+										(chunkOffset, chunkBytes) -> Future.<Void>future(promise -> storage
+												.modify(fileFullPathName, chunkOffset, chunkBytes, fileId, chunkOffset,
+														promise)),
+										null).progressHandler(progressHandler == null ? null
+												: transferred -> progressHandler.handle(first + transferred))
+										.start())
+								.recover(e -> Future.<Void>future(promise -> storage.delete(fileId, promise))
+										.transform(v -> Future.failedFuture(e)))
+								.map(fileId);
+					}).onFailure(e -> {
+						if (isConnectionFailure(e)) {
+							routes.invalidate(storage.getOptions());
+						}
+					});
+		})).onComplete(handler);
+
+		return this;
+	}
+
+	@Override
+	public FdfsClient uploadResumable(String fileFullPathName, String ext, Handler<Long> progressHandler,
+			Handler<AsyncResult<FdfsFileId>> handler) {
+
+		if (Buffer.buffer(ext, options.getCharset()).length() > FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN) {
+			handler.handle(Future
+					.failedFuture("ext is too long ( greater than " + FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN + ")"));
+			return this;
+		}
+
+		vertx.fileSystem().props(fileFullPathName).compose(props -> checkpoints.load(fileFullPathName)
+				.compose(checkpoint -> {
+					if (checkpoint == null) {
+						return startResumable(fileFullPathName, ext, props.size(), props.lastModifiedTime());
 					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
+
+					if (!checkpoint.matches(props.size(), props.lastModifiedTime(), options.getChunkSize())) {
+						return deleteResumable(checkpoint).compose(
+								v -> startResumable(fileFullPathName, ext, props.size(), props.lastModifiedTime()));
+					}
+
+					// the storage is the reference, the checkpoint may be behind it. Only a missing
+					// appender file starts the upload over, other failures keep the checkpoint
+					return Future.<FdfsFileInfo>future(promise -> withStorage(getCheckpointStorage(checkpoint),
+							(storage, fileInfo) -> storage.fileInfo(checkpoint.getFileId(), fileInfo), promise))
+							.map(info -> checkpoint.sync(info.getSize()))
+							.recover(e -> isStatus(e, FdfsProtocol.ERR_NO_ENOENT)
+									? startResumable(fileFullPathName, ext, props.size(), props.lastModifiedTime())
+									: Future.failedFuture(e));
+				}))
+				.compose(checkpoint -> continueResumable(checkpoint, progressHandler))
+				.compose(fileId -> checkpoints.remove(fileFullPathName).map(fileId))
+				.onComplete(handler);
 
 		return this;
 	}
@@ -156,21 +262,8 @@ public class FdfsClientImpl implements FdfsClient {
 			return this;
 		}
 
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getStoreStorage(storage -> {
-					if (storage.succeeded()) {
-						storage.result().uploadAppender(stream, size, ext, uploadAppender -> {
-							handler.handle(uploadAppender);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
-					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
+		withStorage(getStoreStorage(null),
+				(storage, uploadAppender) -> storage.uploadAppender(stream, size, ext, uploadAppender), handler);
 
 		return this;
 	}
@@ -184,21 +277,8 @@ public class FdfsClientImpl implements FdfsClient {
 			return this;
 		}
 
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getStoreStorage(storage -> {
-					if (storage.succeeded()) {
-						storage.result().uploadAppender(fileFullPathName, ext, uploadAppender -> {
-							handler.handle(uploadAppender);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
-					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
+		withStorage(getStoreStorage(null),
+				(storage, uploadAppender) -> storage.uploadAppender(fileFullPathName, ext, uploadAppender), handler);
 
 		return this;
 	}
@@ -212,298 +292,354 @@ public class FdfsClientImpl implements FdfsClient {
 			return this;
 		}
 
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getStoreStorage(storage -> {
-					if (storage.succeeded()) {
-						storage.result().uploadAppender(buffer, ext, uploadAppender -> {
-							handler.handle(uploadAppender);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
-					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
+		withStorage(getStoreStorage(null),
+				(storage, uploadAppender) -> storage.uploadAppender(buffer, ext, uploadAppender), handler);
+
+		return this;
+	}
+
+	@Override
+	public FdfsClient uploadSlave(ReadStream<Buffer> stream, long size, FdfsFileId masterFileId, String prefix,
+			String ext, Handler<AsyncResult<FdfsFileId>> handler) {
+
+		if (Buffer.buffer(ext, options.getCharset()).length() > FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN) {
+			handler.handle(Future
+					.failedFuture("ext is too long ( greater than " + FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN + ")"));
+			return this;
+		}
+
+		withStorage(getUpdateStorage(masterFileId),
+				(storage, upload) -> storage.uploadSlave(stream, size, masterFileId, prefix, ext, upload), handler);
+		return this;
+	}
+
+	@Override
+	public FdfsClient uploadSlave(String fileFullPathName, FdfsFileId masterFileId, String prefix, String ext,
+			Handler<AsyncResult<FdfsFileId>> handler) {
+
+		if (Buffer.buffer(ext, options.getCharset()).length() > FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN) {
+			handler.handle(Future
+					.failedFuture("ext is too long ( greater than " + FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN + ")"));
+			return this;
+		}
+
+		withStorage(getUpdateStorage(masterFileId),
+				(storage, upload) -> storage.uploadSlave(fileFullPathName, masterFileId, prefix, ext, upload), handler);
+		return this;
+	}
+
+	@Override
+	public FdfsClient uploadSlave(Buffer buffer, FdfsFileId masterFileId, String prefix, String ext,
+			Handler<AsyncResult<FdfsFileId>> handler) {
+
+		if (Buffer.buffer(ext, options.getCharset()).length() > FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN) {
+			handler.handle(Future
+					.failedFuture("ext is too long ( greater than " + FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN + ")"));
+			return this;
+		}
+
+		withStorage(getUpdateStorage(masterFileId),
+				(storage, upload) -> storage.uploadSlave(buffer, masterFileId, prefix, ext, upload), handler);
+		return this;
+	}
+
+	@Override
+	public FdfsClient uploadSlaves(Map<String, Buffer> renditions, FdfsFileId masterFileId, String ext,
+			Handler<AsyncResult<Map<String, FdfsFileId>>> handler) {
+
+		if (Buffer.buffer(ext, options.getCharset()).length() > FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN) {
+			handler.handle(Future
+					.failedFuture("ext is too long ( greater than " + FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN + ")"));
+			return this;
+		}
 
+		withStorage(getUpdateStorage(masterFileId),
+				(storage, upload) -> storage.uploadSlaves(renditions, masterFileId, ext, upload), handler);
 		return this;
 	}
 
 	@Override
 	public FdfsClient append(ReadStream<Buffer> stream, long size, FdfsFileId fileId,
 			Handler<AsyncResult<Void>> handler) {
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getStoreStorage(fileId.group(), storage -> {
-					if (storage.succeeded()) {
-						storage.result().append(stream, size, fileId, append -> {
-							handler.handle(append);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
-					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
-
+		withStorage(getUpdateStorage(fileId), (storage, append) -> storage.append(stream, size, fileId, append),
+				invalidating(fileId, handler));
 		return this;
 	}
 
 	@Override
 	public FdfsClient append(String fileFullPathName, FdfsFileId fileId, Handler<AsyncResult<Void>> handler) {
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getStoreStorage(fileId.group(), storage -> {
-					if (storage.succeeded()) {
-						storage.result().append(fileFullPathName, fileId, append -> {
-							handler.handle(append);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
-					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
-
+		withStorage(getUpdateStorage(fileId),
+				(storage, append) -> storage.append(fileFullPathName, fileId, append),
+				invalidating(fileId, handler));
 		return this;
 	}
 
 	@Override
 	public FdfsClient append(Buffer buffer, FdfsFileId fileId, Handler<AsyncResult<Void>> handler) {
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getStoreStorage(fileId.group(), storage -> {
-					if (storage.succeeded()) {
-						storage.result().append(buffer, fileId, append -> {
-							handler.handle(append);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
-					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
-
+		withStorage(getUpdateStorage(fileId), (storage, append) -> storage.append(buffer, fileId, append),
+				invalidating(fileId, handler));
 		return this;
 	}
 
 	@Override
 	public FdfsClient modify(ReadStream<Buffer> stream, long size, FdfsFileId fileId, long offset,
 			Handler<AsyncResult<Void>> handler) {
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getStoreStorage(fileId.group(), storage -> {
-					if (storage.succeeded()) {
-						storage.result().modify(stream, size, fileId, offset, modify -> {
-							handler.handle(modify);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
-					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
-
+		withStorage(getUpdateStorage(fileId),
+				(storage, modify) -> storage.modify(stream, size, fileId, offset, modify),
+				invalidating(fileId, handler));
 		return this;
 	}
 
 	@Override
 	public FdfsClient modify(String fileFullPathName, FdfsFileId fileId, long offset,
 			Handler<AsyncResult<Void>> handler) {
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getStoreStorage(fileId.group(), storage -> {
-					if (storage.succeeded()) {
-						storage.result().modify(fileFullPathName, fileId, offset, modify -> {
-							handler.handle(modify);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
-					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
-
+		withStorage(getUpdateStorage(fileId),
+				(storage, modify) -> storage.modify(fileFullPathName, fileId, offset, modify),
+				invalidating(fileId, handler));
 		return this;
 	}
 
 	@Override
 	public FdfsClient modify(Buffer buffer, FdfsFileId fileId, long offset, Handler<AsyncResult<Void>> handler) {
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getStoreStorage(fileId.group(), storage -> {
-					if (storage.succeeded()) {
-						storage.result().modify(buffer, fileId, offset, modify -> {
-							handler.handle(modify);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
-					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
+		withStorage(getUpdateStorage(fileId),
+				(storage, modify) -> storage.modify(buffer, fileId, offset, modify),
+				invalidating(fileId, handler));
+		return this;
+	}
+
+	@Override
+	public FdfsClient truncate(FdfsFileId fileId, long size, Handler<AsyncResult<Void>> handler) {
 
+		if (size < 0) {
+			handler.handle(Future.failedFuture("size is negative: " + size));
+			return this;
+		}
+
+		withStorage(getUpdateStorage(fileId), (storage, truncate) -> storage.truncate(fileId, size, truncate),
+				invalidating(fileId, handler));
 		return this;
 	}
 
 	@Override
 	public FdfsClient download(FdfsFileId fileId, WriteStream<Buffer> stream, long offset, long bytes,
 			Handler<AsyncResult<Void>> handler) {
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getFetchStorage(fileId, storage -> {
-					if (storage.succeeded()) {
-						storage.result().download(fileId, stream, offset, bytes, download -> {
-							handler.handle(download);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
-					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
+		if (!isDiskCached(offset, bytes)) {
+			withFetchStorage(fileId,
+					(storage, download) -> storage.download(fileId, stream, offset, bytes, download), handler);
+			return this;
+		}
 
+		// a stream is not read back, so a missed file is not added to the disk cache.
+		// A file evicted before it is opened is a miss, nothing is written to the stream yet
+		disk.get(fileId).compose(cached -> cached == null ? Future.<AsyncFile>succeededFuture()
+				: vertx.fileSystem().open(cached, new OpenOptions().setRead(true).setWrite(false).setCreate(false))
+						.otherwiseEmpty())
+				.compose(file -> file == null ? Future.succeededFuture(false)
+						: file.pipe().endOnSuccess(false).to(stream).eventually(v -> file.close()).map(true))
+				.compose(hit -> hit ? Future.<Void>succeededFuture()
+						: Future.<Void>future(promise -> withFetchStorage(fileId,
+								(storage, download) -> storage.download(fileId, stream, offset, bytes, download),
+								promise)))
+				.onComplete(handler);
 		return this;
 	}
 
 	@Override
 	public FdfsClient download(FdfsFileId fileId, String fileFullPathName, long offset, long bytes,
 			Handler<AsyncResult<Void>> handler) {
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getFetchStorage(fileId, storage -> {
-					if (storage.succeeded()) {
-						storage.result().download(fileId, fileFullPathName, offset, bytes, download -> {
-							handler.handle(download);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
+		if (!isDiskCached(offset, bytes)) {
+			withFetchStorage(fileId,
+					(storage, download) -> storage.download(fileId, fileFullPathName, offset, bytes, download),
+					handler);
+			return this;
+		}
+
+		long stamp = disk.stamp();
+
+		disk.get(fileId).compose(cached -> cached == null ? Future.succeededFuture(false)
+				: vertx.fileSystem().copy(cached, fileFullPathName, new CopyOptions().setReplaceExisting(true))
+						.map(true).otherwise(false))
+				.compose(hit -> hit ? Future.<Void>succeededFuture()
+						: Future.<Void>future(promise -> withFetchStorage(fileId,
+								(storage, download) -> storage.download(fileId, fileFullPathName, offset, bytes,
+										download),
+								promise)).onSuccess(v -> disk.put(fileId, fileFullPathName, stamp)))
+				.onComplete(handler);
+		return this;
+	}
+
+	@Override
+	public FdfsClient download(FdfsFileId fileId, String fileFullPathName, long offset, long bytes, boolean preallocate,
+			Handler<AsyncResult<FdfsTransferStats>> handler) {
+		withFetchStorage(fileId, (storage, download) -> storage.download(fileId, fileFullPathName, offset, bytes,
+				preallocate, download), handler);
+		return this;
+	}
+
+	@Override
+	public FdfsClient downloadParallel(FdfsFileId fileId, WriteStream<Buffer> stream, long offset, long bytes,
+			Handler<AsyncResult<FdfsTransferStats>> handler) {
+		long start = System.currentTimeMillis();
+
+		rangeLength(fileId, offset, bytes).compose(length -> new FdfsChunkedTransfer<Buffer>(offset, length,
+				options.getChunkSize(), options.getChunkConcurrency(), options.getChunkRetries(),
+				// the chunks bypass the download cache, they would evict the small hot files
+				(chunkOffset, chunkBytes) -> downloadRange(fileId, chunkOffset, chunkBytes),
+				buffer -> {
+					stream.write(buffer);
+					if (stream.writeQueueFull()) {
+						return Future.future(promise -> stream.drainHandler(promise::tryComplete));
 					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
+					return Future.succeededFuture();
+				}).start().map(v -> new FdfsTransferStats().setBytes(length)
+						.setElapsed(System.currentTimeMillis() - start)))
+				.onComplete(handler);
+
+		return this;
+	}
+
+	@Override
+	public FdfsClient downloadParallel(FdfsFileId fileId, String fileFullPathName, long offset, long bytes,
+			Handler<AsyncResult<FdfsTransferStats>> handler) {
+		long start = System.currentTimeMillis();
+
+		rangeLength(fileId, offset, bytes).compose(length -> vertx.fileSystem()
+				.open(fileFullPathName, new OpenOptions().setCreate(true).setWrite(true).setTruncateExisting(true))
+				.compose(file -> new FdfsChunkedTransfer<Void>(offset, length, options.getChunkSize(),
+						options.getChunkConcurrency(), options.getChunkRetries(), (chunkOffset, chunkBytes) -> {
+							// a retried chunk writes again over the same positions
+							FdfsFileWriteStream chunkStream = new FdfsFileWriteStream(file, chunkOffset - offset);
+							return Future.<Void>future(promise -> withFetchStorage(fileId,
+									(storage, download) -> storage.download(fileId, chunkStream, chunkOffset, chunkBytes,
+											download),
+									promise)).eventually(v -> Future.<Void>future(chunkStream::end));
+						}, null).start().eventually(v -> file.close()))
+				.map(v -> new FdfsTransferStats().setBytes(length)
+						.setElapsed(System.currentTimeMillis() - start)))
+				.onComplete(handler);
 
 		return this;
 	}
 
 	@Override
 	public FdfsClient download(FdfsFileId fileId, long offset, long bytes, Handler<AsyncResult<Buffer>> handler) {
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getFetchStorage(fileId, storage -> {
-					if (storage.succeeded()) {
-						storage.result().download(fileId, offset, bytes, download -> {
-							handler.handle(download);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
-					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
+		if (!downloads.accepts(bytes)) {
+			downloadLocal(fileId, offset, bytes).map(FdfsClientImpl::readOnly).onComplete(handler);
+			return this;
+		}
+
+		Buffer cached = downloads.get(fileId, offset, bytes);
+		if (cached != null) {
+			handler.handle(Future.succeededFuture(cached));
+			return this;
+		}
 
+		long stamp = downloads.stamp();
+		downloadLocal(fileId, offset, bytes).map(FdfsClientImpl::readOnly)
+				.onSuccess(body -> downloads.put(fileId, offset, bytes, body, stamp)).onComplete(handler);
 		return this;
 	}
 
+	/**
+	 * wrap a downloaded body as a read-only buffer, without copying it, so the
+	 * buffers downloaded and those served from a cache behave the same.
+	 */
+	private static Buffer readOnly(Buffer body) {
+		return body.getByteBuf().isReadOnly() ? body : Buffer.buffer(body.getByteBuf().asReadOnly());
+	}
+
 	@Override
 	public FdfsClient setMetaData(FdfsFileId fileId, JsonObject metaData, byte flag,
 			Handler<AsyncResult<Void>> handler) {
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getUpdateStorage(fileId, storage -> {
-					if (storage.succeeded()) {
-						storage.result().setMetaData(fileId, metaData, flag, setMetaData -> {
-							handler.handle(setMetaData);
-						});
+		this.<Void>withStorage(getUpdateStorage(fileId),
+				(storage, setMetaData) -> storage.setMetaData(fileId, metaData, flag, setMetaData), ar -> {
+					if (ar.succeeded()) {
+						metaDatas.update(fileId, metaData, flag);
 					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
+						// the metadata stored is unknown after a failure
+						metaDatas.invalidate(fileId);
 					}
+					handler.handle(ar);
 				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
 		return this;
 	}
 
 	@Override
 	public FdfsClient getMetaData(FdfsFileId fileId, Handler<AsyncResult<JsonObject>> handler) {
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getUpdateStorage(fileId, storage -> {
-					if (storage.succeeded()) {
-						storage.result().getMetaData(fileId, getMetaData -> {
-							handler.handle(getMetaData);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
-					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
+		cachedMetaData(fileId, this::getUpdateStorage).onComplete(handler);
 		return this;
 	}
 
 	@Override
 	public FdfsClient delete(FdfsFileId fileId, Handler<AsyncResult<Void>> handler) {
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getUpdateStorage(fileId, storage -> {
-					if (storage.succeeded()) {
-						storage.result().delete(fileId, delete -> {
-							handler.handle(delete);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
-					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
-			}
-		});
+		withStorage(getUpdateStorage(fileId), (storage, delete) -> storage.delete(fileId, delete),
+				deleting(fileId, handler));
 		return this;
 	}
 
+	@Override
+	public FdfsClient getMetaDataAll(Collection<FdfsFileId> fileIds,
+			Handler<AsyncResult<Map<FdfsFileId, AsyncResult<JsonObject>>>> handler) {
+		collect(getMetaDataAll((Iterable<FdfsFileId>) fileIds), handler);
+		return this;
+	}
+
+	@Override
+	public ReadStream<FdfsBatchResult<JsonObject>> getMetaDataAll(Iterable<FdfsFileId> fileIds) {
+		Function<FdfsFileId, Future<FdfsStorage>> storages = batchStorages(this::getUpdateStorage);
+
+		return new FdfsBatchStream<>(fileIds.iterator(), options.getBatchConcurrency(),
+				fileId -> cachedMetaData(fileId, storages));
+	}
+
+	@Override
+	public FdfsClient deleteAll(Collection<FdfsFileId> fileIds,
+			Handler<AsyncResult<Map<FdfsFileId, AsyncResult<Void>>>> handler) {
+		collect(deleteAll((Iterable<FdfsFileId>) fileIds), handler);
+		return this;
+	}
+
+	@Override
+	public ReadStream<FdfsBatchResult<Void>> deleteAll(Iterable<FdfsFileId> fileIds) {
+		Function<FdfsFileId, Future<FdfsStorage>> storages = batchStorages(this::getUpdateStorage);
+
+		return new FdfsBatchStream<>(fileIds.iterator(), options.getBatchConcurrency(),
+				fileId -> Future.<Void>future(promise -> withStorage(storages.apply(fileId),
+						(storage, delete) -> storage.delete(fileId, delete), deleting(fileId, promise))));
+	}
+
 	@Override
 	public FdfsClient fileInfo(FdfsFileId fileId, Handler<AsyncResult<FdfsFileInfo>> handler) {
-		getTracker().onComplete(tracker -> {
-			if (tracker.succeeded()) {
-				tracker.result().getUpdateStorage(fileId, storage -> {
-					if (storage.succeeded()) {
-						storage.result().fileInfo(fileId, fileInfo -> {
-							handler.handle(fileInfo);
-						});
-					} else {
-						handler.handle(Future.failedFuture(storage.cause()));
-					}
-				});
-			} else {
-				handler.handle(Future.failedFuture(tracker.cause()));
+		FdfsFileInfo local = localFileInfo(fileId);
+		if (local != null) {
+			handler.handle(Future.succeededFuture(local));
+			return this;
+		}
+
+		withStorage(getUpdateStorage(fileId), (storage, fileInfo) -> storage.fileInfo(fileId, fileInfo), handler);
+		return this;
+	}
+
+	@Override
+	public FdfsClient fileInfoAll(Collection<FdfsFileId> fileIds,
+			Handler<AsyncResult<Map<FdfsFileId, AsyncResult<FdfsFileInfo>>>> handler) {
+		collect(fileInfoAll((Iterable<FdfsFileId>) fileIds), handler);
+		return this;
+	}
+
+	@Override
+	public ReadStream<FdfsBatchResult<FdfsFileInfo>> fileInfoAll(Iterable<FdfsFileId> fileIds) {
+		Function<FdfsFileId, Future<FdfsStorage>> storages = batchStorages(this::getUpdateStorage);
+
+		return new FdfsBatchStream<>(fileIds.iterator(), options.getBatchConcurrency(), fileId -> {
+			FdfsFileInfo local = localFileInfo(fileId);
+			if (local != null) {
+				return Future.succeededFuture(local);
 			}
+
+			return Future.<FdfsFileInfo>future(promise -> withStorage(storages.apply(fileId),
+					(storage, fileInfo) -> storage.fileInfo(fileId, fileInfo), promise));
 		});
-		return this;
 	}
 
 	@Override
@@ -535,6 +671,600 @@ public class FdfsClientImpl implements FdfsClient {
 		return this;
 	}
 
+	@Override
+	public FdfsCacheStats routeCacheStats() {
+		return routes.stats();
+	}
+
+	@Override
+	public FdfsCacheStats downloadCacheStats() {
+		return downloads.stats();
+	}
+
+	@Override
+	public FdfsCacheStats diskCacheStats() {
+		return disk.stats();
+	}
+
+	@Override
+	public FdfsCacheStats metaDataCacheStats() {
+		return metaDatas.stats();
+	}
+
+	/**
+	 * read the metadata of a file from the cache, or from the storage, which is
+	 * only looked up on a miss.
+	 */
+	private Future<JsonObject> cachedMetaData(FdfsFileId fileId, Function<FdfsFileId, Future<FdfsStorage>> storages) {
+		JsonObject cached = metaDatas.isEnabled() ? metaDatas.get(fileId) : null;
+		if (cached != null) {
+			return Future.succeededFuture(cached);
+		}
+
+		long stamp = metaDatas.stamp();
+
+		return Future.<JsonObject>future(promise -> withStorage(storages.apply(fileId),
+				(storage, getMetaData) -> storage.getMetaData(fileId, getMetaData), promise))
+				.onSuccess(metaData -> metaDatas.put(fileId, metaData, stamp));
+	}
+
+	/**
+	 * read a whole file from the disk cache, mapped rather than copied in the
+	 * heap, or download it and add it to the disk cache.
+	 */
+	private Future<Buffer> downloadLocal(FdfsFileId fileId, long offset, long bytes) {
+		if (!isDiskCached(offset, bytes)) {
+			return downloadRange(fileId, offset, bytes);
+		}
+
+		long stamp = disk.stamp();
+
+		return disk.get(fileId)
+				.compose(cached -> cached == null ? Future.<Buffer>succeededFuture() : disk.map(cached).otherwiseEmpty())
+				.compose(mapped -> mapped != null ? Future.succeededFuture(mapped)
+						: downloadRange(fileId, offset, bytes).onSuccess(body -> disk.put(fileId, body, stamp)));
+	}
+
+	private boolean isDiskCached(long offset, long bytes) {
+		return disk.isEnabled() && offset == 0 && bytes == 0;
+	}
+
+	private Future<Buffer> downloadRange(FdfsFileId fileId, long offset, long bytes) {
+		if (isHedged()) {
+			return getFetchStorages(fileId).compose(storages -> new FdfsHedgedDownload(vertx, balancer, fileId, offset,
+					bytes, balancer.rank(storages), hedgeDelay())
+							.failureHandler((storage, e) -> {
+								if (isConnectionFailure(e)) {
+									routes.invalidate(storage.getOptions());
+								}
+							}).start());
+		}
+
+		return Future.future(promise -> withFetchStorage(fileId,
+				(storage, download) -> storage.download(fileId, offset, bytes, download), promise));
+	}
+
+	/**
+	 * drop everything cached about a file when its deletion starts, and again
+	 * when it completes.
+	 */
+	private <T> Handler<AsyncResult<T>> deleting(FdfsFileId fileId, Handler<AsyncResult<T>> handler) {
+		Handler<AsyncResult<T>> invalidating = invalidating(fileId, handler);
+
+		if (!metaDatas.isEnabled()) {
+			return invalidating;
+		}
+
+		metaDatas.invalidate(fileId);
+
+		return ar -> {
+			metaDatas.invalidate(fileId);
+			invalidating.handle(ar);
+		};
+	}
+
+	/**
+	 * drop the cached ranges and the cached file of a file when an operation which
+	 * changes it starts, and again when it completes.
+	 */
+	private <T> Handler<AsyncResult<T>> invalidating(FdfsFileId fileId, Handler<AsyncResult<T>> handler) {
+		if (!downloads.isEnabled() && !disk.isEnabled()) {
+			return handler;
+		}
+
+		downloads.invalidate(fileId);
+		disk.invalidate(fileId);
+
+		return ar -> {
+			downloads.invalidate(fileId);
+			disk.invalidate(fileId);
+			handler.handle(ar);
+		};
+	}
+
+	/**
+	 * decode the file info from the file id when it is enabled and the encoded
+	 * size can be trusted, null otherwise.
+	 */
+	private FdfsFileInfo localFileInfo(FdfsFileId fileId) {
+		if (options.isLocalFileInfo() && fileId.isDecodable() && !fileId.isAppender() && !fileId.isSlave()) {
+			return new FdfsFileInfo().setSize(fileId.size()).setTimestamp(fileId.timestamp())
+					.setCrc32(fileId.crc32()).setSourceIp(fileId.sourceIp());
+		}
+
+		return null;
+	}
+
+	/**
+	 * collect the results of a batch in a map, in the order they complete.
+	 */
+	private <T> void collect(ReadStream<FdfsBatchResult<T>> stream,
+			Handler<AsyncResult<Map<FdfsFileId, AsyncResult<T>>>> handler) {
+		Map<FdfsFileId, AsyncResult<T>> results = new LinkedHashMap<>();
+
+		stream.exceptionHandler(e -> handler.handle(Future.failedFuture(e))).endHandler(v -> {
+			synchronized (results) {
+				handler.handle(Future.succeededFuture(results));
+			}
+		}).handler(result -> {
+			synchronized (results) {
+				results.put(result.fileId(), result);
+			}
+		});
+	}
+
+	/**
+	 * run an operation on each index with at most {@code batchConcurrency}
+	 * operations in flight, and collect the results in the order of the indexes.
+	 */
+	private <T> Future<List<AsyncResult<T>>> runAll(int count, Function<Integer, Future<T>> operation) {
+		List<AsyncResult<T>> results = new ArrayList<>(Collections.nCopies(count, null));
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger done = new AtomicInteger();
+		Promise<List<AsyncResult<T>>> promise = Promise.promise();
+
+		if (count == 0) {
+			promise.complete(results);
+		}
+
+		for (int i = 0; i < Math.min(count, Math.max(1, options.getBatchConcurrency())); ++i) {
+			runNext(next, done, count, operation, results, promise);
+		}
+
+		return promise.future();
+	}
+
+	/**
+	 * run the operations of the next indexes one after the other. The loop goes on
+	 * while they complete at once, and is started again by the completion of the
+	 * others, so neither the stack nor the futures grow with the count.
+	 */
+	private <T> void runNext(AtomicInteger next, AtomicInteger done, int count, Function<Integer, Future<T>> operation,
+			List<AsyncResult<T>> results, Promise<List<AsyncResult<T>>> promise) {
+		int index;
+
+		while ((index = next.getAndIncrement()) < count) {
+			Future<T> future = operation.apply(index);
+
+			if (!future.isComplete()) {
+				int pending = index;
+				future.onComplete(ar -> {
+					runDone(pending, ar, done, count, results, promise);
+					runNext(next, done, count, operation, results, promise);
+				});
+				return;
+			}
+
+			runDone(index, future, done, count, results, promise);
+		}
+	}
+
+	private <T> void runDone(int index, AsyncResult<T> result, AtomicInteger done, int count,
+			List<AsyncResult<T>> results, Promise<List<AsyncResult<T>>> promise) {
+		synchronized (results) {
+			results.set(index, result);
+		}
+
+		if (done.incrementAndGet() == count) {
+			synchronized (results) {
+				promise.complete(results);
+			}
+		}
+	}
+
+	/**
+	 * get all the store storages of a group picked by the tracker, or a single
+	 * store storage when the tracker can not list them.
+	 */
+	private Future<List<FdfsStorage>> getStoreStorages() {
+		return getTracker()
+				.compose(tracker -> Future.<List<FdfsStorage>>future(promise -> tracker.getStoreStorages(null, promise)))
+				.recover(e -> getStoreStorage(null).map(Collections::singletonList));
+	}
+
+	/**
+	 * look up the storage of each source storage decoded from the file ids, or of
+	 * each group when the source is unknown, once per batch. A failed look up is
+	 * forgotten, so the next files of the same storage look it up again.
+	 */
+	private Function<FdfsFileId, Future<FdfsStorage>> batchStorages(
+			Function<FdfsFileId, Future<FdfsStorage>> lookUp) {
+		Map<String, Future<FdfsStorage>> storages = new ConcurrentHashMap<>();
+
+		return fileId -> {
+			String source = fileId.sourceIp() != null ? fileId.sourceIp() : fileId.sourceId();
+			String key = source != null ? fileId.group() + FdfsFileId.SEPARATOR + source : fileId.group();
+			Future<FdfsStorage> storage = storages.get(key);
+
+			if (storage == null) {
+				Future<FdfsStorage> looked = lookUp.apply(fileId);
+				Future<FdfsStorage> previous = storages.putIfAbsent(key, looked);
+
+				if (previous != null) {
+					storage = previous;
+				} else {
+					storage = looked;
+					looked.onFailure(e -> storages.remove(key, looked));
+				}
+			}
+
+			return storage;
+		};
+	}
+
+	/**
+	 * run an operation on a storage, and forget the cached routes to that storage
+	 * if it can not be reached.
+	 */
+	private <T> void withStorage(Future<FdfsStorage> futureStorage,
+			BiConsumer<FdfsStorage, Handler<AsyncResult<T>>> operation, Handler<AsyncResult<T>> handler) {
+		futureStorage.onComplete(storage -> {
+			if (storage.succeeded()) {
+				FdfsStorage fdfsStorage = storage.result();
+				operation.accept(fdfsStorage, ar -> {
+					if (ar.failed() && isConnectionFailure(ar.cause())) {
+						routes.invalidate(fdfsStorage.getOptions());
+					}
+					handler.handle(ar);
+				});
+			} else {
+				handler.handle(Future.failedFuture(storage.cause()));
+			}
+		});
+	}
+
+	/**
+	 * run a download on a fetch storage of a file, picked among its replicas by the
+	 * read balancer when there is one.
+	 */
+	private <T> void withFetchStorage(FdfsFileId fileId, BiConsumer<FdfsStorage, Handler<AsyncResult<T>>> operation,
+			Handler<AsyncResult<T>> handler) {
+		if (balancer == null) {
+			withStorage(getFetchStorage(fileId), operation, handler);
+			return;
+		}
+
+		getFetchStorages(fileId).onComplete(storages -> {
+			if (storages.failed()) {
+				handler.handle(Future.failedFuture(storages.cause()));
+				return;
+			}
+
+			FdfsStorage storage = balancer.rank(storages.result()).get(0);
+			long start = balancer.begin(storage);
+
+			withStorage(Future.succeededFuture(storage), operation, ar -> {
+				balancer.end(storage, start, ar.succeeded());
+				handler.handle(ar);
+			});
+		});
+	}
+
+	/**
+	 * whether a failure comes from the connection to a server rather than from
+	 * its answer, such as a missing file, or from a local file.
+	 */
+	private static boolean isConnectionFailure(Throwable cause) {
+		if (cause instanceof FdfsStatusException || cause instanceof FileSystemException) {
+			return false;
+		}
+
+		for (Throwable e = cause; e != null; e = e.getCause()) {
+			if (e instanceof FdfsException || e instanceof IOException) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * extend an appender file to its full size, so that its chunks can be
+	 * written at their offsets concurrently.
+	 * <p>
+	 * Stock FastDFS storages reject a truncate that grows the file, as well as
+	 * a modify past its end, with EINVAL. Such a storage is remembered and not
+	 * asked again, and the file is written from its end instead.
+	 */
+	private Future<Boolean> extend(FdfsStorage storage, FdfsFileId fileId, long size) {
+		SocketAddress address = storage.getOptions().getAddress();
+		if (unextendable.contains(address)) {
+			return Future.succeededFuture(false);
+		}
+
+		return Future.<Void>future(promise -> storage.truncate(fileId, size, promise)).map(true).otherwise(e -> {
+			if (isStatus(e, FdfsProtocol.ERR_NO_EINVAL)) {
+				unextendable.add(address);
+			}
+			return false;
+		});
+	}
+
+	private static boolean isStatus(Throwable cause, byte status) {
+		return cause instanceof FdfsStatusException && ((FdfsStatusException) cause).getStatus() == status;
+	}
+
+	private boolean isHedged() {
+		return options.getHedgeDelay() > 0 || options.getHedgePercentile() > 0;
+	}
+
+	/**
+	 * get the time to wait for the first byte of a download before it is hedged,
+	 * from the recent first byte latencies when they are known.
+	 */
+	private long hedgeDelay() {
+		if (options.getHedgePercentile() > 0) {
+			double latency = balancer.getFirstBytePercentile(options.getHedgePercentile());
+			if (latency >= 0) {
+				return Math.max((long) Math.ceil(latency), 1);
+			}
+		}
+
+		return options.getHedgeDelay();
+	}
+
+	/**
+	 * create the appender file of a resumable upload with the first chunk, and
+	 * extend it to the full size when the storage allows it.
+	 */
+	private Future<FdfsUploadCheckpoint> startResumable(String fileFullPathName, String ext, long size,
+			long lastModified) {
+		long first = Math.min(size, options.getChunkSize());
+
+		// the appender file is only written on the storage which created it
+		return getStoreStorage(null).compose(storage -> readChunk(fileFullPathName, 0, first)
+				.compose(buffer -> Future.<FdfsFileId>future(promise -> storage.uploadAppender(buffer, ext, promise)))
+				.compose(fileId -> {
+					FdfsUploadCheckpoint checkpoint = new FdfsUploadCheckpoint(fileFullPathName, size, lastModified,
+							options.getChunkSize(), fileId, storage.getOptions().getAddress()).confirm(0, first);
+
+					if (first == size) {
+						return checkpoints.save(checkpoint).map(checkpoint);
+					}
+
+					return extend(storage, fileId, size)
+							.map(extended -> extended ? checkpoint.setExtended() : checkpoint)
+							.compose(c -> checkpoints.save(checkpoint).map(checkpoint));
+				}).onFailure(e -> {
+					if (isConnectionFailure(e)) {
+						routes.invalidate(storage.getOptions());
+					}
+				}));
+	}
+
+	/**
+	 * delete the appender file of a checkpoint which is not resumed. This is best
+	 * effort: a file which can not be deleted is left behind.
+	 */
+	private Future<Void> deleteResumable(FdfsUploadCheckpoint checkpoint) {
+		return Future.<Void>future(promise -> withStorage(getCheckpointStorage(checkpoint),
+				(storage, delete) -> storage.delete(checkpoint.getFileId(), delete), promise)).otherwiseEmpty();
+	}
+
+	/**
+	 * write the chunks of a resumable upload which are not confirmed yet. The
+	 * chunks of an extended appender file are written concurrently, the others in
+	 * order from the confirmed length.
+	 */
+	private Future<FdfsFileId> continueResumable(FdfsUploadCheckpoint checkpoint, Handler<Long> progressHandler) {
+		FdfsFileId fileId = checkpoint.getFileId();
+		String fileFullPathName = checkpoint.getPath();
+		boolean extended = checkpoint.isExtended();
+		long start = extended ? 0 : checkpoint.getConfirmed();
+
+		return getCheckpointStorage(checkpoint).compose(storage -> new FdfsChunkedTransfer<Void>(start,
+				checkpoint.getSize() - start, options.getChunkSize(), extended ? options.getChunkConcurrency() : 1,
+				options.getChunkRetries(), (chunkOffset, chunkBytes) -> {
+					if (extended && checkpoint.isConfirmed(chunkOffset)) {
+						return Future.succeededFuture();
+					}
+
+					return Future.<Void>future(promise -> storage.modify(fileFullPathName, chunkOffset, chunkBytes,
+							fileId, chunkOffset, promise))
+							.compose(v -> checkpoints.save(checkpoint.confirm(chunkOffset, chunkBytes)));
+				}, null).progressHandler(progressHandler == null ? null
+						: transferred -> progressHandler.handle(start + transferred))
+				.start().onFailure(e -> {
+					if (isConnectionFailure(e)) {
+						routes.invalidate(storage.getOptions());
+					}
+				}).map(fileId));
+	}
+
+	/**
+	 * get the storage which holds the appender file of a resumable upload, or
+	 * the update storage of the file for a checkpoint saved without it.
+	 */
+	private Future<FdfsStorage> getCheckpointStorage(FdfsUploadCheckpoint checkpoint) {
+		if (checkpoint.getStorage() == null) {
+			return getUpdateStorage(checkpoint.getFileId());
+		}
+
+		FdfsStorageOptions storageOptions = new FdfsStorageOptions(options).setGroup(checkpoint.getFileId().group())
+				.setAddress(checkpoint.getStorage());
+		return Future.succeededFuture(new FdfsStorageImpl(vertx, pool, storageOptions));
+	}
+
+	private Future<Buffer> readChunk(String fileFullPathName, long position, long length) {
+		return vertx.fileSystem().open(fileFullPathName, new OpenOptions().setRead(true).setWrite(false).setCreate(false))
+				.compose(file -> file.read(Buffer.buffer((int) length), 0, position, (int) length)
+						.eventually(v -> file.close()));
+	}
+
+	/**
+	 * get the length of a range, the file size is needed when the range goes to the
+	 * end of the file.
+	 */
+	private Future<Long> rangeLength(FdfsFileId fileId, long offset, long bytes) {
+		if (bytes > 0) {
+			return Future.succeededFuture(bytes);
+		}
+
+		return Future.<FdfsFileInfo>future(promise -> fileInfo(fileId, promise)).compose(info -> {
+			if (offset > info.getSize()) {
+				return Future.failedFuture(new FdfsException(
+						"offset: " + offset + " is greater than the file size: " + info.getSize()));
+			}
+			return Future.succeededFuture(info.getSize() - offset);
+		});
+	}
+
+	private Future<FdfsStorage> getStoreStorage(String group) {
+		String key = FdfsRoutingCache.storeKey(group);
+		FdfsStorage cached = getCachedStorage(key);
+		if (cached != null) {
+			return Future.succeededFuture(cached);
+		}
+
+		return getTracker().compose(tracker -> Future.<FdfsStorage>future(promise -> {
+			if (group == null) {
+				tracker.getStoreStorage(promise);
+			} else {
+				tracker.getStoreStorage(group, promise);
+			}
+		})).onSuccess(storage -> routes.put(key, storage.getOptions()));
+	}
+
+	private Future<FdfsStorage> getFetchStorage(FdfsFileId fileId) {
+		if (isSourceRouted()) {
+			return getSourceStorage(fileId).compose(
+					storage -> storage != null ? Future.succeededFuture(storage) : getTrackerFetchStorage(fileId));
+		}
+
+		return getTrackerFetchStorage(fileId);
+	}
+
+	/**
+	 * get all the fetch storages of a file, or the single fetch storage when the
+	 * tracker can not list them.
+	 */
+	private Future<List<FdfsStorage>> getFetchStorages(FdfsFileId fileId) {
+		String key = FdfsRoutingCache.replicasKey(fileId);
+		List<FdfsStorageOptions> cached = routes.isEnabled() ? routes.getReplicas(key) : null;
+		if (cached != null) {
+			List<FdfsStorage> storages = new ArrayList<>(cached.size());
+			for (FdfsStorageOptions storageOptions : cached) {
+				storages.add(new FdfsStorageImpl(vertx, pool, storageOptions));
+			}
+			return Future.succeededFuture(storages);
+		}
+
+		return getTracker().compose(tracker -> Future.<List<FdfsStorage>>future(promise -> {
+			tracker.getFetchStorages(fileId, promise);
+		})).onSuccess(storages -> {
+			List<FdfsStorageOptions> replicas = new ArrayList<>(storages.size());
+			for (FdfsStorage storage : storages) {
+				replicas.add(storage.getOptions());
+			}
+			routes.putReplicas(key, replicas);
+		}).recover(e -> getFetchStorage(fileId).map(Collections::singletonList));
+	}
+
+	private Future<FdfsStorage> getUpdateStorage(FdfsFileId fileId) {
+		if (isSourceRouted()) {
+			return getSourceStorage(fileId).compose(
+					storage -> storage != null ? Future.succeededFuture(storage) : getTrackerUpdateStorage(fileId));
+		}
+
+		return getTrackerUpdateStorage(fileId);
+	}
+
+	private Future<FdfsStorage> getTrackerFetchStorage(FdfsFileId fileId) {
+		String key = FdfsRoutingCache.fetchKey(fileId);
+		FdfsStorage cached = getCachedStorage(key);
+		if (cached != null) {
+			return Future.succeededFuture(cached);
+		}
+
+		return getTracker().compose(tracker -> Future.<FdfsStorage>future(promise -> {
+			tracker.getFetchStorage(fileId, promise);
+		})).onSuccess(storage -> routes.put(key, storage.getOptions()));
+	}
+
+	private Future<FdfsStorage> getTrackerUpdateStorage(FdfsFileId fileId) {
+		String key = FdfsRoutingCache.updateKey(fileId);
+		FdfsStorage cached = getCachedStorage(key);
+		if (cached != null) {
+			return Future.succeededFuture(cached);
+		}
+
+		return getTracker().compose(tracker -> Future.<FdfsStorage>future(promise -> {
+			tracker.getUpdateStorage(fileId, promise);
+		})).onSuccess(storage -> routes.put(key, storage.getOptions()));
+	}
+
+	/**
+	 * whether reads and updates go to the source storage. The storages of a group
+	 * are listed to learn the port of the source, which only pays off when the
+	 * list is cached, so a disabled routing cache disables source routing.
+	 */
+	private boolean isSourceRouted() {
+		return options.isSourceRouting() && routes.isEnabled();
+	}
+
+	/**
+	 * get the source storage decoded from the file id, null if it is unknown or
+	 * not active.
+	 */
+	private Future<FdfsStorage> getSourceStorage(FdfsFileId fileId) {
+		String sourceIp = fileId.sourceIp();
+		if (sourceIp == null) {
+			return Future.succeededFuture();
+		}
+
+		return getStorages(fileId.group()).map(storages -> {
+			for (FdfsStorageInfo storage : storages) {
+				if (storage.getStatus() == FdfsProtocol.FDFS_STORAGE_STATUS_ACTIVE && sourceIp.equals(storage.getIp())) {
+					FdfsStorageOptions storageOptions = new FdfsStorageOptions(options).setGroup(fileId.group())
+							.setAddress(SocketAddress.inetSocketAddress((int) storage.getStoragePort(), sourceIp));
+					return (FdfsStorage) new FdfsStorageImpl(vertx, pool, storageOptions);
+				}
+			}
+			return null;
+		}).otherwise((FdfsStorage) null);
+	}
+
+	private Future<List<FdfsStorageInfo>> getStorages(String group) {
+		List<FdfsStorageInfo> cached = routes.isEnabled() ? routes.getStorages(group) : null;
+		if (cached != null) {
+			return Future.succeededFuture(cached);
+		}
+
+		return getTracker().compose(tracker -> Future.<List<FdfsStorageInfo>>future(promise -> {
+			tracker.storages(group, promise);
+		})).onSuccess(storages -> routes.putStorages(group, storages));
+	}
+
+	private FdfsStorage getCachedStorage(String key) {
+		if (!routes.isEnabled()) {
+			return null;
+		}
+
+		FdfsStorageOptions storageOptions = routes.get(key);
+
+		return storageOptions == null ? null : new FdfsStorageImpl(vertx, pool, storageOptions);
+	}
+
 	private synchronized Future<FdfsTracker> getTracker() {
 		this.currentTrackerIndex = (this.currentTrackerIndex + 1) % trackerCount;
 		return getTracker(this.currentTrackerIndex, (this.currentTrackerIndex + trackerCount - 1) % trackerCount);
@@ -577,7 +1307,7 @@ public class FdfsClientImpl implements FdfsClient {
 			if (pool == null) {
 				pool = new FdfsConnectionPool(vertx,
 						new NetClientOptions().setConnectTimeout((int) options.getConnectTimeout()),
-						options.getPoolSize(), map, poolName);
+						options, options.isContextPool(), map, poolName);
 			} else {
 				pool.incRefCount();
 			}
@@ -605,14 +1335,19 @@ public class FdfsClientImpl implements FdfsClient {
 	
 	@Override
 	public void close(Handler<AsyncResult<Void>> completeHandler) {
+		routes.clear();
+		downloads.clear();
+		metaDatas.clear();
 		pool.close();
 
 		if (map != null) {
 			map.remove(poolName);
 		}
 		
+		// the files being added to the disk cache are finished before completing
+		Future<Void> closed = disk.close();
 		if (completeHandler != null) {
-			completeHandler.handle(null);
+			closed.onComplete(completeHandler);
 		}
 	}
 
@@ -1,8 +1,7 @@
 package io.vertx.fastdfs.impl;
 
-import java.util.LinkedList;
-import java.util.Queue;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
@@ -14,11 +13,17 @@ import io.vertx.core.net.NetSocket;
 import io.vertx.core.net.SocketAddress;
 import io.vertx.core.streams.ReadStream;
 import io.vertx.core.streams.WriteStream;
+import io.vertx.fastdfs.exp.FdfsException;
+import io.vertx.fastdfs.utils.FdfsPacket;
+import io.vertx.fastdfs.utils.FdfsPacketDecoder;
 
 public class FdfsConnection implements ReadStream<Buffer>, WriteStream<Buffer> {
 
 	private final NetClient client;
 	private final SocketAddress address;
+	private final FdfsConnectionPool.Endpoint endpoint;
+	private final long createTime;
+	private final FdfsPacketDecoder decoder;
 
 	private enum State {
 		/**
@@ -33,63 +38,66 @@ public class FdfsConnection implements ReadStream<Buffer>, WriteStream<Buffer> {
 		/**
 		 * Connection is active from here it can become an error or disconnected.
 		 */
-		CONNECTED,
-
-		/**
-		 * Reserved.
-		 */
-		RESERVED;
+		CONNECTED;
 	}
 
-	private final Queue<Promise<FdfsConnection>> pending = new LinkedList<>();
 	private final AtomicReference<State> state = new AtomicReference<>(State.DISCONNECTED);
 
 	private volatile NetSocket socket;
+	private volatile long lastUsedTime;
 
 	/**
-	 * Create a RedisConnection.
+	 * the number of pipelined requests in flight, guarded by the endpoint.
+	 */
+	int inFlight;
+
+	/**
+	 * Create a FdfsConnection.
 	 * @param client a NetClient instance
 	 * @param address the address to connect
 	 */
 	public FdfsConnection(NetClient client, SocketAddress address) {
+		this(client, address, null);
+	}
+
+	FdfsConnection(NetClient client, SocketAddress address, FdfsConnectionPool.Endpoint endpoint) {
 		this.client = client;
 		this.address = address;
+		this.endpoint = endpoint;
+		this.createTime = System.currentTimeMillis();
+		this.decoder = new FdfsPacketDecoder(this);
+		this.lastUsedTime = createTime;
 	}
 
-	public Future<FdfsConnection> get() {
+	/**
+	 * connect to the address.
+	 * 
+	 * @return the future of this connection
+	 */
+	public Future<FdfsConnection> connect() {
+		if (!this.state.compareAndSet(State.DISCONNECTED, State.CONNECTING)) {
+			return Future.failedFuture(new FdfsException("connection is " + state.get()));
+		}
 
 		Promise<FdfsConnection> promise = Promise.promise();
 
-		switch (state.get()) {
-		case RESERVED:
-			pending.add(promise);
-			break;
-		case CONNECTING:
-			pending.add(promise);
-			break;
-		case CONNECTED:
-			if (this.state.compareAndSet(State.CONNECTED, State.RESERVED)) {
+		client.connect(address, ar -> {
+			if (ar.succeeded()) {
+				this.socket = ar.result().handler(decoder).exceptionHandler(decoder::fail).closeHandler(v -> {
+					this.state.set(State.DISCONNECTED);
+					if (endpoint != null) {
+						endpoint.remove(this);
+					}
+					decoder.fail(new FdfsException("socket closed before recv complete"));
+				});
+
+				this.state.set(State.CONNECTED);
 				promise.complete(this);
 			} else {
-				pending.add(promise);
+				this.state.set(State.DISCONNECTED);
+				promise.fail(ar.cause());
 			}
-			break;
-		case DISCONNECTED:
-			connect(ar -> {
-				if (ar.succeeded()) {
-					if (this.state.get() == State.CONNECTED) {
-						completePromise(promise);
-					} else {
-						pending.add(promise);
-					}
-				} else {
-					promise.fail(ar.cause());
-				}
-			});
-			break;
-		default:
-			break;
-		}
+		});
 
 		return promise.future();
 	}
@@ -97,80 +105,55 @@ public class FdfsConnection implements ReadStream<Buffer>, WriteStream<Buffer> {
 	public SocketAddress address() {
 		return address;
 	}
+
+	/**
+	 * get the decoder of the responses received on this connection.
+	 *
+	 * @return the decoder
+	 */
+	public FdfsPacketDecoder decoder() {
+		return decoder;
+	}
 	
-	public void release() {
-		if (!this.state.compareAndSet(State.RESERVED, State.CONNECTED)) {
-			switch(this.state.get()) {
-			case CONNECTING:
-				break;
-			case CONNECTED:
-				removePending();
-				break;
-			case DISCONNECTED:
-				connect(ar -> {
-					if (ar.succeeded()) {
-						removePending();
-					} else {
-						cleanPending(ar.cause());
-					}
-				});
-			default:
-				break;
-			}
-		} else {
-			removePending();
-		}
+	public boolean isConnected() {
+		return state.get() == State.CONNECTED;
 	}
 	
-	private void removePending() {
-		Promise<FdfsConnection> promise = null;
-
-		if ((promise = pending.poll()) != null) {
-			completePromise(promise);
-		}
+	public long createTime() {
+		return createTime;
 	}
 	
-	private void cleanPending(Throwable e) {
-		Promise<FdfsConnection> promise = null;
-
-		while ((promise = pending.poll()) != null) {
-			promise.fail(e);
-		}
+	public long lastUsedTime() {
+		return lastUsedTime;
 	}
 
-	private void completePromise(Promise<FdfsConnection> promise) {
-		this.state.set(State.RESERVED);
-		promise.complete(this);
+	/**
+	 * register the expected response and write the request as one step, so the
+	 * requests pipelined on this connection by several threads are written in the
+	 * order their responses are expected.
+	 *
+	 * @param packet the request
+	 * @param response registers the expected response
+	 * @return the future of the response
+	 */
+	public synchronized Future<FdfsPacket> request(Buffer packet, Supplier<Future<FdfsPacket>> response) {
+		Future<FdfsPacket> futureResponse = response.get();
+		socket.write(packet);
+		return futureResponse;
 	}
+
+	/**
+	 * give this connection back to its pool, or close it if it does not belong to
+	 * any pool.
+	 */
+	public void release() {
+		lastUsedTime = System.currentTimeMillis();
 	
-	private FdfsConnection connect(Handler<AsyncResult<FdfsConnection>> handler) {
-		
-		if (this.state.compareAndSet(State.DISCONNECTED, State.CONNECTING)) {
-			client.connect(address, ar -> {
-				if (ar.succeeded()) {
-					this.socket = ar.result().closeHandler(v -> {
-						this.state.set(State.DISCONNECTED);
-					});
-					
-					this.state.set(State.CONNECTED);
-					
-					if (handler != null) {
-						handler.handle(Future.succeededFuture(this));
-					}
-					
-	 			} else {
-	 				if (handler != null) {
-						handler.handle(Future.failedFuture(ar.cause()));
-					}
-				}
-			});
+		if (endpoint != null) {
+			endpoint.recycle(this);
 		} else {
-			if (handler != null) {
-				handler.handle(Future.succeededFuture(this));
-			}
+			close();
 		}
-		
-		return this;
 	}
 	
 	@Override
@@ -236,6 +219,22 @@ public class FdfsConnection implements ReadStream<Buffer>, WriteStream<Buffer> {
 		return this;
 	}
 
+	/**
+	 * Send a region of a file to the connection, through the kernel when the
+	 * platform allows it.
+	 *
+	 * @param filename
+	 *            the file name
+	 * @param offset
+	 *            the offset of the region
+	 * @param length
+	 *            the length of the region
+	 * @return the future of the transfer
+	 */
+	public Future<Void> sendFile(String filename, long offset, long length) {
+		return socket.sendFile(filename, offset, length);
+	}
+
 	public SocketAddress remoteAddress() {
 		return socket.remoteAddress();
 	}
@@ -262,7 +261,9 @@ public class FdfsConnection implements ReadStream<Buffer>, WriteStream<Buffer> {
 	 */
 	public void close() {
 		this.state.set(State.DISCONNECTED);
-		socket.close();
+		if (socket != null) {
+			socket.close();
+		}
 	}
 
 	/**
@@ -275,6 +276,10 @@ public class FdfsConnection implements ReadStream<Buffer>, WriteStream<Buffer> {
 	public FdfsConnection closeHandler(Handler<Void> handler) {
 		socket.closeHandler(v -> {
 			this.state.set(State.DISCONNECTED);
+			if (endpoint != null) {
+				endpoint.remove(this);
+			}
+			decoder.fail(new FdfsException("socket closed before recv complete"));
 			if (handler != null) {
 				handler.handle(v);
 			}
@@ -1,21 +1,55 @@
 package io.vertx.fastdfs.impl;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Closeable;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.impl.ContextInternal;
 import io.vertx.core.net.NetClient;
 import io.vertx.core.net.NetClientOptions;
 import io.vertx.core.net.SocketAddress;
 import io.vertx.core.shareddata.LocalMap;
 import io.vertx.core.shareddata.Shareable;
+import io.vertx.fastdfs.exp.FdfsException;
+import io.vertx.fastdfs.options.AbstractFdfsOptions;
+import io.vertx.fastdfs.options.FdfsTrackerOptions;
+import io.vertx.fastdfs.utils.FdfsPacket;
+import io.vertx.fastdfs.utils.FdfsProtocol;
 
 /**
  * FastDFS Connection Pool.
+ * <p>
+ * In context mode, every context owns its own connections to each address.
+ * They are only touched from that context: the connections are opened, probed,
+ * evicted and closed on it, and a connection released from another thread is
+ * handed back to it. So the lock of such an endpoint is never contended, getting
+ * a connection does not wait on other event loops and the socket callbacks run
+ * on the calling event loop.
+ * <p>
+ * A connection is used by one request at a time. The idle connections are
+ * reused first, new ones are opened up to the pool size, then the requests
+ * wait in a bounded queue until a connection is released or the acquire
+ * timeout fires.
+ * <p>
+ * The idle connections can be probed with active tests in the background and
+ * before they are used, the dead ones are closed and replaced quietly.
+ * <p>
+ * When the pipeline depth is greater than 1, the small requests got with
+ * {@link #getShared(SocketAddress)} share a connection: up to that many of
+ * them are written back to back, and their responses are matched in order.
  * 
  * @author GengTeng
  * <p>
@@ -25,33 +59,107 @@ import io.vertx.core.shareddata.Shareable;
  */
 public class FdfsConnectionPool implements Shareable {
 	
+	private static final long EVICTION_INTERVAL = 1000;
+
 	private final Vertx vertx;
 	private final NetClient client;
 	private final int poolSize;
+	private final int minPoolSize;
+	private final int maxWaitQueueSize;
+	private final long acquireTimeout;
+	private final long idleTimeout;
+	private final long maxLifetime;
+	private final long networkTimeout;
+	private final long keepAliveInterval;
+	private final boolean testOnBorrow;
+	private final int pipelineDepth;
+	private final boolean contextLocal;
+	private final long evictionTimerId;
 	private int refCount = 1;
 
-	private ConcurrentMap<SocketAddress, CircularConnectionPool> pools;
+	private ConcurrentMap<SocketAddress, Endpoint> pools;
+	private ConcurrentMap<Context, ContextPools> contextPools;
 	
 	public FdfsConnectionPool(Vertx vertx, NetClientOptions options, int poolSize, LocalMap<String, FdfsConnectionPool> map, String poolName) {
+		this(vertx, options, new FdfsTrackerOptions().setPoolSize(poolSize), false, map, poolName);
+	}
+
+	public FdfsConnectionPool(Vertx vertx, NetClientOptions options, AbstractFdfsOptions poolOptions, boolean contextLocal, LocalMap<String, FdfsConnectionPool> map, String poolName) {
 		this.vertx = vertx;
 		this.client = vertx.createNetClient(options);
-		this.poolSize = poolSize;
+		this.poolSize = Math.max(1, poolOptions.getPoolSize());
+		this.minPoolSize = Math.min(poolSize, Math.max(0, poolOptions.getMinPoolSize()));
+		this.maxWaitQueueSize = poolOptions.getMaxWaitQueueSize();
+		this.acquireTimeout = poolOptions.getAcquireTimeout();
+		this.idleTimeout = poolOptions.getIdleTimeout();
+		this.maxLifetime = poolOptions.getMaxLifetime();
+		this.networkTimeout = poolOptions.getNetworkTimeout();
+		this.keepAliveInterval = poolOptions.getKeepAliveInterval();
+		this.testOnBorrow = poolOptions.isTestOnBorrow();
+		this.pipelineDepth = Math.max(1, poolOptions.getPipelineDepth());
+		this.contextLocal = contextLocal;
 		
 		this.pools = new ConcurrentHashMap<>();
+		this.contextPools = new ConcurrentHashMap<>();
+
+		if (idleTimeout > 0 || maxLifetime > 0 || minPoolSize > 0 || keepAliveInterval > 0) {
+			this.evictionTimerId = vertx.setPeriodic(EVICTION_INTERVAL, id -> evict());
+		} else {
+			this.evictionTimerId = -1;
+		}
 		
 		map.put(poolName, this);
 	}
 
-	public synchronized Future<FdfsConnection> get(SocketAddress address) {
-		if (pools.containsKey(address)) {
-			return pools.get(address).next().get();
-		} else {
-			CircularConnectionPool pool = new CircularConnectionPool(client, address, poolSize);
+	public Future<FdfsConnection> get(SocketAddress address) {
+		return endpoint(address).acquire();
+	}
+
+	/**
+	 * get a connection for a small request, which may be shared with other
+	 * requests in flight when pipelining is enabled. The request must be written
+	 * with {@link FdfsConnection#request}.
+	 *
+	 * @param address the address
+	 * @return the future of the connection
+	 */
+	public Future<FdfsConnection> getShared(SocketAddress address) {
+		return endpoint(address).acquireShared();
+	}
+
+	private Endpoint endpoint(SocketAddress address) {
+		Context context = contextLocal ? unwrap(Vertx.currentContext()) : null;
 			
-			pools.put(address, pool);
+		if (context != null) {
+			return contextPools.computeIfAbsent(context, this::createContextPools).get(address);
+		}
 			
-			return pool.next().get();
+		return pools.computeIfAbsent(address, key -> new Endpoint(key, null));
+	}
+	
+	private ContextPools createContextPools(Context context) {
+		ContextPools contextPools = new ContextPools(context);
+		
+		if (context instanceof ContextInternal) {
+			((ContextInternal) context).addCloseHook(contextPools);
 		}
+		
+		return contextPools;
+	}
+
+	private void evict() {
+		pools.values().forEach(Endpoint::evict);
+		// the connections of a context are evicted and refilled on it
+		contextPools.values().forEach(contextPools -> contextPools.context
+				.runOnContext(v -> contextPools.pools.values().forEach(Endpoint::evict)));
+	}
+
+	/**
+	 * get the context a duplicated context runs on, so that all the duplicates of
+	 * an event loop context share its connections.
+	 */
+	private static Context unwrap(Context context) {
+		return context instanceof ContextInternal ? ((ContextInternal) context).unwrap() : context;
 	}
 	
 	public void incRefCount() {
@@ -67,7 +175,13 @@ public class FdfsConnectionPool implements Shareable {
 			--refCount;
 			
 			if (refCount == 0) {
+				if (evictionTimerId != -1) {
+					vertx.cancelTimer(evictionTimerId);
+				}
+				pools.values().forEach(Endpoint::close);
 				pools.clear();
+				contextPools.values().forEach(ContextPools::close);
+				contextPools.clear();
 				client.close();
 				
 				if (completeHandler != null) {
@@ -77,29 +191,404 @@ public class FdfsConnectionPool implements Shareable {
 		}
 	}
 
-	public static class CircularConnectionPool {
-		private FdfsConnection[] connections;
-		private AtomicInteger current;
-		private final int capacity;
+	/**
+	 * The connections to an address.
+	 */
+	public class Endpoint {
+		private final SocketAddress address;
+		private final Context context;
+		private final Lock lock;
+		private final Deque<FdfsConnection> idle = new ArrayDeque<>();
+		private final List<FdfsConnection> shared = new ArrayList<>();
+		private final Deque<Waiter> waiters = new ArrayDeque<>();
+		private int size;
+		private boolean closed;
 		
-		public CircularConnectionPool(NetClient client, SocketAddress address, int capacity) {
-			this.current = new AtomicInteger(0);
+		/**
+		 * @param address the address
+		 * @param context the context owning the connections, or null if they are
+		 *            shared by all the threads
+		 */
+		private Endpoint(SocketAddress address, Context context) {
+			this.address = address;
+			this.context = context;
+			this.lock = new ReentrantLock();
+		}
 			
-			this.connections = new FdfsConnection[capacity];
+		/**
+		 * get an idle connection, open a new one or wait for one to be released.
+		 *
+		 * @return the future of the connection
+		 */
+		public Future<FdfsConnection> acquire() {
+			List<FdfsConnection> expired = new ArrayList<>();
+			FdfsConnection connection;
+			Future<FdfsConnection> future = null;
 			
-			for (int i=0; i<capacity; ++i) {
-				this.connections[i] = new FdfsConnection(client, address);
+			lock.lock();
+			try {
+				connection = pollIdle(expired);
+
+				if (connection == null) {
+					future = acquireNew();
+				}
+			} finally {
+				lock.unlock();
 			}
 			
-			this.capacity = connections.length;
+			expired.forEach(FdfsConnection::close);
+
+			if (connection == null) {
+				return future;
+			}
+
+			if (!testOnBorrow) {
+				return Future.succeededFuture(connection);
+			}
+
+			return activeTest(connection).transform(ar -> {
+				if (ar.succeeded()) {
+					return Future.succeededFuture(connection);
+				}
+
+				connection.close();
+				recycle(connection);
+
+				return acquire();
+			});
+		}
+
+		/**
+		 * get a connection with room in its pipeline, or acquire one for the
+		 * pipeline.
+		 *
+		 * @return the future of the connection
+		 */
+		public Future<FdfsConnection> acquireShared() {
+			if (pipelineDepth <= 1) {
+				return acquire();
+			}
+
+			lock.lock();
+			try {
+				for (FdfsConnection connection : shared) {
+					if (connection.isConnected() && connection.inFlight < pipelineDepth) {
+						++connection.inFlight;
+						return Future.succeededFuture(connection);
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+
+			return acquire().map(connection -> {
+				lock.lock();
+				try {
+					connection.inFlight = 1;
+					shared.add(connection);
+				} finally {
+					lock.unlock();
+				}
+				return connection;
+			});
+		}
+		
+		private FdfsConnection pollIdle(List<FdfsConnection> expired) {
+			long now = System.currentTimeMillis();
+			FdfsConnection connection;
+
+			while ((connection = idle.pollFirst()) != null) {
+				if (isUsable(connection, now)) {
+					return connection;
+				}
+
+				--size;
+				expired.add(connection);
+			}
+
+			return null;
+		}
+
+		private Future<FdfsConnection> acquireNew() {
+			if (closed) {
+				return Future.failedFuture(new FdfsException("connection pool closed"));
+			}
+
+			if (size < poolSize) {
+				++size;
+				return connect();
+			}
+
+			if (maxWaitQueueSize >= 0 && waiters.size() >= maxWaitQueueSize) {
+				return Future.failedFuture(new FdfsException("too many requests waiting for a connection to " + address));
+			}
+
+			Waiter waiter = new Waiter();
+			waiters.addLast(waiter);
+
+			if (acquireTimeout > 0) {
+				waiter.timerId = vertx.setTimer(acquireTimeout, id -> timeout(waiter));
+			}
+
+			return waiter.promise.future();
+		}
+		
+		/**
+		 * hand a released connection to the next waiter, or keep it idle.
+		 *
+		 * @param connection the connection
+		 */
+		void recycle(FdfsConnection connection) {
+			if (!isOnContext()) {
+				context.runOnContext(v -> recycle(connection));
+				return;
+			}
+
+			Waiter waiter = null;
+			List<Waiter> replaced = null;
+
+			lock.lock();
+			try {
+				if (connection.inFlight > 0) {
+					if (--connection.inFlight > 0) {
+						return;
+					}
+					shared.remove(connection);
+				}
+
+				if (closed || !connection.isConnected() || isExpired(connection, System.currentTimeMillis())) {
+					--size;
+					replaced = replaceForWaiters();
+				} else if ((waiter = waiters.pollFirst()) != null) {
+					waiter.cancelTimer();
+				} else {
+					idle.addFirst(connection);
+				}
+			} finally {
+				lock.unlock();
+			}
+
+			if (replaced != null) {
+				connection.close();
+				replaced.forEach(w -> connect().onComplete(w.promise));
+			} else if (waiter != null) {
+				waiter.promise.complete(connection);
+			}
 		}
 		
-		private int getAndIncrement() {
-			return current.getAndUpdate(cur -> (cur + 1) % capacity);
+		/**
+		 * forget a connection closed by the peer while it was idle.
+		 *
+		 * @param connection the connection
+		 */
+		void remove(FdfsConnection connection) {
+			if (!isOnContext()) {
+				context.runOnContext(v -> remove(connection));
+				return;
+			}
+
+			List<Waiter> replaced;
+
+			lock.lock();
+			try {
+				if (!idle.remove(connection)) {
+					return;
+				}
+
+				--size;
+				replaced = replaceForWaiters();
+			} finally {
+				lock.unlock();
+			}
+
+			replaced.forEach(w -> connect().onComplete(w.promise));
+		}
+
+		private List<Waiter> replaceForWaiters() {
+			List<Waiter> replaced = new ArrayList<>();
+
+			while (!closed && size < poolSize && !waiters.isEmpty()) {
+				Waiter waiter = waiters.pollFirst();
+				waiter.cancelTimer();
+				replaced.add(waiter);
+				++size;
+			}
+
+			return replaced;
+		}
+
+		private void timeout(Waiter waiter) {
+			lock.lock();
+			try {
+				if (!waiters.remove(waiter)) {
+					return;
+				}
+			} finally {
+				lock.unlock();
+			}
+
+			waiter.promise.tryFail(new FdfsException("acquire connection to " + address + " timeout"));
 		}
+
+		private Future<FdfsConnection> connect() {
+			return new FdfsConnection(client, address, this).connect().onFailure(e -> {
+				lock.lock();
+				try {
+					--size;
+				} finally {
+					lock.unlock();
+				}
+			});
+		}
+
+		private void evict() {
+			List<FdfsConnection> expired = new ArrayList<>();
+			List<FdfsConnection> probed = new ArrayList<>();
+			int missing;
+
+			lock.lock();
+			try {
+				if (closed) {
+					return;
+				}
+
+				long now = System.currentTimeMillis();
+				Iterator<FdfsConnection> iterator = idle.descendingIterator();
+
+				while (iterator.hasNext()) {
+					FdfsConnection connection = iterator.next();
+
+					if (isExpired(connection, now) || (idleTimeout > 0 && size > minPoolSize
+							&& now - connection.lastUsedTime() >= idleTimeout)) {
+						iterator.remove();
+						--size;
+						expired.add(connection);
+					} else if (keepAliveInterval > 0 && now - connection.lastUsedTime() >= keepAliveInterval) {
+						iterator.remove();
+						probed.add(connection);
+					}
+				}
+
+				missing = Math.max(0, minPoolSize - size);
+				size += missing;
+			} finally {
+				lock.unlock();
+			}
+
+			expired.forEach(FdfsConnection::close);
+
+			probed.forEach(connection -> activeTest(connection).onComplete(ar -> {
+				if (ar.failed()) {
+					connection.close();
+				}
+				connection.release();
+			}));
+
+			for (int i = 0; i < missing; ++i) {
+				connect().onSuccess(FdfsConnection::release);
+			}
+		}
+
+		/**
+		 * send an active test on a connection which is not in use.
+		 *
+		 * @param connection the connection
+		 * @return the future of the test
+		 */
+		private Future<Void> activeTest(FdfsConnection connection) {
+			Future<FdfsPacket> futurePacket = FdfsProtocol.recvPacket(vertx, networkTimeout, connection,
+					FdfsProtocol.TRACKER_PROTO_CMD_RESP, 0, null);
+
+			connection.write(FdfsProtocol.packHeader(FdfsProtocol.FDFS_PROTO_CMD_ACTIVE_TEST, (byte) 0, 0));
+
+			return futurePacket.mapEmpty();
+		}
+
+		private boolean isOnContext() {
+			return context == null || unwrap(Vertx.currentContext()) == context;
+		}
+
+		private boolean isUsable(FdfsConnection connection, long now) {
+			return connection.isConnected() && !isExpired(connection, now);
+		}
+
+		private boolean isExpired(FdfsConnection connection, long now) {
+			return maxLifetime > 0 && now - connection.createTime() >= maxLifetime;
+		}
+
+		private void close() {
+			List<FdfsConnection> connections;
+			List<Waiter> waiting;
+
+			lock.lock();
+			try {
+				closed = true;
+				size -= idle.size();
+				connections = new ArrayList<>(idle);
+				waiting = new ArrayList<>(waiters);
+				idle.clear();
+				waiters.clear();
+			} finally {
+				lock.unlock();
+			}
+
+			connections.forEach(FdfsConnection::close);
+			waiting.forEach(waiter -> {
+				waiter.cancelTimer();
+				waiter.promise.tryFail(new FdfsException("connection pool closed"));
+			});
+		}
+	}
+
+	private class Waiter {
+		private final Promise<FdfsConnection> promise = Promise.promise();
+		private long timerId = -1;
+
+		private void cancelTimer() {
+			if (timerId != -1) {
+				vertx.cancelTimer(timerId);
+			}
+		}
+	}
+	
+	/**
+	 * The connections owned by a context, only accessed on that context.
+	 */
+	private class ContextPools implements Closeable {
+		private final Context context;
+		private final ConcurrentMap<SocketAddress, Endpoint> pools = new ConcurrentHashMap<>();
 		
-		public FdfsConnection next() {
-			return this.connections[getAndIncrement()];
+		private ContextPools(Context context) {
+			this.context = context;
+		}
+		
+		private Endpoint get(SocketAddress address) {
+			Endpoint pool = pools.get(address);
+			
+			if (pool == null) {
+				pool = new Endpoint(address, context);
+				pools.put(address, pool);
+			}
+			
+			return pool;
+		}
+		
+		private void close() {
+			close(Promise.promise());
+		}
+
+		@Override
+		public void close(Promise<Void> completion) {
+			contextPools.remove(context, this);
+
+			if (unwrap(Vertx.currentContext()) != context) {
+				context.runOnContext(v -> close(completion));
+				return;
+			}
+
+			pools.values().forEach(Endpoint::close);
+			pools.clear();
+			completion.complete();
 		}
 	}
 }
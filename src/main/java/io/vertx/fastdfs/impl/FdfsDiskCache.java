@@ -0,0 +1,430 @@
+package io.vertx.fastdfs.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.CopyOptions;
+import io.vertx.core.file.FileSystem;
+import io.vertx.fastdfs.FdfsCacheStats;
+import io.vertx.fastdfs.FdfsFileId;
+
+/**
+ * Keeps downloaded files in a local directory, so that they survive a restart
+ * and do not have to fit in memory.
+ * <p>
+ * A file is stored under the SHA-1 of its file id and a version, in a sub
+ * directory named by the first two hex digits, so the index is rebuilt on
+ * startup from the names, sizes and modification times of the files alone. The
+ * files are evicted in least recently used order when their total size goes
+ * over {@code maxBytes}, and the modification time of a file is updated when it
+ * is read, so the order survives a restart.
+ * <p>
+ * Each add writes a new version to a temporary file which is then moved in
+ * place, so a version is never overwritten, and only the versions taken out of
+ * the index are deleted. Like the download cache, a file is only added if no
+ * file was invalidated since the stamp was taken before its download. The stamp
+ * is checked before the move and again before the version enters the index.
+ * <p>
+ * The writes and the updates of the modification times run in the background.
+ * They are tracked, so that {@link #close()} can wait for them, and no new one
+ * starts once the cache is closed.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsDiskCache {
+
+	private static final String TEMP_EXTENSION = ".tmp";
+
+	private final Vertx vertx;
+	private final FileSystem fs;
+	private final String dir;
+	private final long maxBytes;
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final AtomicLong versions = new AtomicLong();
+	private final Set<Future<?>> pending = ConcurrentHashMap.newKeySet();
+	private final Future<Void> loaded;
+
+	private volatile boolean closed;
+
+	private long bytes;
+	private long stamp;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Create a disk cache, and start to rebuild its index from the directory.
+	 *
+	 * @param vertx the vertx instance
+	 * @param dir the directory
+	 * @param maxBytes the maximum total size of the cached files, 0 disables the cache
+	 */
+	public FdfsDiskCache(Vertx vertx, String dir, long maxBytes) {
+		this.vertx = vertx;
+		this.fs = vertx.fileSystem();
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+		this.loaded = isEnabled() ? track(vertx.<Void>executeBlocking(promise -> {
+			load();
+			promise.complete();
+		}, false).otherwiseEmpty()) : Future.succeededFuture();
+	}
+
+	public boolean isEnabled() {
+		return maxBytes > 0 && dir != null && !dir.isEmpty();
+	}
+
+	/**
+	 * get the local path of a cached file.
+	 *
+	 * @param fileId the file id
+	 * @return the path, null if the file is not cached
+	 */
+	public Future<String> get(FdfsFileId fileId) {
+		String key = key(fileId);
+
+		return loaded.map(v -> {
+			Entry entry;
+
+			synchronized (this) {
+				entry = entries.get(key);
+				if (entry == null) {
+					++misses;
+					return null;
+				}
+				++hits;
+			}
+
+			String path = path(key, entry.version);
+			if (!closed) {
+				track(vertx.executeBlocking(
+						promise -> promise.complete(new File(path).setLastModified(System.currentTimeMillis())), false));
+			}
+			return path;
+		});
+	}
+
+	/**
+	 * map a cached file to a read-only buffer, without reading it in the heap.
+	 * Only the downloads into a buffer are served from the mapping. The downloads
+	 * into a stream pipe the file, and those into a local file copy it.
+	 *
+	 * @param path the path returned by {@link #get(FdfsFileId)}
+	 * @return the buffer
+	 */
+	public Future<Buffer> map(String path) {
+		return vertx.executeBlocking(promise -> {
+			try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				promise.complete(Buffer.buffer(Unpooled.wrappedBuffer(mapped).asReadOnly()));
+			} catch (IOException e) {
+				promise.fail(e);
+			}
+		}, false);
+	}
+
+	/**
+	 * get the stamp to give to the puts once the file is downloaded.
+	 *
+	 * @return the stamp
+	 */
+	public synchronized long stamp() {
+		return stamp;
+	}
+
+	/**
+	 * cache a downloaded file held in a buffer.
+	 *
+	 * @param fileId the file id
+	 * @param body the content of the file
+	 * @param stamp the stamp taken before the download
+	 * @return the future completed when the file is cached or skipped
+	 */
+	public Future<Void> put(FdfsFileId fileId, Buffer body, long stamp) {
+		if (!isEnabled() || closed || body.length() > maxBytes) {
+			return Future.succeededFuture();
+		}
+
+		// the caller keeps the downloaded buffer and may write to it
+		Buffer copy = body.copy();
+
+		return track(add(fileId, stamp, temp -> fs.writeFile(temp, copy)));
+	}
+
+	/**
+	 * cache a downloaded file held in a local file.
+	 *
+	 * @param fileId the file id
+	 * @param fileFullPathName the path of the local file
+	 * @param stamp the stamp taken before the download
+	 * @return the future completed when the file is cached or skipped
+	 */
+	public Future<Void> put(FdfsFileId fileId, String fileFullPathName, long stamp) {
+		if (!isEnabled() || closed) {
+			return Future.succeededFuture();
+		}
+
+		return track(fs.props(fileFullPathName).compose(props -> props.size() > maxBytes ? Future.succeededFuture()
+				: add(fileId, stamp, temp -> fs.copy(fileFullPathName, temp))));
+	}
+
+	/**
+	 * remove a cached file, after it is modified or deleted.
+	 *
+	 * @param fileId the file id
+	 */
+	public void invalidate(FdfsFileId fileId) {
+		if (!isEnabled()) {
+			return;
+		}
+
+		String key = key(fileId);
+		Entry entry;
+
+		synchronized (this) {
+			++stamp;
+			entry = entries.remove(key);
+			if (entry != null) {
+				bytes -= entry.size;
+			}
+		}
+
+		if (entry != null) {
+			fs.delete(path(key, entry.version));
+		}
+	}
+
+	public synchronized FdfsCacheStats stats() {
+		return new FdfsCacheStats().setHits(hits).setMisses(misses).setEvictions(evictions).setSize(entries.size())
+				.setBytes(bytes);
+	}
+
+	/**
+	 * stop caching new files, and wait for the files being added and the
+	 * modification times being updated. Their failures are ignored, since a file
+	 * which is not fully written stays a temporary file and is removed on the next
+	 * startup.
+	 *
+	 * @return the future completed when nothing is pending
+	 */
+	public Future<Void> close() {
+		closed = true;
+		return CompositeFuture.join(new ArrayList<>(pending)).<Void>mapEmpty().otherwiseEmpty();
+	}
+
+	private <T> Future<T> track(Future<T> future) {
+		pending.add(future);
+		future.onComplete(ar -> pending.remove(future));
+		return future;
+	}
+
+	private Future<Void> add(FdfsFileId fileId, long stamp, Function<String, Future<Void>> write) {
+		String key = key(fileId);
+
+		return loaded.compose(v -> {
+			long version = versions.incrementAndGet();
+			String path = path(key, version);
+			String temp = path + TEMP_EXTENSION;
+
+			return fs.mkdirs(new File(path).getParent())
+					.compose(v2 -> write.apply(temp))
+					.compose(v2 -> fs.props(temp))
+					.compose(props -> {
+						// a download which raced an invalidation is dropped before it is moved in place
+						if (isStale(stamp)) {
+							return fs.delete(temp);
+						}
+
+						return fs.move(temp, path, new CopyOptions().setAtomicMove(true))
+								.compose(v2 -> index(key, version, props.size(), stamp));
+					})
+					.recover(e -> fs.exists(temp).compose(exists -> exists ? fs.delete(temp) : Future.succeededFuture()));
+		});
+	}
+
+	private Future<Void> index(String key, long version, long size, long stamp) {
+		List<String> deleted = new ArrayList<>();
+
+		synchronized (this) {
+			if (stamp != this.stamp) {
+				// invalidated while the file was moved, the version never entered the index
+				deleted.add(path(key, version));
+			} else {
+				Entry previous = entries.put(key, new Entry(size, version));
+				bytes += size;
+				if (previous != null) {
+					bytes -= previous.size;
+					deleted.add(path(key, previous.version));
+				}
+				evict(key, deleted);
+			}
+		}
+
+		List<Future<Void>> deletes = new ArrayList<>();
+		deleted.forEach(path -> deletes.add(fs.delete(path).otherwiseEmpty()));
+		return CompositeFuture.join(new ArrayList<>(deletes)).mapEmpty();
+	}
+
+	private synchronized boolean isStale(long stamp) {
+		return stamp != this.stamp;
+	}
+
+	private void evict(String kept, List<String> evicted) {
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+
+		while (bytes > maxBytes && iterator.hasNext()) {
+			Map.Entry<String, Entry> eldest = iterator.next();
+			if (eldest.getKey().equals(kept)) {
+				continue;
+			}
+
+			iterator.remove();
+			bytes -= eldest.getValue().size;
+			evicted.add(path(eldest.getKey(), eldest.getValue().version));
+			++evictions;
+		}
+	}
+
+	/**
+	 * rebuild the index from the cached files, the least recently used first, and
+	 * remove the temporary files left by a crash.
+	 */
+	private void load() {
+		Path root = Paths.get(dir);
+		if (!Files.isDirectory(root)) {
+			return;
+		}
+
+		Map<String, CachedFile> found = new HashMap<>();
+		List<Path> deleted = new ArrayList<>();
+
+		try (Stream<Path> paths = Files.walk(root, 2)) {
+			paths.filter(path -> path.getNameCount() == root.getNameCount() + 2 && Files.isRegularFile(path))
+					.forEach(path -> {
+						String name = path.getFileName().toString();
+						int dot = name.lastIndexOf('.');
+
+						try {
+							if (name.endsWith(TEMP_EXTENSION) || dot < 0) {
+								deleted.add(path);
+								return;
+							}
+
+							BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+							CachedFile file = new CachedFile(name.substring(0, dot), Long.parseLong(name.substring(dot + 1)),
+									attributes.size(), attributes.lastModifiedTime().toMillis());
+
+							// a crash may leave the version a newer one replaced
+							CachedFile other = found.get(file.key);
+							if (other == null || other.version < file.version) {
+								found.put(file.key, file);
+								file = other;
+							}
+							if (file != null) {
+								deleted.add(Paths.get(path(file.key, file.version)));
+							}
+						} catch (IOException | NumberFormatException e) {
+							// a file which can not be read is left out of the index
+						}
+					});
+		} catch (IOException e) {
+			return;
+		}
+
+		List<CachedFile> files = new ArrayList<>(found.values());
+		files.sort(Comparator.comparingLong(file -> file.lastModified));
+		List<String> evicted = new ArrayList<>();
+
+		synchronized (this) {
+			for (CachedFile file : files) {
+				entries.put(file.key, new Entry(file.size, file.version));
+				bytes += file.size;
+				versions.accumulateAndGet(file.version, Math::max);
+			}
+			evict(null, evicted);
+		}
+
+		evicted.forEach(path -> deleted.add(Paths.get(path)));
+		for (Path path : deleted) {
+			try {
+				Files.deleteIfExists(path);
+			} catch (IOException e) {
+				// the file is out of the index anyway
+			}
+		}
+	}
+
+	private String path(String key, long version) {
+		return dir + File.separator + key.substring(0, 2) + File.separator + key + '.' + version;
+	}
+
+	private static String key(FdfsFileId fileId) {
+		try {
+			byte[] bytes = MessageDigest.getInstance("SHA-1").digest(fileId.toString().getBytes(StandardCharsets.UTF_8));
+			StringBuilder builder = new StringBuilder(bytes.length * 2);
+
+			for (byte b : bytes) {
+				builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			return String.format("%08x", fileId.toString().hashCode());
+		}
+	}
+
+	private static final class Entry {
+		private final long size;
+		private final long version;
+
+		private Entry(long size, long version) {
+			this.size = size;
+			this.version = version;
+		}
+	}
+
+	private static final class CachedFile {
+		private final String key;
+		private final long version;
+		private final long size;
+		private final long lastModified;
+
+		private CachedFile(String key, long version, long size, long lastModified) {
+			this.key = key;
+			this.version = version;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+	}
+}
@@ -0,0 +1,267 @@
+package io.vertx.fastdfs.impl;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.fastdfs.FdfsCacheStats;
+import io.vertx.fastdfs.FdfsFileId;
+
+/**
+ * Caches the downloaded ranges of small files, so that repeated downloads of
+ * the same range do not go to the tracker and the storage.
+ * <p>
+ * The entries are evicted in least recently used order when their total size
+ * goes over {@code maxBytes}, and ranges larger than {@code maxEntryBytes} are
+ * not cached. The cached bodies are served as read-only buffers.
+ * <p>
+ * The bodies are kept in the heap, or in direct buffers when
+ * {@code directBuffers} is set. The direct memory of an evicted body is freed
+ * by the garbage collector once the buffers served from it are unreachable,
+ * rather than given back to a pool, since the served buffers are not reference
+ * counted. So {@code maxBytes} is not a hard limit on the direct memory, which
+ * can go over it by the evicted bodies still held by the callers, and is
+ * bounded by {@code -XX:MaxDirectMemorySize}.
+ * <p>
+ * A download takes a stamp before it starts, and its body is only cached if no
+ * file was invalidated in between, so a download racing with a modification
+ * never caches the old content.
+ *
+ * @author GengTeng
+ *         <p>
+ *         me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsDownloadCache {
+
+	private final long maxBytes;
+	private final long maxEntryBytes;
+	private final long ttl;
+	private final boolean directBuffers;
+	private final LinkedHashMap<Key, Entry> entries;
+	private final Map<String, Set<Key>> files;
+
+	private long bytes;
+	private long stamp;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Create a download cache.
+	 *
+	 * @param maxBytes the maximum total size of the cached bodies, 0 disables the cache
+	 * @param maxEntryBytes the maximum size of a cached body
+	 * @param ttl time to live of an entry in milliseconds, 0 means the entries do not expire
+	 * @param directBuffers whether the bodies are kept in direct buffers
+	 */
+	public FdfsDownloadCache(long maxBytes, long maxEntryBytes, long ttl, boolean directBuffers) {
+		this.maxBytes = maxBytes;
+		this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+		this.ttl = ttl;
+		this.directBuffers = directBuffers;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		this.files = new HashMap<>();
+	}
+
+	public boolean isEnabled() {
+		return maxBytes > 0 && maxEntryBytes > 0;
+	}
+
+	/**
+	 * whether a range may be cached, before it is downloaded.
+	 *
+	 * @param bytes the length of the range, 0 means to the end of the file
+	 * @return false if the range is known to be too large
+	 */
+	public boolean accepts(long bytes) {
+		return isEnabled() && bytes <= maxEntryBytes;
+	}
+
+	/**
+	 * get the cached body of a range.
+	 *
+	 * @param fileId the file id
+	 * @param offset the offset of the range
+	 * @param bytes the length of the range
+	 * @return a read-only buffer, or null if absent or expired
+	 */
+	public synchronized Buffer get(FdfsFileId fileId, long offset, long bytes) {
+		Key key = new Key(fileId.toString(), offset, bytes);
+		Entry entry = entries.get(key);
+
+		if (entry != null && entry.expireTime < System.currentTimeMillis()) {
+			remove(key);
+			++evictions;
+			entry = null;
+		}
+
+		if (entry == null) {
+			++misses;
+			return null;
+		}
+
+		++hits;
+		return Buffer.buffer(entry.body.asReadOnly());
+	}
+
+	/**
+	 * get the stamp to give to {@link #put(FdfsFileId, long, long, Buffer, long)}
+	 * once the range is downloaded.
+	 *
+	 * @return the stamp
+	 */
+	public synchronized long stamp() {
+		return stamp;
+	}
+
+	/**
+	 * cache the body of a range, unless a file was invalidated since the stamp
+	 * was taken.
+	 *
+	 * @param fileId the file id
+	 * @param offset the offset of the range
+	 * @param bytes the length of the range
+	 * @param body the body
+	 * @param stamp the stamp taken before the download
+	 */
+	public void put(FdfsFileId fileId, long offset, long bytes, Buffer body, long stamp) {
+		if (!isEnabled() || body.length() > maxEntryBytes) {
+			return;
+		}
+
+		// the body may be a view of a larger buffer or of a mapped file, so the
+		// cache keeps a copy of its own
+		ByteBuf copy = copy(body);
+
+		synchronized (this) {
+			if (stamp != this.stamp) {
+				return;
+			}
+
+			Key key = new Key(fileId.toString(), offset, bytes);
+			remove(key);
+
+			entries.put(key, new Entry(copy, ttl > 0 ? System.currentTimeMillis() + ttl : Long.MAX_VALUE));
+			files.computeIfAbsent(key.fileId, k -> new HashSet<>()).add(key);
+			this.bytes += copy.readableBytes();
+
+			Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+			while (this.bytes > maxBytes && iterator.hasNext()) {
+				Map.Entry<Key, Entry> eldest = iterator.next();
+				iterator.remove();
+				unlink(eldest.getKey(), eldest.getValue().body.readableBytes());
+				++evictions;
+			}
+		}
+	}
+
+	/**
+	 * remove all the cached ranges of a file, after it is modified or deleted.
+	 *
+	 * @param fileId the file id
+	 */
+	public synchronized void invalidate(FdfsFileId fileId) {
+		++stamp;
+
+		Set<Key> keys = files.get(fileId.toString());
+		if (keys == null) {
+			return;
+		}
+
+		for (Key key : keys.toArray(new Key[0])) {
+			remove(key);
+		}
+	}
+
+	public synchronized void clear() {
+		++stamp;
+		entries.clear();
+		files.clear();
+		bytes = 0;
+	}
+
+	public synchronized FdfsCacheStats stats() {
+		return new FdfsCacheStats().setHits(hits).setMisses(misses).setEvictions(evictions).setSize(entries.size())
+				.setBytes(bytes);
+	}
+
+	private ByteBuf copy(Buffer body) {
+		if (!directBuffers) {
+			return Unpooled.wrappedBuffer(body.getBytes());
+		}
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(body.length());
+		direct.put(body.getByteBuf().nioBuffer());
+		direct.flip();
+
+		return Unpooled.wrappedBuffer(direct);
+	}
+
+	private void remove(Key key) {
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			unlink(key, entry.body.readableBytes());
+		}
+	}
+
+	private void unlink(Key key, long length) {
+		Set<Key> keys = files.get(key.fileId);
+		if (keys != null) {
+			keys.remove(key);
+			if (keys.isEmpty()) {
+				files.remove(key.fileId);
+			}
+		}
+
+		bytes -= length;
+	}
+
+	private static final class Key {
+		private final String fileId;
+		private final long offset;
+		private final long bytes;
+
+		private Key(String fileId, long offset, long bytes) {
+			this.fileId = fileId;
+			this.offset = offset;
+			this.bytes = bytes;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return offset == other.offset && bytes == other.bytes && fileId.equals(other.fileId);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(fileId, offset, bytes);
+		}
+	}
+
+	private static final class Entry {
+		private final ByteBuf body;
+		private final long expireTime;
+
+		private Entry(ByteBuf body, long expireTime) {
+			this.body = body;
+			this.expireTime = expireTime;
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package io.vertx.fastdfs.impl;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.streams.WriteStream;
+
+/**
+ * Writes the received buffers to a file with positional writes.
+ * <p>
+ * Every buffer is written at the position following the previous one, without
+ * going through the write queue of the {@code AsyncFile}. The stream is full
+ * when the bytes being written reach the high water mark, and drains when they
+ * fall to half of it.
+ * <p>
+ * The file can be extended to its final size before the first buffer is
+ * written, the buffers received meanwhile are written once it is done.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsFileWriteStream implements WriteStream<Buffer> {
+
+	public static final int DEFAULT_HIGH_WATER_MARK = 4 * 1024 * 1024;
+
+	private final AsyncFile file;
+	private long position;
+	private long written;
+	private long pending;
+	private int highWaterMark = DEFAULT_HIGH_WATER_MARK;
+	private Throwable failure;
+	private Handler<Void> drainHandler;
+	private Handler<Throwable> exceptionHandler;
+	private Promise<Void> endPromise;
+	private Future<Void> ready = Future.succeededFuture();
+
+	public FdfsFileWriteStream(AsyncFile file) {
+		this(file, 0);
+	}
+
+	public FdfsFileWriteStream(AsyncFile file, long position) {
+		this.file = file;
+		this.position = position;
+	}
+
+	/**
+	 * get the number of bytes written to the file.
+	 *
+	 * @return the number of bytes written
+	 */
+	public synchronized long written() {
+		return written;
+	}
+
+	/**
+	 * extend the file to hold {@code length} more bytes from the current position,
+	 * by writing its last byte through the same file. The writes wait for it, and
+	 * its failure fails the stream.
+	 *
+	 * @param length the number of bytes which will be written
+	 * @return the future of the preallocation
+	 */
+	public Future<Void> preallocate(long length) {
+		if (length <= 0) {
+			return Future.succeededFuture();
+		}
+
+		Future<Void> preallocated;
+
+		synchronized (this) {
+			preallocated = file.write(Buffer.buffer(new byte[1]), position + length - 1);
+			ready = preallocated.otherwiseEmpty();
+		}
+
+		return preallocated.onFailure(e -> {
+			Handler<Throwable> exception;
+
+			synchronized (this) {
+				if (failure != null) {
+					return;
+				}
+				failure = e;
+				exception = exceptionHandler;
+			}
+
+			if (exception != null) {
+				exception.handle(e);
+			}
+		});
+	}
+
+	@Override
+	public FdfsFileWriteStream exceptionHandler(Handler<Throwable> handler) {
+		synchronized (this) {
+			exceptionHandler = handler;
+		}
+		return this;
+	}
+
+	@Override
+	public Future<Void> write(Buffer data) {
+		Promise<Void> promise = Promise.promise();
+		write(data, promise);
+		return promise.future();
+	}
+
+	@Override
+	public void write(Buffer data, Handler<AsyncResult<Void>> handler) {
+		int length = data.length();
+		long writePosition;
+		Future<Void> preallocated;
+
+		synchronized (this) {
+			writePosition = position;
+			position += length;
+			pending += length;
+			preallocated = ready;
+		}
+
+		if (preallocated.isComplete()) {
+			write(data, writePosition, length, handler);
+		} else {
+			preallocated.onComplete(v -> write(data, writePosition, length, handler));
+		}
+	}
+
+	private void write(Buffer data, long writePosition, int length, Handler<AsyncResult<Void>> handler) {
+		file.write(data, writePosition, ar -> {
+			Handler<Void> drain = null;
+			Handler<Throwable> exception = null;
+			Promise<Void> end = null;
+
+			synchronized (this) {
+				pending -= length;
+
+				if (ar.succeeded()) {
+					written += length;
+				} else if (failure == null) {
+					failure = ar.cause();
+					exception = exceptionHandler;
+				}
+
+				if (drainHandler != null && pending <= highWaterMark / 2) {
+					drain = drainHandler;
+					drainHandler = null;
+				}
+
+				if (pending == 0 && endPromise != null) {
+					end = endPromise;
+					endPromise = null;
+				}
+			}
+
+			if (handler != null) {
+				handler.handle(ar);
+			}
+
+			if (exception != null) {
+				exception.handle(ar.cause());
+			}
+
+			if (drain != null) {
+				drain.handle(null);
+			}
+
+			if (end != null) {
+				completeEnd(end);
+			}
+		});
+	}
+
+	@Override
+	public void end(Handler<AsyncResult<Void>> handler) {
+		Promise<Void> promise = Promise.promise();
+		promise.future().onComplete(handler);
+
+		synchronized (this) {
+			if (pending > 0) {
+				endPromise = promise;
+				return;
+			}
+		}
+
+		completeEnd(promise);
+	}
+
+	private void completeEnd(Promise<Void> promise) {
+		Throwable cause;
+
+		synchronized (this) {
+			cause = failure;
+		}
+
+		if (cause != null) {
+			promise.fail(cause);
+		} else {
+			promise.complete();
+		}
+	}
+
+	@Override
+	public FdfsFileWriteStream setWriteQueueMaxSize(int maxSize) {
+		synchronized (this) {
+			highWaterMark = maxSize;
+		}
+		return this;
+	}
+
+	@Override
+	public synchronized boolean writeQueueFull() {
+		return pending >= highWaterMark;
+	}
+
+	@Override
+	public FdfsFileWriteStream drainHandler(Handler<Void> handler) {
+		boolean drained;
+
+		synchronized (this) {
+			drained = pending <= highWaterMark / 2;
+			drainHandler = drained ? null : handler;
+		}
+
+		if (drained && handler != null) {
+			handler.handle(null);
+		}
+
+		return this;
+	}
+}
@@ -0,0 +1,205 @@
+package io.vertx.fastdfs.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.fastdfs.FdfsFileId;
+
+/**
+ * Downloads a range of a file from a replica, and requests the same range from
+ * another replica when the first byte is late.
+ * <p>
+ * The range is requested from the first replica. If its first byte has not
+ * arrived after {@code delay} milliseconds, or if it fails before that, the
+ * range is requested from the second replica. The first download to receive a
+ * byte wins, and the other one is cancelled, which closes its connection. At
+ * most two downloads are made.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsHedgedDownload {
+
+	private final Vertx vertx;
+	private final FdfsReadBalancer balancer;
+	private final FdfsFileId fileId;
+	private final long offset;
+	private final long bytes;
+	private final List<FdfsStorage> replicas;
+	private final long delay;
+	private final Promise<Buffer> promise = Promise.promise();
+	private final List<Attempt> attempts = new ArrayList<>(2);
+
+	private long timerId = -1;
+	private Attempt winner;
+	private BiConsumer<FdfsStorage, Throwable> failureHandler;
+
+	/**
+	 * @param vertx the vertx instance
+	 * @param balancer the read balancer which records the downloads
+	 * @param fileId the file id
+	 * @param offset the offset of the range
+	 * @param bytes the length of the range, 0 means to the end of the file
+	 * @param replicas the replicas in order of preference
+	 * @param delay the time to wait for the first byte before the hedged download,
+	 *            0 means to hedge only a failed download
+	 */
+	public FdfsHedgedDownload(Vertx vertx, FdfsReadBalancer balancer, FdfsFileId fileId, long offset, long bytes,
+			List<FdfsStorage> replicas, long delay) {
+		this.vertx = vertx;
+		this.balancer = balancer;
+		this.fileId = fileId;
+		this.offset = offset;
+		this.bytes = bytes;
+		this.replicas = replicas;
+		this.delay = delay;
+	}
+
+	/**
+	 * set the handler called with each storage a download failed on and the cause,
+	 * except the cancelled downloads.
+	 *
+	 * @param handler the failure handler
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public FdfsHedgedDownload failureHandler(BiConsumer<FdfsStorage, Throwable> handler) {
+		this.failureHandler = handler;
+		return this;
+	}
+
+	/**
+	 * start the download.
+	 *
+	 * @return the future of the downloaded range
+	 */
+	public Future<Buffer> start() {
+		launch();
+
+		if (replicas.size() > 1 && delay > 0) {
+			synchronized (this) {
+				if (winner == null && attempts.size() == 1) {
+					timerId = vertx.setTimer(delay, id -> hedge());
+				}
+			}
+		}
+
+		return promise.future();
+	}
+
+	private void hedge() {
+		synchronized (this) {
+			timerId = -1;
+			if (winner != null || attempts.size() != 1 || promise.future().isComplete()) {
+				return;
+			}
+		}
+
+		launch();
+	}
+
+	private void launch() {
+		Attempt attempt;
+
+		synchronized (this) {
+			attempt = new Attempt(replicas.get(attempts.size()));
+			attempts.add(attempt);
+		}
+
+		attempt.start = balancer.begin(attempt.storage);
+		attempt.storage.download(fileId, offset, bytes, length -> onFirstByte(attempt), attempt.cancel.future(),
+				ar -> onResult(attempt, ar));
+	}
+
+	private void onFirstByte(Attempt attempt) {
+		List<Attempt> losers;
+
+		synchronized (this) {
+			if (winner != null) {
+				return;
+			}
+
+			winner = attempt;
+			cancelTimer();
+			losers = others(attempt);
+		}
+
+		balancer.firstByte(attempt.start);
+		losers.forEach(loser -> loser.cancel.tryComplete());
+	}
+
+	private void onResult(Attempt attempt, AsyncResult<Buffer> ar) {
+		// a cancelled loser is not a measure of its replica
+		balancer.end(attempt.storage, attempt.start, ar.succeeded() && !attempt.cancel.future().isComplete());
+
+		if (ar.succeeded()) {
+			List<Attempt> losers;
+			synchronized (this) {
+				cancelTimer();
+				losers = others(attempt);
+			}
+
+			losers.forEach(loser -> loser.cancel.tryComplete());
+			promise.tryComplete(ar.result());
+			return;
+		}
+
+		if (attempt.cancel.future().isComplete()) {
+			return;
+		}
+
+		if (failureHandler != null) {
+			failureHandler.accept(attempt.storage, ar.cause());
+		}
+
+		boolean retry;
+		boolean last;
+
+		synchronized (this) {
+			retry = winner == null && attempts.size() == 1 && replicas.size() > 1;
+			if (retry) {
+				cancelTimer();
+			}
+			last = winner == attempt || attempts.stream().allMatch(a -> a == attempt || a.done);
+			attempt.done = true;
+		}
+
+		if (retry) {
+			launch();
+		} else if (last) {
+			promise.tryFail(ar.cause());
+		}
+	}
+
+	private List<Attempt> others(Attempt attempt) {
+		List<Attempt> others = new ArrayList<>(attempts);
+		others.remove(attempt);
+		return others;
+	}
+
+	private void cancelTimer() {
+		if (timerId != -1) {
+			vertx.cancelTimer(timerId);
+			timerId = -1;
+		}
+	}
+
+	private static final class Attempt {
+		private final FdfsStorage storage;
+		private final Promise<Void> cancel = Promise.promise();
+		private long start;
+		private boolean done;
+
+		private Attempt(FdfsStorage storage) {
+			this.storage = storage;
+		}
+	}
+}
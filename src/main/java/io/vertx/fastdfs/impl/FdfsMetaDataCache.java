@@ -0,0 +1,193 @@
+package io.vertx.fastdfs.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.fastdfs.FdfsCacheStats;
+import io.vertx.fastdfs.FdfsFileId;
+import io.vertx.fastdfs.utils.FdfsProtocol;
+
+/**
+ * Caches the metadata of the files, so that repeated reads of the metadata of
+ * the same file do not go to the tracker and the storage.
+ * <p>
+ * The entries expire after {@code ttl} milliseconds, and are evicted in least
+ * recently used order over {@code maxSize} entries. The metadata set through
+ * the client is written through to the cache, and the entry of a deleted file
+ * is removed. The cached objects are copied in and out, so the callers may
+ * modify them.
+ * <p>
+ * Like the download cache, a read takes a stamp before it starts, and its
+ * metadata is only cached if no metadata was changed in between.
+ *
+ * @author GengTeng
+ *         <p>
+ *         me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsMetaDataCache {
+
+	private final long ttl;
+	private final int maxSize;
+	private final String charset;
+	private final LinkedHashMap<String, Entry> entries;
+
+	private long stamp;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Create a metadata cache.
+	 *
+	 * @param ttl time to live of an entry in milliseconds, 0 disables the cache
+	 * @param maxSize the maximum number of entries
+	 * @param charset the charset of the client, which the metadata is sent in
+	 */
+	public FdfsMetaDataCache(long ttl, int maxSize, String charset) {
+		this.ttl = ttl;
+		this.maxSize = maxSize;
+		this.charset = charset;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	public boolean isEnabled() {
+		return ttl > 0 && maxSize > 0;
+	}
+
+	/**
+	 * get the cached metadata of a file.
+	 *
+	 * @param fileId the file id
+	 * @return a copy of the metadata, or null if absent or expired
+	 */
+	public synchronized JsonObject get(FdfsFileId fileId) {
+		String key = fileId.toString();
+		Entry entry = entries.get(key);
+
+		if (entry != null && entry.expireTime < System.currentTimeMillis()) {
+			entries.remove(key);
+			++evictions;
+			entry = null;
+		}
+
+		if (entry == null) {
+			++misses;
+			return null;
+		}
+
+		++hits;
+		return entry.metaData.copy();
+	}
+
+	/**
+	 * get the stamp to give to {@link #put(FdfsFileId, JsonObject, long)} once
+	 * the metadata is read.
+	 *
+	 * @return the stamp
+	 */
+	public synchronized long stamp() {
+		return stamp;
+	}
+
+	/**
+	 * cache the metadata read from the storage, unless a metadata was changed
+	 * since the stamp was taken.
+	 *
+	 * @param fileId the file id
+	 * @param metaData the metadata
+	 * @param stamp the stamp taken before the read
+	 */
+	public synchronized void put(FdfsFileId fileId, JsonObject metaData, long stamp) {
+		if (!isEnabled() || stamp != this.stamp) {
+			return;
+		}
+
+		add(fileId.toString(), metaData.copy());
+	}
+
+	/**
+	 * write through the metadata set on the storage.
+	 * <p>
+	 * An overwrite replaces the entry. A merge is applied to the entry, and is
+	 * not cached when there is no entry, since the other keys are unknown.
+	 *
+	 * @param fileId the file id
+	 * @param metaData the metadata which was set
+	 * @param flag {@link FdfsProtocol#STORAGE_SET_METADATA_FLAG_OVERWRITE} or
+	 *            {@link FdfsProtocol#STORAGE_SET_METADATA_FLAG_MERGE}
+	 */
+	public void update(FdfsFileId fileId, JsonObject metaData, byte flag) {
+		if (!isEnabled()) {
+			return;
+		}
+
+		// cache what the storage answers, with the values read back as strings
+		JsonObject stored = FdfsProtocol.parseMetaData(FdfsProtocol.packMetaData(metaData, charset), charset);
+		String key = fileId.toString();
+
+		synchronized (this) {
+			++stamp;
+
+			if (flag == FdfsProtocol.STORAGE_SET_METADATA_FLAG_OVERWRITE) {
+				add(key, stored);
+				return;
+			}
+
+			Entry entry = entries.remove(key);
+			if (flag == FdfsProtocol.STORAGE_SET_METADATA_FLAG_MERGE && entry != null
+					&& entry.expireTime >= System.currentTimeMillis()) {
+				add(key, entry.metaData.mergeIn(stored));
+			}
+		}
+	}
+
+	/**
+	 * remove the cached metadata of a file, after it is deleted or when its
+	 * metadata is unknown.
+	 *
+	 * @param fileId the file id
+	 */
+	public void invalidate(FdfsFileId fileId) {
+		if (!isEnabled()) {
+			return;
+		}
+
+		synchronized (this) {
+			++stamp;
+			entries.remove(fileId.toString());
+		}
+	}
+
+	public synchronized void clear() {
+		++stamp;
+		entries.clear();
+	}
+
+	public synchronized FdfsCacheStats stats() {
+		return new FdfsCacheStats().setHits(hits).setMisses(misses).setEvictions(evictions).setSize(entries.size());
+	}
+
+	private void add(String key, JsonObject metaData) {
+		entries.put(key, new Entry(metaData, System.currentTimeMillis() + ttl));
+
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (entries.size() > maxSize && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+			++evictions;
+		}
+	}
+
+	private static final class Entry {
+		private final JsonObject metaData;
+		private final long expireTime;
+
+		private Entry(JsonObject metaData, long expireTime) {
+			this.metaData = metaData;
+			this.expireTime = expireTime;
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package io.vertx.fastdfs.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.vertx.core.net.SocketAddress;
+import io.vertx.fastdfs.FdfsReadBalancePolicy;
+
+/**
+ * Spreads the downloads of a file over the storages holding a replica of it.
+ * <p>
+ * The balancer keeps, for each storage address, the number of downloads in
+ * flight and a moving average of the latency of the recent successful
+ * downloads, since a failed or cancelled one says little about the replica. The
+ * replicas are ranked by the policy, and a rotating start breaks the ties, so
+ * equal replicas share the load.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsReadBalancer {
+
+	/**
+	 * the weight of the latest sample in the moving average of the latency.
+	 */
+	private static final double LATENCY_WEIGHT = 0.2;
+
+	/**
+	 * the number of recent first byte latencies kept for the percentiles.
+	 */
+	private static final int WINDOW_SIZE = 256;
+
+	/**
+	 * the number of first byte latencies needed before a percentile is given.
+	 */
+	private static final int MIN_SAMPLES = 20;
+
+	private final FdfsReadBalancePolicy policy;
+	private final Map<SocketAddress, Replica> replicas = new ConcurrentHashMap<>();
+	private final AtomicInteger next = new AtomicInteger();
+	private final double[] firstBytes = new double[WINDOW_SIZE];
+
+	private int firstByteCount;
+
+	public FdfsReadBalancer(FdfsReadBalancePolicy policy) {
+		this.policy = policy;
+	}
+
+	/**
+	 * rank the replicas of a file, the preferred one first.
+	 *
+	 * @param storages the storages holding the file
+	 * @return the storages in order of preference
+	 */
+	public List<FdfsStorage> rank(List<FdfsStorage> storages) {
+		if (policy == FdfsReadBalancePolicy.NONE) {
+			return new ArrayList<>(storages);
+		}
+
+		int size = storages.size();
+		int start = size > 1 ? (next.getAndIncrement() & Integer.MAX_VALUE) % size : 0;
+		List<FdfsStorage> ranked = new ArrayList<>(size);
+
+		for (int i = 0; i < size; ++i) {
+			ranked.add(storages.get((start + i) % size));
+		}
+
+		if (policy == FdfsReadBalancePolicy.LEAST_IN_FLIGHT) {
+			ranked.sort(Comparator.comparingInt(storage -> replica(storage).inFlight.get()));
+		} else if (policy == FdfsReadBalancePolicy.LOWEST_LATENCY) {
+			// a replica without samples comes first, so that every replica gets measured
+			ranked.sort(Comparator.comparingDouble(storage -> replica(storage).getLatency()));
+		}
+
+		return ranked;
+	}
+
+	/**
+	 * record the start of a download from a storage.
+	 *
+	 * @param storage the storage
+	 * @return the start time, to be given back to {@link #end(FdfsStorage, long, boolean)}
+	 */
+	public long begin(FdfsStorage storage) {
+		replica(storage).inFlight.incrementAndGet();
+		return System.nanoTime();
+	}
+
+	/**
+	 * record the end of a download from a storage.
+	 *
+	 * @param storage the storage
+	 * @param start the start time returned by {@link #begin(FdfsStorage)}
+	 * @param succeeded whether the download completed, only those are sampled
+	 */
+	public void end(FdfsStorage storage, long start, boolean succeeded) {
+		Replica replica = replica(storage);
+		replica.inFlight.decrementAndGet();
+		if (succeeded) {
+			replica.sample((System.nanoTime() - start) / 1_000_000.0);
+		}
+	}
+
+	/**
+	 * record the arrival of the first byte of a download.
+	 *
+	 * @param start the start time returned by {@link #begin(FdfsStorage)}
+	 */
+	public synchronized void firstByte(long start) {
+		firstBytes[firstByteCount++ % WINDOW_SIZE] = (System.nanoTime() - start) / 1_000_000.0;
+		if (firstByteCount == 2 * WINDOW_SIZE) {
+			firstByteCount = WINDOW_SIZE;
+		}
+	}
+
+	/**
+	 * get a percentile of the recent first byte latencies.
+	 *
+	 * @param percentile the percentile, from 0 to 100
+	 * @return the latency in milliseconds, -1 if too few downloads are known
+	 */
+	public double getFirstBytePercentile(double percentile) {
+		double[] samples;
+
+		synchronized (this) {
+			if (firstByteCount < MIN_SAMPLES) {
+				return -1;
+			}
+
+			samples = Arrays.copyOf(firstBytes, Math.min(firstByteCount, WINDOW_SIZE));
+		}
+
+		Arrays.sort(samples);
+		int index = (int) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * samples.length) - 1;
+		return samples[Math.max(index, 0)];
+	}
+
+	/**
+	 * get the recent latency of a storage.
+	 *
+	 * @param storage the storage
+	 * @return the moving average of the latency in milliseconds, -1 if unknown
+	 */
+	public double getLatency(FdfsStorage storage) {
+		return replica(storage).getLatency();
+	}
+
+	private Replica replica(FdfsStorage storage) {
+		return replicas.computeIfAbsent(storage.getOptions().getAddress(), address -> new Replica());
+	}
+
+	private static final class Replica {
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private double latency = -1;
+
+		private synchronized double getLatency() {
+			return latency;
+		}
+
+		private synchronized void sample(double millis) {
+			latency = latency < 0 ? millis : latency + LATENCY_WEIGHT * (millis - latency);
+		}
+	}
+}
@@ -0,0 +1,269 @@
+package io.vertx.fastdfs.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.vertx.core.net.SocketAddress;
+import io.vertx.fastdfs.FdfsCacheStats;
+import io.vertx.fastdfs.FdfsFileId;
+import io.vertx.fastdfs.FdfsStorageInfo;
+import io.vertx.fastdfs.options.FdfsStorageOptions;
+
+/**
+ * Caches the storages answered by the tracker, so that repeated operations do
+ * not pay a tracker round trip each time.
+ * <p>
+ * Only the store storage depends on the group alone. The update storage of a
+ * file is its source storage, so it is cached per source storage decoded from
+ * the file id, and the fetch storages depend on which storages have synced the
+ * file, so the fetch storage and the list of replicas are cached per file.
+ *
+ * @author GengTeng
+ *         <p>
+ *         me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsRoutingCache {
+
+	private static final String STORE_PREFIX = "S:";
+	private static final String FETCH_PREFIX = "F:";
+	private static final String UPDATE_PREFIX = "U:";
+	private static final String REPLICAS_PREFIX = "R:";
+
+	private final long ttl;
+	private final int maxSize;
+	private final LinkedHashMap<String, Entry> entries;
+	private final LinkedHashMap<String, GroupEntry> groups;
+	private final LinkedHashMap<String, ReplicasEntry> replicas;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Create a routing cache.
+	 *
+	 * @param ttl time to live of an entry in milliseconds, 0 disables the cache
+	 * @param maxSize the maximum number of entries
+	 */
+	public FdfsRoutingCache(long ttl, int maxSize) {
+		this.ttl = ttl;
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		this.groups = new LinkedHashMap<>(16, 0.75f, true);
+		this.replicas = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	public static String storeKey(String group) {
+		return STORE_PREFIX + (group == null ? "" : group);
+	}
+
+	public static String fetchKey(FdfsFileId fileId) {
+		return FETCH_PREFIX + fileId;
+	}
+
+	public static String updateKey(FdfsFileId fileId) {
+		String source = fileId.sourceIp() != null ? fileId.sourceIp() : fileId.sourceId();
+
+		// a file id which can not be decoded is its own source
+		return UPDATE_PREFIX + (source != null ? fileId.group() + FdfsFileId.SEPARATOR + source : fileId.toString());
+	}
+
+	public static String replicasKey(FdfsFileId fileId) {
+		return REPLICAS_PREFIX + fileId;
+	}
+
+	public boolean isEnabled() {
+		return ttl > 0 && maxSize > 0;
+	}
+
+	/**
+	 * get the storage cached for the key.
+	 *
+	 * @param key the key
+	 * @return the storage options, or null if absent or expired
+	 */
+	public synchronized FdfsStorageOptions get(String key) {
+		Entry entry = entries.get(key);
+
+		if (entry != null && entry.expireTime < System.currentTimeMillis()) {
+			entries.remove(key);
+			++evictions;
+			entry = null;
+		}
+
+		if (entry == null) {
+			++misses;
+			return null;
+		}
+
+		++hits;
+		return entry.options;
+	}
+
+	public synchronized void put(String key, FdfsStorageOptions options) {
+		if (!isEnabled()) {
+			return;
+		}
+
+		entries.put(key, new Entry(options, System.currentTimeMillis() + ttl));
+
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (entries.size() > maxSize && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+			++evictions;
+		}
+	}
+
+	/**
+	 * get the storages of a group.
+	 *
+	 * @param group the group
+	 * @return the storages, or null if absent or expired
+	 */
+	public synchronized List<FdfsStorageInfo> getStorages(String group) {
+		GroupEntry entry = groups.get(group);
+
+		if (entry != null && entry.expireTime < System.currentTimeMillis()) {
+			groups.remove(group);
+			++evictions;
+			entry = null;
+		}
+
+		if (entry == null) {
+			++misses;
+			return null;
+		}
+
+		++hits;
+		return entry.storages;
+	}
+
+	public synchronized void putStorages(String group, List<FdfsStorageInfo> storages) {
+		if (!isEnabled()) {
+			return;
+		}
+
+		groups.put(group, new GroupEntry(storages, System.currentTimeMillis() + ttl));
+
+		Iterator<GroupEntry> iterator = groups.values().iterator();
+		while (groups.size() > maxSize && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+			++evictions;
+		}
+	}
+
+	/**
+	 * get the fetch storages cached for the key.
+	 *
+	 * @param key the key
+	 * @return the storage options, or null if absent or expired
+	 */
+	public synchronized List<FdfsStorageOptions> getReplicas(String key) {
+		ReplicasEntry entry = replicas.get(key);
+
+		if (entry != null && entry.expireTime < System.currentTimeMillis()) {
+			replicas.remove(key);
+			++evictions;
+			entry = null;
+		}
+
+		if (entry == null) {
+			++misses;
+			return null;
+		}
+
+		++hits;
+		return entry.replicas;
+	}
+
+	public synchronized void putReplicas(String key, List<FdfsStorageOptions> storages) {
+		if (!isEnabled()) {
+			return;
+		}
+
+		replicas.put(key, new ReplicasEntry(storages, System.currentTimeMillis() + ttl));
+
+		Iterator<ReplicasEntry> iterator = replicas.values().iterator();
+		while (replicas.size() > maxSize && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+			++evictions;
+		}
+	}
+
+	/**
+	 * remove all the entries routed to a storage, and the storages of its group.
+	 *
+	 * @param storageOptions the storage options
+	 */
+	public synchronized void invalidate(FdfsStorageOptions storageOptions) {
+		SocketAddress address = storageOptions.getAddress();
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().getValue().options.getAddress().equals(address)) {
+				iterator.remove();
+			}
+		}
+
+		Iterator<ReplicasEntry> replicasIterator = replicas.values().iterator();
+		while (replicasIterator.hasNext()) {
+			for (FdfsStorageOptions replica : replicasIterator.next().replicas) {
+				if (replica.getAddress().equals(address)) {
+					replicasIterator.remove();
+					break;
+				}
+			}
+		}
+
+		if (storageOptions.getGroup() != null) {
+			groups.remove(storageOptions.getGroup());
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		groups.clear();
+		replicas.clear();
+	}
+
+	public synchronized FdfsCacheStats stats() {
+		return new FdfsCacheStats().setHits(hits).setMisses(misses).setEvictions(evictions)
+				.setSize(entries.size() + groups.size() + replicas.size());
+	}
+
+	private static final class Entry {
+		private final FdfsStorageOptions options;
+		private final long expireTime;
+
+		private Entry(FdfsStorageOptions options, long expireTime) {
+			this.options = options;
+			this.expireTime = expireTime;
+		}
+	}
+
+	private static final class ReplicasEntry {
+		private final List<FdfsStorageOptions> replicas;
+		private final long expireTime;
+
+		private ReplicasEntry(List<FdfsStorageOptions> replicas, long expireTime) {
+			this.replicas = replicas;
+			this.expireTime = expireTime;
+		}
+	}
+
+	private static final class GroupEntry {
+		private final List<FdfsStorageInfo> storages;
+		private final long expireTime;
+
+		private GroupEntry(List<FdfsStorageInfo> storages, long expireTime) {
+			this.storages = storages;
+			this.expireTime = expireTime;
+		}
+	}
+}
@@ -1,6 +1,9 @@
 package io.vertx.fastdfs.impl;
 
+import java.util.Map;
+
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
@@ -8,6 +11,7 @@ import io.vertx.core.streams.ReadStream;
 import io.vertx.core.streams.WriteStream;
 import io.vertx.fastdfs.FdfsFileId;
 import io.vertx.fastdfs.FdfsFileInfo;
+import io.vertx.fastdfs.FdfsTransferStats;
 import io.vertx.fastdfs.options.FdfsStorageOptions;
 
 /**
@@ -79,6 +83,54 @@ public interface FdfsStorage {
 	   * @return the storage
 	   */
 	FdfsStorage uploadAppender(Buffer buffer, String ext, Handler<AsyncResult<FdfsFileId>> handler);
+
+	/**
+	   * upload a {@code ReadStream<Buffer>} object as a slave file of a master file.
+	   *
+	   * @param stream the {@code ReadStream<Buffer>} object
+	   * @param size the size
+	   * @param masterFileId the master file ID
+	   * @param prefix the prefix appended to the master file name
+	   * @param ext the extension
+	   * @param handler the handler that will receive the result
+	   * @return the storage
+	   */
+	FdfsStorage uploadSlave(ReadStream<Buffer> stream, long size, FdfsFileId masterFileId, String prefix, String ext, Handler<AsyncResult<FdfsFileId>> handler);
+
+	/**
+	   * upload a local file as a slave file of a master file.
+	   *
+	   * @param fileFullPathName full path to the file
+	   * @param masterFileId the master file ID
+	   * @param prefix the prefix appended to the master file name
+	   * @param ext the extension
+	   * @param handler the handler that will receive the result
+	   * @return the storage
+	   */
+	FdfsStorage uploadSlave(String fileFullPathName, FdfsFileId masterFileId, String prefix, String ext, Handler<AsyncResult<FdfsFileId>> handler);
+
+	/**
+	   * upload a {@code Buffer} object as a slave file of a master file.
+	   *
+	   * @param buffer the {@code Buffer} object
+	   * @param masterFileId the master file ID
+	   * @param prefix the prefix appended to the master file name
+	   * @param ext the extension
+	   * @param handler the handler that will receive the result
+	   * @return the storage
+	   */
+	FdfsStorage uploadSlave(Buffer buffer, FdfsFileId masterFileId, String prefix, String ext, Handler<AsyncResult<FdfsFileId>> handler);
+
+	/**
+	   * upload {@code Buffer} objects as slave files of a master file, back to back over one connection.
+	   *
+	   * @param renditions the {@code Buffer} objects by prefix
+	   * @param masterFileId the master file ID
+	   * @param ext the extension
+	   * @param handler the handler that will receive the slave file IDs by prefix
+	   * @return the storage
+	   */
+	FdfsStorage uploadSlaves(Map<String, Buffer> renditions, FdfsFileId masterFileId, String ext, Handler<AsyncResult<Map<String, FdfsFileId>>> handler);
 	
 	/**
 	   * append a {@code ReadStream<Buffer>} object to a server file.
@@ -134,6 +186,19 @@ public interface FdfsStorage {
 	   */
 	FdfsStorage modify(String fileFullPathName, FdfsFileId fileId, long offset, Handler<AsyncResult<Void>> handler);
 	
+	/**
+	   * modify a server file with a range of a local file.
+	   *
+	   * @param fileFullPathName full path to the file
+	   * @param fileOffset the offset of the range in the local file
+	   * @param size the size of the range
+	   * @param fileId file ID
+	   * @param offset the offset
+	   * @param handler the handler that will receive the result
+	   * @return the storage
+	   */
+	FdfsStorage modify(String fileFullPathName, long fileOffset, long size, FdfsFileId fileId, long offset, Handler<AsyncResult<Void>> handler);
+
 	/**
 	   * modify a server file with a {@code Buffer} object.
 	   *
@@ -169,6 +234,20 @@ public interface FdfsStorage {
 	   */
 	FdfsStorage download(FdfsFileId fileId, String fileFullPathName, long offset, long bytes, Handler<AsyncResult<Void>> handler);
 	
+	/**
+	   * download a server file to a local file with positional writes. The local
+	   * file is deleted if the download fails.
+	   *
+	   * @param fileId file ID
+	   * @param fileFullPathName full path to the local file
+	   * @param offset the offset
+	   * @param bytes number of bytes
+	   * @param preallocate whether to extend the local file to the body length before writing it
+	   * @param handler the handler that will receive the transfer statistics
+	   * @return the storage
+	   */
+	FdfsStorage download(FdfsFileId fileId, String fileFullPathName, long offset, long bytes, boolean preallocate, Handler<AsyncResult<FdfsTransferStats>> handler);
+
 	/**
 	   * download a server file to a {@code WriteStream<Buffer>} object.
 	   *
@@ -180,6 +259,21 @@ public interface FdfsStorage {
 	   */
 	FdfsStorage download(FdfsFileId fileId, long offset, long bytes, Handler<AsyncResult<Buffer>> handler);
 
+	/**
+	   * download a server file to a {@code Buffer}, and be told when the response starts to arrive. Completing the
+	   * cancel future before the download is complete closes its connection.
+	   *
+	   * @param fileId file ID
+	   * @param offset the offset of the file
+	   * @param bytes the number of bytes to download, 0 means to the end of the file
+	   * @param bodyLengthHandler the handler called with the body length when the response header arrives
+	   * @param cancel the future which cancels the download
+	   * @param handler the handler that will receive the {@code Buffer} result
+	   * @return the storage
+	   */
+	FdfsStorage download(FdfsFileId fileId, long offset, long bytes, Handler<Long> bodyLengthHandler,
+			Future<Void> cancel, Handler<AsyncResult<Buffer>> handler);
+
 	/**
 	   * set meta data of a server file.
 	   *
@@ -219,6 +313,16 @@ public interface FdfsStorage {
 	   */
 	FdfsStorage delete(FdfsFileId fileId, Handler<AsyncResult<Void>> handler);
 
+	/**
+	   * truncate an appender file.
+	   *
+	   * @param fileId file ID
+	   * @param size the new size
+	   * @param handler the handler that will receive the result
+	   * @return the storage
+	   */
+	FdfsStorage truncate(FdfsFileId fileId, long size, Handler<AsyncResult<Void>> handler);
+
 	/**
 	   * get file info of a server file.
 	   *
@@ -1,8 +1,13 @@
 package io.vertx.fastdfs.impl;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Promise;
@@ -18,6 +23,7 @@ import io.vertx.core.streams.ReadStream;
 import io.vertx.core.streams.WriteStream;
 import io.vertx.fastdfs.FdfsFileId;
 import io.vertx.fastdfs.FdfsFileInfo;
+import io.vertx.fastdfs.FdfsTransferStats;
 import io.vertx.fastdfs.exp.FdfsException;
 import io.vertx.fastdfs.options.FdfsStorageOptions;
 import io.vertx.fastdfs.utils.FdfsPacket;
@@ -82,6 +88,118 @@ public class FdfsStorageImpl implements FdfsStorage {
 		return this;
 	}
 
+	@Override
+	public FdfsStorage uploadSlave(ReadStream<Buffer> stream, long size, FdfsFileId masterFileId, String prefix,
+			String ext, Handler<AsyncResult<FdfsFileId>> handler) {
+
+		Buffer header;
+		try {
+			header = slaveHeader(masterFileId, prefix, ext, size);
+		} catch (FdfsException e) {
+			handler.handle(Future.failedFuture(e));
+			return this;
+		}
+
+		stream.pause();
+
+		Future<FdfsConnection> futureConn = getConnection();
+
+		futureConn.compose(connection -> {
+			Future<FdfsPacket> futurePacket = FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection,
+					FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0, null);
+
+			connection.write(header);
+
+			Pump.pump(stream, connection).start();
+			stream.resume();
+
+			return futurePacket;
+		}).onComplete(ar -> {
+
+			if (futureConn.succeeded()) {
+				futureConn.result().release();
+			}
+		}).compose(this::parseFileId).onComplete(handler);
+
+		return this;
+	}
+
+	@Override
+	public FdfsStorage uploadSlave(String fileFullPathName, FdfsFileId masterFileId, String prefix, String ext,
+			Handler<AsyncResult<FdfsFileId>> handler) {
+
+		LocalFile.size(vertx.fileSystem(), fileFullPathName).compose(size -> {
+			Buffer header;
+			try {
+				header = slaveHeader(masterFileId, prefix, ext, size);
+			} catch (FdfsException e) {
+				return Future.failedFuture(e);
+			}
+
+			return sendFile(header, fileFullPathName, 0, size);
+		}).compose(this::parseFileId).onComplete(handler);
+
+		return this;
+	}
+
+	@Override
+	public FdfsStorage uploadSlave(Buffer buffer, FdfsFileId masterFileId, String prefix, String ext,
+			Handler<AsyncResult<FdfsFileId>> handler) {
+
+		uploadSlaves(Collections.singletonMap(prefix, buffer), masterFileId, ext, ar -> {
+			if (ar.succeeded()) {
+				handler.handle(Future.succeededFuture(ar.result().get(prefix)));
+			} else {
+				handler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
+
+		return this;
+	}
+
+	@Override
+	public FdfsStorage uploadSlaves(Map<String, Buffer> renditions, FdfsFileId masterFileId, String ext,
+			Handler<AsyncResult<Map<String, FdfsFileId>>> handler) {
+
+		Map<String, Buffer> packets = new LinkedHashMap<>();
+		try {
+			for (Map.Entry<String, Buffer> rendition : renditions.entrySet()) {
+				Buffer buffer = rendition.getValue();
+				packets.put(rendition.getKey(),
+						slaveHeader(masterFileId, rendition.getKey(), ext, buffer.length()).appendBuffer(buffer));
+			}
+		} catch (FdfsException e) {
+			handler.handle(Future.failedFuture(e));
+			return this;
+		}
+
+		Future<FdfsConnection> futureConn = getConnection();
+
+		futureConn.compose(connection -> {
+			// the storage answers the requests of a connection in order
+			Map<String, Future<FdfsFileId>> responses = new LinkedHashMap<>();
+			packets.forEach((prefix, packet) -> responses.put(prefix,
+					connection.request(packet, () -> FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(),
+							options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0, null))
+							.compose(this::parseFileId)));
+
+			return CompositeFuture.join(new ArrayList<>(responses.values())).map(v -> {
+				Map<String, FdfsFileId> fileIds = new LinkedHashMap<>();
+				responses.forEach((prefix, response) -> fileIds.put(prefix, response.result()));
+				return fileIds;
+			});
+		}).onComplete(ar -> {
+
+			if (futureConn.succeeded()) {
+				futureConn.result().release();
+			}
+
+			handler.handle(ar);
+		});
+
+		return this;
+	}
+
 	@Override
 	public FdfsStorage append(ReadStream<Buffer> stream, long size, FdfsFileId fileId,
 			Handler<AsyncResult<Void>> handler) {
@@ -91,7 +209,7 @@ public class FdfsStorageImpl implements FdfsStorage {
 		Future<FdfsConnection> futureConn = getConnection();
 
 		futureConn.compose(connection -> {
-			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
+			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
 					null);
 
 			Buffer nameBuffer = Buffer.buffer(fileId.name(), options.getCharset());
@@ -146,14 +264,25 @@ public class FdfsStorageImpl implements FdfsStorage {
 	@Override
 	public FdfsStorage append(String fileFullPathName, FdfsFileId fileId, Handler<AsyncResult<Void>> handler) {
 
-		LocalFile.readFile(vertx.fileSystem(), fileFullPathName).onComplete(ar -> {
-			if (ar.succeeded()) {
-				LocalFile localFile = ar.result();
+		LocalFile.size(vertx.fileSystem(), fileFullPathName).compose(size -> {
+			Buffer nameBuffer = Buffer.buffer(fileId.name(), options.getCharset());
+			long bodyLength = 2 * FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE + nameBuffer.length() + size;
 
-				append(localFile.getFile(), localFile.getSize(), fileId, append -> {
-					localFile.closeFile();
-					handler.handle(append);
-				});
+			Buffer buffer = FdfsUtils.newZero(FdfsProtocol.HEADER_BYTE_LENGTH + bodyLength - size);
+			buffer.setBuffer(0, FdfsProtocol.packHeader(FdfsProtocol.STORAGE_PROTO_CMD_APPEND_FILE, (byte) 0,
+					bodyLength));
+
+			int offset = FdfsProtocol.HEADER_BYTE_LENGTH;
+			buffer.setLong(offset, nameBuffer.length());
+			offset += FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE;
+			buffer.setLong(offset, size);
+			offset += FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE;
+			buffer.setBuffer(offset, nameBuffer);
+
+			return sendFile(buffer, fileFullPathName, 0, size);
+		}).onComplete(ar -> {
+			if (ar.succeeded()) {
+				handler.handle(Future.succeededFuture());
 			} else {
 				handler.handle(Future.failedFuture(ar.cause()));
 			}
@@ -168,7 +297,7 @@ public class FdfsStorageImpl implements FdfsStorage {
 		Future<FdfsConnection> futureConn = getConnection();
 		
 		futureConn.compose(connection -> {
-			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
+			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
 					null);
 
 			Buffer nameBuffer = Buffer.buffer(fileId.name(), options.getCharset());
@@ -229,7 +358,7 @@ public class FdfsStorageImpl implements FdfsStorage {
 		Future<FdfsConnection> futureConn = getConnection();
 
 		futureConn.compose(connection -> {
-			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
+			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
 					null);
 
 			Buffer nameBuffer = Buffer.buffer(fileId.name(), options.getCharset());
@@ -288,14 +417,40 @@ public class FdfsStorageImpl implements FdfsStorage {
 	public FdfsStorage modify(String fileFullPathName, FdfsFileId fileId, long offset,
 			Handler<AsyncResult<Void>> handler) {
 
-		LocalFile.readFile(vertx.fileSystem(), fileFullPathName).onComplete(ar -> {
+		LocalFile.size(vertx.fileSystem(), fileFullPathName).onComplete(ar -> {
 			if (ar.succeeded()) {
-				LocalFile localFile = ar.result();
+				modify(fileFullPathName, 0, ar.result(), fileId, offset, handler);
+			} else {
+				handler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
 
-				modify(localFile.getFile(), localFile.getSize(), fileId, offset, modify -> {
-					localFile.closeFile();
-					handler.handle(modify);
-				});
+		return this;
+	}
+
+	@Override
+	public FdfsStorage modify(String fileFullPathName, long fileOffset, long size, FdfsFileId fileId, long offset,
+			Handler<AsyncResult<Void>> handler) {
+
+		Buffer nameBuffer = Buffer.buffer(fileId.name(), options.getCharset());
+		long bodyLength = 3 * FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE + nameBuffer.length() + size;
+
+		Buffer buffer = FdfsUtils.newZero(FdfsProtocol.HEADER_BYTE_LENGTH + bodyLength - size);
+		buffer.setBuffer(0, FdfsProtocol.packHeader(FdfsProtocol.STORAGE_PROTO_CMD_MODIFY_FILE, (byte) 0,
+				bodyLength));
+
+		int bufferOffset = FdfsProtocol.HEADER_BYTE_LENGTH;
+		buffer.setLong(bufferOffset, nameBuffer.length());
+		bufferOffset += FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE;
+		buffer.setLong(bufferOffset, offset);
+		bufferOffset += FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE;
+		buffer.setLong(bufferOffset, size);
+		bufferOffset += FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE;
+		buffer.setBuffer(bufferOffset, nameBuffer);
+
+		sendFile(buffer, fileFullPathName, fileOffset, size).onComplete(ar -> {
+			if (ar.succeeded()) {
+				handler.handle(Future.succeededFuture());
 			} else {
 				handler.handle(Future.failedFuture(ar.cause()));
 			}
@@ -310,7 +465,7 @@ public class FdfsStorageImpl implements FdfsStorage {
 		Future<FdfsConnection> futureConn = getConnection();
 		
 		futureConn.compose(connection -> {
-			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
+			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
 					null);
 
 			Buffer nameBuffer = Buffer.buffer(fileId.name(), options.getCharset());
@@ -371,7 +526,7 @@ public class FdfsStorageImpl implements FdfsStorage {
 		Future<FdfsConnection> futureConn = getConnection();
 
 		futureConn.compose(connection -> {
-			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
+			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
 					stream);
 
 			Buffer nameBuffer = Buffer.buffer(fileId.name(), options.getCharset());
@@ -429,17 +584,66 @@ public class FdfsStorageImpl implements FdfsStorage {
 	public FdfsStorage download(FdfsFileId fileId, String fileFullPathName, long offset, long bytes,
 			Handler<AsyncResult<Void>> handler) {
 
-		vertx.fileSystem().open(fileFullPathName, new OpenOptions().setCreate(true).setWrite(true), ar -> {
-			if (ar.succeeded()) {
-				AsyncFile file = ar.result();
-
-				download(fileId, file, offset, bytes, download -> {
-					file.close();
-					handler.handle(download);
-				});
+		download(fileId, fileFullPathName, offset, bytes, false, download -> {
+			if (download.succeeded()) {
+				handler.handle(Future.succeededFuture());
 			} else {
+				handler.handle(Future.failedFuture(download.cause()));
+			}
+		});
+
+		return this;
+	}
+
+	@Override
+	public FdfsStorage download(FdfsFileId fileId, String fileFullPathName, long offset, long bytes,
+			boolean preallocate, Handler<AsyncResult<FdfsTransferStats>> handler) {
+
+		long start = System.currentTimeMillis();
+
+		vertx.fileSystem().open(fileFullPathName,
+				new OpenOptions().setCreate(true).setWrite(true).setTruncateExisting(true), ar -> {
+			if (ar.failed()) {
 				handler.handle(Future.failedFuture(ar.cause()));
+				return;
 			}
+
+			AsyncFile file = ar.result();
+			FdfsFileWriteStream stream = new FdfsFileWriteStream(file);
+			// the body is written once the file is extended, a failed preallocation fails the download
+			Handler<Long> bodyLengthHandler = preallocate ? stream::preallocate : null;
+
+			Future<FdfsConnection> futureConn = getConnection();
+
+			futureConn.compose(connection -> {
+				Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(),
+						options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, stream,
+						bodyLengthHandler);
+
+				connection.write(downloadRequest(fileId, offset, bytes));
+
+				return futureResponse;
+			}).onComplete(download -> {
+
+				if (futureConn.succeeded()) {
+					futureConn.result().release();
+				}
+
+				Promise<Void> ended = Promise.promise();
+				stream.end(ended);
+
+				ended.future().onComplete(end -> file.close(close -> {
+					Throwable cause = download.failed() ? download.cause() : end.cause();
+
+					if (cause != null) {
+						// a partial or preallocated file must not pass for the downloaded one
+						vertx.fileSystem().delete(fileFullPathName, delete -> handler.handle(Future.failedFuture(cause)));
+					} else {
+						handler.handle(Future.succeededFuture(new FdfsTransferStats().setBytes(stream.written())
+								.setElapsed(System.currentTimeMillis() - start)));
+					}
+				}));
+			});
 		});
 
 		return this;
@@ -451,7 +655,7 @@ public class FdfsStorageImpl implements FdfsStorage {
 		Future<FdfsConnection> futureConn = getConnection();
 		
 		futureConn.compose(connection -> {
-			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
+			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
 					null);
 
 			Buffer nameBuffer = Buffer.buffer(fileId.name(), options.getCharset());
@@ -505,6 +709,48 @@ public class FdfsStorageImpl implements FdfsStorage {
 		return this;
 	}
 
+	@Override
+	public FdfsStorage download(FdfsFileId fileId, long offset, long bytes, Handler<Long> bodyLengthHandler,
+			Future<Void> cancel, Handler<AsyncResult<Buffer>> handler) {
+
+		Future<FdfsConnection> futureConn = getConnection();
+
+		futureConn.compose(connection -> {
+			if (cancel.isComplete()) {
+				return Future.<FdfsPacket>failedFuture(new FdfsException("download cancelled"));
+			}
+
+			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(),
+					options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, null,
+					bodyLengthHandler);
+
+			// the rest of the response can not be skipped, so the connection is closed
+			cancel.onComplete(v -> {
+				if (!futureResponse.isComplete()) {
+					connection.close();
+				}
+			});
+
+			connection.write(downloadRequest(fileId, offset, bytes));
+
+			return futureResponse;
+		}).onComplete(ar -> {
+
+			if (futureConn.succeeded()) {
+				futureConn.result().release();
+			}
+
+			if (ar.succeeded()) {
+				Buffer body = ar.result().getBodyBuffer();
+				handler.handle(Future.succeededFuture(body != null ? body : Buffer.buffer()));
+			} else {
+				handler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
+
+		return this;
+	}
+
 	@Override
 	public FdfsStorage setMetaData(FdfsFileId fileId, JsonObject metaData, byte flag,
 			Handler<AsyncResult<Void>> handler) {
@@ -512,7 +758,7 @@ public class FdfsStorageImpl implements FdfsStorage {
 		Future<FdfsConnection> futureConn = getConnection();
 
 		futureConn.compose(connection -> {
-			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
+			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
 					null);
 
 			Buffer metaBuffer = FdfsProtocol.packMetaData(metaData, options.getCharset());
@@ -579,24 +825,14 @@ public class FdfsStorageImpl implements FdfsStorage {
 	@Override
 	public FdfsStorage getMetaData(FdfsFileId fileId, Handler<AsyncResult<JsonObject>> handler) {
 
-		Future<FdfsConnection> futureConn = getConnection();
+		Future<FdfsConnection> futureConn = getSharedConnection();
 		
 		futureConn.compose(connection -> {
-			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
-					null);
-
 			Buffer packet = FdfsProtocol.packFileId(FdfsProtocol.STORAGE_PROTO_CMD_GET_METADATA, fileId,
 					options.getCharset());
 
-			connection.write(packet);
-			if (connection.writeQueueFull()) {
-				connection.pause();
-				connection.drainHandler(v -> {
-					connection.resume();
-				});
-			}
-
-			return futureResponse;
+			return connection.request(packet, () -> FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(),
+					options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0, null));
 		}).onComplete(ar -> {
 			
 			if (futureConn.succeeded()) {
@@ -620,24 +856,14 @@ public class FdfsStorageImpl implements FdfsStorage {
 	@Override
 	public FdfsStorage delete(FdfsFileId fileId, Handler<AsyncResult<Void>> handler) {
 
-		Future<FdfsConnection> futureConn = getConnection();
+		Future<FdfsConnection> futureConn = getSharedConnection();
 		
 		futureConn.compose(connection -> {
-			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
-					null);
-
 			Buffer packet = FdfsProtocol.packFileId(FdfsProtocol.STORAGE_PROTO_CMD_DELETE_FILE, fileId,
 					options.getCharset());
 
-			connection.write(packet);
-			if (connection.writeQueueFull()) {
-				connection.pause();
-				connection.drainHandler(v -> {
-					connection.resume();
-				});
-			}
-
-			return futureResponse;
+			return connection.request(packet, () -> FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(),
+					options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0, null));
 		}).onComplete(ar -> {
 			
 			if (futureConn.succeeded()) {
@@ -655,17 +881,27 @@ public class FdfsStorageImpl implements FdfsStorage {
 	}
 
 	@Override
-	public FdfsStorage fileInfo(FdfsFileId fileId, Handler<AsyncResult<FdfsFileInfo>> handler) {
-		
+	public FdfsStorage truncate(FdfsFileId fileId, long size, Handler<AsyncResult<Void>> handler) {
+
 		Future<FdfsConnection> futureConn = getConnection();
-		
-		futureConn.compose(connection -> {
 
-			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
+		futureConn.compose(connection -> {
+			Future<FdfsPacket> futureResponse = FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,
 					null);
 
-			Buffer packet = FdfsProtocol.packFileId(FdfsProtocol.STORAGE_PROTO_CMD_QUERY_FILE_INFO, fileId,
-					options.getCharset());
+			Buffer nameBuffer = Buffer.buffer(fileId.name(), options.getCharset());
+			long bodyLength = 2 * FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE + nameBuffer.length();
+
+			Buffer packet = FdfsUtils.newZero(FdfsProtocol.HEADER_BYTE_LENGTH + bodyLength);
+			packet.setBuffer(0, FdfsProtocol.packHeader(FdfsProtocol.STORAGE_PROTO_CMD_TRUNCATE_FILE, (byte) 0,
+					bodyLength));
+
+			int bufferOffset = FdfsProtocol.HEADER_BYTE_LENGTH;
+			packet.setLong(bufferOffset, nameBuffer.length());
+			bufferOffset += FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE;
+			packet.setLong(bufferOffset, size);
+			bufferOffset += FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE;
+			packet.setBuffer(bufferOffset, nameBuffer);
 
 			connection.write(packet);
 			if (connection.writeQueueFull()) {
@@ -677,6 +913,33 @@ public class FdfsStorageImpl implements FdfsStorage {
 
 			return futureResponse;
 		}).onComplete(ar -> {
+
+			if (futureConn.succeeded()) {
+				futureConn.result().release();
+			}
+
+			if (ar.succeeded()) {
+				handler.handle(Future.succeededFuture());
+			} else {
+				handler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
+
+		return this;
+	}
+
+	@Override
+	public FdfsStorage fileInfo(FdfsFileId fileId, Handler<AsyncResult<FdfsFileInfo>> handler) {
+		
+		Future<FdfsConnection> futureConn = getSharedConnection();
+		
+		futureConn.compose(connection -> {
+			Buffer packet = FdfsProtocol.packFileId(FdfsProtocol.STORAGE_PROTO_CMD_QUERY_FILE_INFO, fileId,
+					options.getCharset());
+
+			return connection.request(packet, () -> FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(),
+					options.getNetworkTimeout(), connection, FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0, null));
+		}).onComplete(ar -> {
 			
 			if (futureConn.succeeded()) {
 				futureConn.result().release();
@@ -716,10 +979,34 @@ public class FdfsStorageImpl implements FdfsStorage {
 		return this;
 	}
 
+	private Buffer downloadRequest(FdfsFileId fileId, long offset, long bytes) {
+		Buffer nameBuffer = Buffer.buffer(fileId.name(), options.getCharset());
+		Buffer groupBuffer = Buffer.buffer(fileId.group(), options.getCharset());
+		long bodyLength = FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE * 2 + FdfsProtocol.FDFS_GROUP_NAME_MAX_LEN
+				+ nameBuffer.length();
+		Buffer buffer = FdfsProtocol.packHeader(FdfsProtocol.STORAGE_PROTO_CMD_DOWNLOAD_FILE, (byte) 0, bodyLength);
+		Buffer bodyBuffer = FdfsUtils.newZero(bodyLength);
+
+		int bufferOffset = 0;
+		bodyBuffer.setLong(bufferOffset, offset);
+		bufferOffset += FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE;
+		bodyBuffer.setLong(bufferOffset, bytes);
+		bufferOffset += FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE;
+		bodyBuffer.setBuffer(bufferOffset, groupBuffer);
+		bufferOffset += FdfsProtocol.FDFS_GROUP_NAME_MAX_LEN;
+		bodyBuffer.setBuffer(bufferOffset, nameBuffer);
+
+		return buffer.appendBuffer(bodyBuffer);
+	}
+
 	private Future<FdfsConnection> getConnection() {
 		return pool.get(options.getAddress());
 	}
 
+	private Future<FdfsConnection> getSharedConnection() {
+		return pool.getShared(options.getAddress());
+	}
+
 	private Future<FdfsFileId> uploadFile(byte command, String fileFullPathName, String ext) {
 		
 		Buffer extBuffer = Buffer.buffer(ext, options.getCharset());
@@ -727,29 +1014,104 @@ public class FdfsStorageImpl implements FdfsStorage {
 			return Future.failedFuture("ext is too long ( greater than " + FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN + ")");
 		}
 
-		Promise<FdfsFileId> promiseFileId = Promise.promise();
+		return LocalFile.size(vertx.fileSystem(), fileFullPathName).compose(size -> {
+			long bodyLength = 1 + FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE + FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN + size;
 
-		LocalFile.readFile(vertx.fileSystem(), fileFullPathName).onComplete(ar -> {
-			if (ar.succeeded()) {
-				LocalFile localFile = ar.result();
+			Buffer buffer = FdfsUtils.newZero(FdfsProtocol.HEADER_BYTE_LENGTH + bodyLength - size);
+			buffer.setBuffer(0, FdfsProtocol.packHeader(command, (byte) 0, bodyLength));
 
-				uploadFile(command, localFile.getFile(), localFile.getSize(), ext).onComplete(upload -> {
+			int offset = FdfsProtocol.HEADER_BYTE_LENGTH;
+			buffer.setByte(offset, options.getStorePathIndex());
+			offset += 1;
+			buffer.setLong(offset, size);
+			offset += FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE;
+			buffer.setBuffer(offset, extBuffer);
 
-					localFile.closeFile();
+			return sendFile(buffer, fileFullPathName, 0, size);
+		}).compose(this::parseFileId);
+	}
 
-					if (upload.succeeded()) {
-						promiseFileId.complete(upload.result());
-					} else {
-						promiseFileId.fail(upload.cause());
-					}
-				});
+	/**
+	 * pack the header and the body of an upload slave request, up to the content
+	 * of the file.
+	 */
+	private Buffer slaveHeader(FdfsFileId masterFileId, String prefix, String ext, long size)
+			throws FdfsException {
+		Buffer prefixBuffer = Buffer.buffer(prefix, options.getCharset());
+		if (prefixBuffer.length() > FdfsProtocol.FDFS_FILE_PREFIX_MAX_LEN) {
+			throw new FdfsException("prefix is too long ( greater than " + FdfsProtocol.FDFS_FILE_PREFIX_MAX_LEN + ")");
+		}
 
-			} else {
-				promiseFileId.fail(ar.cause());
+		Buffer extBuffer = Buffer.buffer(ext, options.getCharset());
+		if (extBuffer.length() > FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN) {
+			throw new FdfsException("ext is too long ( greater than " + FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN + ")");
+		}
+
+		Buffer nameBuffer = Buffer.buffer(masterFileId.name(), options.getCharset());
+		long bodyLength = 2 * FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE + FdfsProtocol.FDFS_FILE_PREFIX_MAX_LEN
+				+ FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN + nameBuffer.length() + size;
+
+		Buffer buffer = FdfsUtils.newZero(FdfsProtocol.HEADER_BYTE_LENGTH + bodyLength - size);
+		buffer.setBuffer(0, FdfsProtocol.packHeader(FdfsProtocol.STORAGE_PROTO_CMD_UPLOAD_SLAVE_FILE, (byte) 0,
+				bodyLength));
+
+		int offset = FdfsProtocol.HEADER_BYTE_LENGTH;
+		buffer.setLong(offset, nameBuffer.length());
+		offset += FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE;
+		buffer.setLong(offset, size);
+		offset += FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE;
+		buffer.setBuffer(offset, prefixBuffer);
+		offset += FdfsProtocol.FDFS_FILE_PREFIX_MAX_LEN;
+		buffer.setBuffer(offset, extBuffer);
+		offset += FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN;
+		buffer.setBuffer(offset, nameBuffer);
+
+		return buffer;
+	}
+
+	private Future<FdfsFileId> parseFileId(FdfsPacket packet) {
+		Buffer body = packet.getBodyBuffer();
+
+		if (body == null || body.length() <= FdfsProtocol.FDFS_GROUP_NAME_MAX_LEN) {
+			return Future.failedFuture("response body length: " + packet.getBodyLength() + " <= "
+					+ FdfsProtocol.FDFS_GROUP_NAME_MAX_LEN);
+		}
+
+		String charset = options.getCharset();
+		String group = FdfsUtils.fdfsTrim(body.getString(0, FdfsProtocol.FDFS_GROUP_NAME_MAX_LEN, charset));
+		String id = FdfsUtils.fdfsTrim(body.getString(FdfsProtocol.FDFS_GROUP_NAME_MAX_LEN, body.length(), charset));
+
+		return Future.succeededFuture(FdfsFileId.create(group, id));
+	}
+
+	/**
+	 * send a request, the body of which ends with the content of a local file. The
+	 * file is sent by the kernel when the platform allows it.
+	 *
+	 * @param header the header and the beginning of the body
+	 * @param fileFullPathName the local file
+	 * @param size the size of the local file
+	 * @return the future of the response
+	 */
+	private Future<FdfsPacket> sendFile(Buffer header, String fileFullPathName, long fileOffset, long size) {
+		Future<FdfsConnection> futureConn = getConnection();
+
+		return futureConn.compose(connection -> {
+			Future<FdfsPacket> futurePacket = FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection,
+					FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0, null);
+
+			connection.write(header);
+			connection.sendFile(fileFullPathName, fileOffset, size).onFailure(e -> {
+				connection.decoder().fail(e);
+				connection.close();
+			});
+
+			return futurePacket;
+		}).onComplete(ar -> {
+			if (futureConn.succeeded()) {
+				futureConn.result().release();
 			}
 		});
-
-		return promiseFileId.future();
 	}
 
 	private Future<FdfsFileId> uploadFile(byte command, ReadStream<Buffer> stream, long size, String ext) {
@@ -765,7 +1127,7 @@ public class FdfsStorageImpl implements FdfsStorage {
 		Future<FdfsConnection> futureConn = getConnection();
 
 		futureConn.compose(connection -> {
-			Future<FdfsPacket> futurePacket = FdfsProtocol.recvPacket(vertx, options.getNetworkTimeout(), connection,
+			Future<FdfsPacket> futurePacket = FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection,
 					FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0, null);
 
 			long bodyLength = 1 + FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE + FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN + size;
@@ -827,7 +1189,7 @@ public class FdfsStorageImpl implements FdfsStorage {
 		Future<FdfsConnection> futureConn = getConnection();
 
 		futureConn.compose(connection -> {
-			Future<FdfsPacket> futurePacket = FdfsProtocol.recvPacket(vertx, options.getNetworkTimeout(), connection,
+			Future<FdfsPacket> futurePacket = FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection,
 					FdfsProtocol.STORAGE_PROTO_CMD_RESP, 0,null);
 
 			long bodyLength = 1 + FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE + FdfsProtocol.FDFS_FILE_EXT_NAME_MAX_LEN
@@ -905,6 +1267,12 @@ public class FdfsStorageImpl implements FdfsStorage {
 			});
 		}
 
+		public static Future<Long> size(FileSystem fs, String filefullPathName) {
+			return Future.<FileProps>future(future -> {
+				fs.props(filefullPathName, future);
+			}).map(FileProps::size);
+		}
+
 		public LocalFile closeFile() {
 			file.close();
 			return this;
@@ -34,6 +34,15 @@ public interface FdfsTracker {
 	   */
 	FdfsTracker getStoreStorage(String group, Handler<AsyncResult<FdfsStorage>> handler);
 
+	/**
+	   * get all the store storages of the group picked by the tracker, or of a group.
+	   *
+	   * @param group the group, null to let the tracker pick it
+	   * @param handler the handler that will receive the {@code FdfsStorage} list
+	   * @return the tracker
+	   */
+	FdfsTracker getStoreStorages(String group, Handler<AsyncResult<List<FdfsStorage>>> handler);
+
 	/**
 	   * get a fetch storage of a server file.
 	   *
@@ -43,6 +52,15 @@ public interface FdfsTracker {
 	   */
 	FdfsTracker getFetchStorage(FdfsFileId fileId, Handler<AsyncResult<FdfsStorage>> handler);
 
+	/**
+	   * get all the fetch storages of a server file.
+	   *
+	   * @param fileId the file id
+	   * @param handler the handler that will receive the {@code FdfsStorage} list
+	   * @return the tracker
+	   */
+	FdfsTracker getFetchStorages(FdfsFileId fileId, Handler<AsyncResult<List<FdfsStorage>>> handler);
+
 	/**
 	   * get a update storage of a server file.
 	   *
@@ -72,7 +72,7 @@ public class FdfsTrackerImpl implements FdfsTracker {
 
 				Buffer headerBuffer = FdfsProtocol.packHeader(command, (byte) 0, bodyLength);
 
-				FdfsProtocol.recvPacket(vertx, options.getNetworkTimeout(), connection,
+				FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection,
 						FdfsProtocol.TRACKER_PROTO_CMD_RESP, FdfsProtocol.TRACKER_QUERY_STORAGE_STORE_BODY_LEN, null)
 						.onComplete(recv -> {
 
@@ -109,12 +109,88 @@ public class FdfsTrackerImpl implements FdfsTracker {
 		return this;
 	}
 
+	@Override
+	public FdfsTracker getStoreStorages(String group, Handler<AsyncResult<List<FdfsStorage>>> handler) {
+
+		Buffer groupBuffer = group != null ? Buffer.buffer(group, options.getCharset()) : null;
+
+		if (groupBuffer != null && groupBuffer.length() > FdfsProtocol.FDFS_GROUP_NAME_MAX_LEN) {
+			handler.handle(Future.failedFuture(new FdfsException("group name [" + group + "] is too long")));
+			return this;
+		}
+
+		getConnection().onComplete(conn -> {
+			if (conn.succeeded()) {
+				FdfsConnection connection = conn.result();
+
+				byte command = groupBuffer != null ? FdfsProtocol.TRACKER_PROTO_CMD_SERVICE_QUERY_STORE_WITH_GROUP_ALL
+						: FdfsProtocol.TRACKER_PROTO_CMD_SERVICE_QUERY_STORE_WITHOUT_GROUP_ALL;
+				long bodyLength = groupBuffer != null ? FdfsProtocol.FDFS_GROUP_NAME_MAX_LEN : 0;
+
+				Buffer packet = FdfsProtocol.packHeader(command, (byte) 0, bodyLength);
+
+				if (groupBuffer != null) {
+					packet.appendBuffer(FdfsUtils.newZero(bodyLength).setBuffer(0, groupBuffer));
+				}
+
+				FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection,
+						FdfsProtocol.TRACKER_PROTO_CMD_RESP, 0, null).onComplete(recv -> {
+
+							connection.release();
+
+							if (recv.succeeded()) {
+								handler.handle(parseStorages(recv.result().getBodyBuffer()));
+							} else {
+								handler.handle(Future.failedFuture(recv.cause()));
+							}
+						});
+
+				connection.write(packet);
+			} else {
+				handler.handle(Future.failedFuture(conn.cause()));
+			}
+		});
+
+		return this;
+	}
+
 	@Override
 	public FdfsTracker getFetchStorage(FdfsFileId fileId, Handler<AsyncResult<FdfsStorage>> handler) {
 		getFetchOrUpdateStorage(FdfsProtocol.TRACKER_PROTO_CMD_SERVICE_QUERY_FETCH_ONE, fileId).onComplete(handler);
 		return this;
 	}
 
+	@Override
+	public FdfsTracker getFetchStorages(FdfsFileId fileId, Handler<AsyncResult<List<FdfsStorage>>> handler) {
+
+		getConnection().onComplete(conn -> {
+			if (conn.succeeded()) {
+				FdfsConnection connection = conn.result();
+
+				Buffer packet = FdfsProtocol.packFileId(FdfsProtocol.TRACKER_PROTO_CMD_SERVICE_QUERY_FETCH_ALL, fileId,
+						options.getCharset());
+
+				FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection,
+						FdfsProtocol.TRACKER_PROTO_CMD_RESP, 0, null).onComplete(recv -> {
+
+							connection.release();
+
+							if (recv.succeeded()) {
+								handler.handle(parseFetchStorages(recv.result().getBodyBuffer()));
+							} else {
+								handler.handle(Future.failedFuture(recv.cause()));
+							}
+						});
+
+				connection.write(packet);
+			} else {
+				handler.handle(Future.failedFuture(conn.cause()));
+			}
+		});
+
+		return this;
+	}
+
 	@Override
 	public FdfsTracker getUpdateStorage(FdfsFileId fileId, Handler<AsyncResult<FdfsStorage>> handler) {
 		getFetchOrUpdateStorage(FdfsProtocol.TRACKER_PROTO_CMD_SERVICE_QUERY_UPDATE, fileId).onComplete(handler);
@@ -131,7 +207,7 @@ public class FdfsTrackerImpl implements FdfsTracker {
 				Buffer headerBuffer = FdfsProtocol.packHeader(FdfsProtocol.TRACKER_PROTO_CMD_SERVER_LIST_GROUP,
 						(byte) 0, 0);
 
-				FdfsProtocol.recvPacket(vertx, options.getNetworkTimeout(), connection,
+				FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection,
 						FdfsProtocol.TRACKER_PROTO_CMD_RESP, 0, null).onComplete(recv -> {
 							connection.release();
 
@@ -216,7 +292,7 @@ public class FdfsTrackerImpl implements FdfsTracker {
 				Buffer bodyBuffer = FdfsUtils.newZero(bodyLength);
 				bodyBuffer.setBuffer(0, Buffer.buffer(group, options.getCharset()));
 
-				FdfsProtocol.recvPacket(vertx, options.getNetworkTimeout(), connection,
+				FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection,
 						FdfsProtocol.TRACKER_PROTO_CMD_RESP, 0, null).onComplete(ar -> {
 							connection.release();
 
@@ -415,6 +491,69 @@ public class FdfsTrackerImpl implements FdfsTracker {
 		}
 	}
 
+	/**
+	 * parse the group name followed by the ip and port of each storage, and the
+	 * store path index.
+	 */
+	private Future<List<FdfsStorage>> parseStorages(Buffer bodyBuffer) {
+		int storageLength = FdfsProtocol.FDFS_IPADDR_SIZE - 1 + FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE;
+		int count = (bodyBuffer.length() - FdfsProtocol.FDFS_GROUP_NAME_MAX_LEN - 1) / storageLength;
+
+		if (count <= 0 || bodyBuffer.length() != FdfsProtocol.FDFS_GROUP_NAME_MAX_LEN + count * storageLength + 1) {
+			return Future.failedFuture(
+					new FdfsException("receive packet body length: " + bodyBuffer.length() + " is invalid"));
+		}
+
+		String group = FdfsUtils
+				.fdfsTrim(bodyBuffer.getString(0, FdfsProtocol.FDFS_GROUP_NAME_MAX_LEN, options.getCharset()));
+		byte storePathIndex = bodyBuffer.getByte(bodyBuffer.length() - 1);
+		List<FdfsStorage> storages = new ArrayList<>(count);
+
+		for (int i = 0; i < count; ++i) {
+			int offset = FdfsProtocol.FDFS_GROUP_NAME_MAX_LEN + i * storageLength;
+			String ip = FdfsUtils.fdfsTrim(
+					bodyBuffer.getString(offset, offset + FdfsProtocol.FDFS_IPADDR_SIZE - 1, options.getCharset()));
+			long port = bodyBuffer.getLong(offset + FdfsProtocol.FDFS_IPADDR_SIZE - 1);
+
+			FdfsStorageOptions storageOptions = new FdfsStorageOptions(options).setGroup(group)
+					.setAddress(SocketAddress.inetSocketAddress((int) port, ip)).setStorePathIndex(storePathIndex);
+			storages.add(new FdfsStorageImpl(vertx, pool, storageOptions));
+		}
+
+		return Future.succeededFuture(storages);
+	}
+
+	/**
+	 * parse the group name, the ip and port of the first storage, and the ip of
+	 * each other storage, which listens on the same port.
+	 */
+	private Future<List<FdfsStorage>> parseFetchStorages(Buffer bodyBuffer) {
+		int ipLength = FdfsProtocol.FDFS_IPADDR_SIZE - 1;
+		int others = (bodyBuffer.length() - FdfsProtocol.TRACKER_QUERY_STORAGE_FETCH_BODY_LEN) / ipLength;
+
+		if (others < 0 || bodyBuffer.length() != FdfsProtocol.TRACKER_QUERY_STORAGE_FETCH_BODY_LEN + others * ipLength) {
+			return Future.failedFuture(
+					new FdfsException("receive packet body length: " + bodyBuffer.length() + " is invalid"));
+		}
+
+		String charset = options.getCharset();
+		String group = FdfsUtils.fdfsTrim(bodyBuffer.getString(0, FdfsProtocol.FDFS_GROUP_NAME_MAX_LEN, charset));
+		long port = bodyBuffer.getLong(FdfsProtocol.FDFS_GROUP_NAME_MAX_LEN + ipLength);
+		List<FdfsStorage> storages = new ArrayList<>(others + 1);
+
+		for (int i = 0; i <= others; ++i) {
+			int offset = i == 0 ? FdfsProtocol.FDFS_GROUP_NAME_MAX_LEN
+					: FdfsProtocol.TRACKER_QUERY_STORAGE_FETCH_BODY_LEN + (i - 1) * ipLength;
+			String ip = FdfsUtils.fdfsTrim(bodyBuffer.getString(offset, offset + ipLength, charset));
+
+			FdfsStorageOptions storageOptions = new FdfsStorageOptions(options).setGroup(group)
+					.setAddress(SocketAddress.inetSocketAddress((int) port, ip));
+			storages.add(new FdfsStorageImpl(vertx, pool, storageOptions));
+		}
+
+		return Future.succeededFuture(storages);
+	}
+
 	private Future<FdfsStorage> getFetchOrUpdateStorage(byte command, FdfsFileId fileId) {
 
 		Promise<FdfsStorage> promiseFdfsStorage = Promise.promise();
@@ -425,7 +564,7 @@ public class FdfsTrackerImpl implements FdfsTracker {
 
 				Buffer packet = FdfsProtocol.packFileId(command, fileId, options.getCharset());
 
-				FdfsProtocol.recvPacket(vertx, options.getNetworkTimeout(), connection,
+				FdfsProtocol.recvPacket(vertx, options.getFirstByteTimeout(), options.getNetworkTimeout(), connection,
 						FdfsProtocol.TRACKER_PROTO_CMD_RESP, FdfsProtocol.FDFS_GROUP_NAME_MAX_LEN
 								+ FdfsProtocol.FDFS_IPADDR_SIZE - 1 + FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE,
 						null).onComplete(ar -> {
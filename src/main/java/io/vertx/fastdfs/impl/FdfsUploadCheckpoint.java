@@ -0,0 +1,184 @@
+package io.vertx.fastdfs.impl;
+
+import java.util.BitSet;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.fastdfs.FdfsFileId;
+
+/**
+ * The progress of a resumable upload: the appender file and the storage which
+ * holds it, the confirmed length and, once the appender file is extended to
+ * the full size, the map of the confirmed chunks.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsUploadCheckpoint {
+
+	public static final String PATH = "path";
+	public static final String SIZE = "size";
+	public static final String LAST_MODIFIED = "lastModified";
+	public static final String CHUNK_SIZE = "chunkSize";
+	public static final String FILE_ID = "fileId";
+	public static final String STORAGE_HOST = "storageHost";
+	public static final String STORAGE_PORT = "storagePort";
+	public static final String EXTENDED = "extended";
+	public static final String CONFIRMED = "confirmed";
+	public static final String CHUNKS = "chunks";
+
+	private String path;
+	private long size;
+	private long lastModified;
+	private int chunkSize;
+	private FdfsFileId fileId;
+	private SocketAddress storage;
+	private boolean extended;
+	private long confirmed;
+	private BitSet chunks = new BitSet();
+
+	public FdfsUploadCheckpoint(String path, long size, long lastModified, int chunkSize, FdfsFileId fileId,
+			SocketAddress storage) {
+		this.path = path;
+		this.size = size;
+		this.lastModified = lastModified;
+		this.chunkSize = chunkSize;
+		this.fileId = fileId;
+		this.storage = storage;
+	}
+
+	public FdfsUploadCheckpoint(JsonObject json) {
+		this.path = json.getString(PATH);
+		this.size = json.getLong(SIZE, 0L);
+		this.lastModified = json.getLong(LAST_MODIFIED, 0L);
+		this.chunkSize = json.getInteger(CHUNK_SIZE, 0);
+		this.fileId = FdfsFileId.parse(json.getString(FILE_ID));
+		// checkpoints saved before the storage was recorded have none
+		if (json.containsKey(STORAGE_HOST)) {
+			this.storage = SocketAddress.inetSocketAddress(json.getInteger(STORAGE_PORT), json.getString(STORAGE_HOST));
+		}
+		this.extended = json.getBoolean(EXTENDED, false);
+		this.confirmed = json.getLong(CONFIRMED, 0L);
+
+		byte[] bytes = json.getBinary(CHUNKS);
+		if (bytes != null) {
+			this.chunks = BitSet.valueOf(bytes);
+		}
+	}
+
+	public synchronized JsonObject toJson() {
+		JsonObject json = new JsonObject().put(PATH, path).put(SIZE, size).put(LAST_MODIFIED, lastModified)
+				.put(CHUNK_SIZE, chunkSize).put(FILE_ID, fileId.toString()).put(EXTENDED, extended)
+				.put(CONFIRMED, confirmed).put(CHUNKS, chunks.toByteArray());
+
+		if (storage != null) {
+			json.put(STORAGE_HOST, storage.host()).put(STORAGE_PORT, storage.port());
+		}
+
+		return json;
+	}
+
+	/**
+	 * whether the checkpoint was taken for the same local file and chunk size.
+	 *
+	 * @param size the size of the local file
+	 * @param lastModified the last modified time of the local file
+	 * @param chunkSize the chunk size
+	 * @return true if the upload can go on from this checkpoint
+	 */
+	public boolean matches(long size, long lastModified, int chunkSize) {
+		return this.size == size && this.lastModified == lastModified && this.chunkSize == chunkSize;
+	}
+
+	/**
+	 * align the checkpoint with the size of the appender file on the storage. A
+	 * file which is not extended is written in order, so its size is the
+	 * confirmed length. A file with an unexpected size is written in order again
+	 * from its current size.
+	 *
+	 * @param storedSize the size of the appender file
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public synchronized FdfsUploadCheckpoint sync(long storedSize) {
+		if (extended && storedSize == size) {
+			return this;
+		}
+
+		extended = false;
+		chunks.clear();
+		confirmed = Math.min(storedSize, size);
+		return this;
+	}
+
+	/**
+	 * confirm a chunk written to the appender file.
+	 *
+	 * @param offset the offset of the chunk
+	 * @param length the length of the chunk
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public synchronized FdfsUploadCheckpoint confirm(long offset, long length) {
+		if (extended) {
+			chunks.set((int) (offset / chunkSize));
+		} else {
+			confirmed = Math.max(confirmed, offset + length);
+		}
+		return this;
+	}
+
+	/**
+	 * whether the chunk at an offset is already written.
+	 *
+	 * @param offset the offset of the chunk
+	 * @return true if the chunk is confirmed
+	 */
+	public synchronized boolean isConfirmed(long offset) {
+		return extended ? chunks.get((int) (offset / chunkSize)) : Math.min(offset + chunkSize, size) <= confirmed;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public FdfsFileId getFileId() {
+		return fileId;
+	}
+
+	/**
+	 * get the address of the storage which created the appender file.
+	 *
+	 * @return the address, or null for a checkpoint saved without it
+	 */
+	public SocketAddress getStorage() {
+		return storage;
+	}
+
+	public synchronized boolean isExtended() {
+		return extended;
+	}
+
+	/**
+	 * mark the appender file as extended to the full size. The chunks confirmed
+	 * so far, which were written in order, are kept in the chunk map.
+	 *
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public synchronized FdfsUploadCheckpoint setExtended() {
+		if (!extended) {
+			extended = true;
+			chunks.set(0, (int) (confirmed / chunkSize));
+		}
+		return this;
+	}
+
+	public synchronized long getConfirmed() {
+		return confirmed;
+	}
+}
@@ -18,18 +18,45 @@ public abstract class AbstractFdfsOptions {
 	public static final String NETWORK_TIMEOUT = "networkTimeout";
 	public static final String DEFAULT_EXT = "defaultExt";
 	public static final String POOLSIZE = "poolSize";
+	public static final String MIN_POOL_SIZE = "minPoolSize";
+	public static final String MAX_WAIT_QUEUE_SIZE = "maxWaitQueueSize";
+	public static final String ACQUIRE_TIMEOUT = "acquireTimeout";
+	public static final String IDLE_TIMEOUT = "idleTimeout";
+	public static final String MAX_LIFETIME = "maxLifetime";
+	public static final String KEEP_ALIVE_INTERVAL = "keepAliveInterval";
+	public static final String TEST_ON_BORROW = "testOnBorrow";
+	public static final String FIRST_BYTE_TIMEOUT = "firstByteTimeout";
+	public static final String PIPELINE_DEPTH = "pipelineDepth";
 
 	public static final String DEFAULT_CHARSET = "utf8";
 	public static final long DEFAULT_CONNECT_TIMEOUT = 10_000;
 	public static final long DEFAULT_NETWORK_TIMEOUT = 10_000;
 	public static final String DEFAULT_DEFAULT_EXT = "";
 	public static final int DEFAULT_POOLSIZE = 15;
+	public static final int DEFAULT_MIN_POOL_SIZE = 0;
+	public static final int DEFAULT_MAX_WAIT_QUEUE_SIZE = -1;
+	public static final long DEFAULT_ACQUIRE_TIMEOUT = 10_000;
+	public static final long DEFAULT_IDLE_TIMEOUT = 60_000;
+	public static final long DEFAULT_MAX_LIFETIME = 0;
+	public static final long DEFAULT_KEEP_ALIVE_INTERVAL = 0;
+	public static final boolean DEFAULT_TEST_ON_BORROW = false;
+	public static final long DEFAULT_FIRST_BYTE_TIMEOUT = 0;
+	public static final int DEFAULT_PIPELINE_DEPTH = 1;
 
 	protected String charset;
 	protected long connectTimeout;
 	protected long networkTimeout;
 	protected String defaultExt;
 	protected int poolSize;
+	protected int minPoolSize;
+	protected int maxWaitQueueSize;
+	protected long acquireTimeout;
+	protected long idleTimeout;
+	protected long maxLifetime;
+	protected long keepAliveInterval;
+	protected boolean testOnBorrow;
+	protected long firstByteTimeout;
+	protected int pipelineDepth;
 
 	/**
 	   * Default constructor
@@ -40,6 +67,15 @@ public abstract class AbstractFdfsOptions {
 		networkTimeout = DEFAULT_NETWORK_TIMEOUT;
 		defaultExt = DEFAULT_DEFAULT_EXT;
 		poolSize = DEFAULT_POOLSIZE;
+		minPoolSize = DEFAULT_MIN_POOL_SIZE;
+		maxWaitQueueSize = DEFAULT_MAX_WAIT_QUEUE_SIZE;
+		acquireTimeout = DEFAULT_ACQUIRE_TIMEOUT;
+		idleTimeout = DEFAULT_IDLE_TIMEOUT;
+		maxLifetime = DEFAULT_MAX_LIFETIME;
+		keepAliveInterval = DEFAULT_KEEP_ALIVE_INTERVAL;
+		testOnBorrow = DEFAULT_TEST_ON_BORROW;
+		firstByteTimeout = DEFAULT_FIRST_BYTE_TIMEOUT;
+		pipelineDepth = DEFAULT_PIPELINE_DEPTH;
 	}
 
 	/**
@@ -53,6 +89,15 @@ public abstract class AbstractFdfsOptions {
 		networkTimeout = other.networkTimeout;
 		defaultExt = other.defaultExt;
 		poolSize = other.poolSize;
+		minPoolSize = other.minPoolSize;
+		maxWaitQueueSize = other.maxWaitQueueSize;
+		acquireTimeout = other.acquireTimeout;
+		idleTimeout = other.idleTimeout;
+		maxLifetime = other.maxLifetime;
+		keepAliveInterval = other.keepAliveInterval;
+		testOnBorrow = other.testOnBorrow;
+		firstByteTimeout = other.firstByteTimeout;
+		pipelineDepth = other.pipelineDepth;
 	}
 
 	/**
@@ -147,7 +192,7 @@ public abstract class AbstractFdfsOptions {
 	/**
 	 * set the pool size.
 	 * 
-	 * @param poolSize the pool size
+	 * @param poolSize the maximum number of connections to each address
 	 * @return a reference to this, so the API can be used fluently
 	 */
 	public AbstractFdfsOptions setPoolSize(int poolSize) {
@@ -155,6 +200,192 @@ public abstract class AbstractFdfsOptions {
 		return this;
 	}
 
+	/**
+	 * get minimum pool size.
+	 * 
+	 * @return the minimum number of connections kept to each address
+	 */
+	public int getMinPoolSize() {
+		return minPoolSize;
+	}
+
+	/**
+	 * set minimum pool size.
+	 * 
+	 * @param minPoolSize the minimum number of connections kept to each address
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public AbstractFdfsOptions setMinPoolSize(int minPoolSize) {
+		this.minPoolSize = minPoolSize;
+		return this;
+	}
+
+	/**
+	 * get max wait queue size.
+	 * 
+	 * @return the maximum number of requests waiting for a connection to each address, -1 means unbounded
+	 */
+	public int getMaxWaitQueueSize() {
+		return maxWaitQueueSize;
+	}
+
+	/**
+	 * set max wait queue size.
+	 * 
+	 * @param maxWaitQueueSize the maximum number of requests waiting for a connection to each address, -1 means unbounded
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public AbstractFdfsOptions setMaxWaitQueueSize(int maxWaitQueueSize) {
+		this.maxWaitQueueSize = maxWaitQueueSize;
+		return this;
+	}
+
+	/**
+	 * get acquire timeout.
+	 * 
+	 * @return the time to wait for a connection in milliseconds, 0 means no timeout
+	 */
+	public long getAcquireTimeout() {
+		return acquireTimeout;
+	}
+
+	/**
+	 * set acquire timeout.
+	 * 
+	 * @param acquireTimeout the time to wait for a connection in milliseconds, 0 means no timeout
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public AbstractFdfsOptions setAcquireTimeout(long acquireTimeout) {
+		this.acquireTimeout = acquireTimeout;
+		return this;
+	}
+
+	/**
+	 * get idle timeout.
+	 * 
+	 * @return the time after which an idle connection is closed in milliseconds, 0 means never
+	 */
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * set idle timeout.
+	 * 
+	 * @param idleTimeout the time after which an idle connection is closed in milliseconds, 0 means never
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public AbstractFdfsOptions setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+		return this;
+	}
+
+	/**
+	 * get max lifetime.
+	 * 
+	 * @return the time after which a connection is closed once released in milliseconds, 0 means never
+	 */
+	public long getMaxLifetime() {
+		return maxLifetime;
+	}
+
+	/**
+	 * set max lifetime.
+	 * 
+	 * @param maxLifetime the time after which a connection is closed once released in milliseconds, 0 means never
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public AbstractFdfsOptions setMaxLifetime(long maxLifetime) {
+		this.maxLifetime = maxLifetime;
+		return this;
+	}
+
+	/**
+	 * get keep alive interval.
+	 * 
+	 * @return the keep alive interval
+	 */
+	public long getKeepAliveInterval() {
+		return keepAliveInterval;
+	}
+
+	/**
+	 * set keep alive interval. The idle connections not used for this time in
+	 * milliseconds are probed with an active test, and closed if the probe fails.
+	 * 0 disables the probes.
+	 * 
+	 * @param keepAliveInterval the keep alive interval
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public AbstractFdfsOptions setKeepAliveInterval(long keepAliveInterval) {
+		this.keepAliveInterval = keepAliveInterval;
+		return this;
+	}
+
+	/**
+	 * whether idle connections are tested before they are used.
+	 * 
+	 * @return true if idle connections are tested before they are used
+	 */
+	public boolean isTestOnBorrow() {
+		return testOnBorrow;
+	}
+
+	/**
+	 * set whether idle connections are tested before they are used. A connection
+	 * failing the active test is closed and another one is used instead.
+	 * 
+	 * @param testOnBorrow true to test idle connections before they are used
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public AbstractFdfsOptions setTestOnBorrow(boolean testOnBorrow) {
+		this.testOnBorrow = testOnBorrow;
+		return this;
+	}
+
+	/**
+	 * get first byte timeout.
+	 * 
+	 * @return the first byte timeout
+	 */
+	public long getFirstByteTimeout() {
+		return firstByteTimeout;
+	}
+
+	/**
+	 * set first byte timeout, the time to wait for the first byte of a response in
+	 * milliseconds. 0 means the network timeout is used.
+	 * 
+	 * @param firstByteTimeout the first byte timeout
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public AbstractFdfsOptions setFirstByteTimeout(long firstByteTimeout) {
+		this.firstByteTimeout = firstByteTimeout;
+		return this;
+	}
+
+	/**
+	 * get the number of small requests which can be in flight on a connection.
+	 * 
+	 * @return the pipeline depth
+	 */
+	public int getPipelineDepth() {
+		return pipelineDepth;
+	}
+
+	/**
+	 * set the number of small requests (file info, meta data, delete) which can be
+	 * written on a connection before their responses are received. 1 disables
+	 * pipelining.
+	 * 
+	 * @param pipelineDepth the pipeline depth
+	 * @return a reference to this, so the API can be used fluently
+	 */
+	public AbstractFdfsOptions setPipelineDepth(int pipelineDepth) {
+		this.pipelineDepth = pipelineDepth;
+		return this;
+	}
+
 	/**
 	   * get value from a {@code JsonObject}
 	   * 
@@ -169,6 +400,15 @@ public abstract class AbstractFdfsOptions {
 		this.networkTimeout = json.getLong(NETWORK_TIMEOUT, DEFAULT_NETWORK_TIMEOUT);
 		this.defaultExt = json.getString(DEFAULT_EXT, DEFAULT_DEFAULT_EXT);
 		this.poolSize = json.getInteger(POOLSIZE, DEFAULT_POOLSIZE);
+		this.minPoolSize = json.getInteger(MIN_POOL_SIZE, DEFAULT_MIN_POOL_SIZE);
+		this.maxWaitQueueSize = json.getInteger(MAX_WAIT_QUEUE_SIZE, DEFAULT_MAX_WAIT_QUEUE_SIZE);
+		this.acquireTimeout = json.getLong(ACQUIRE_TIMEOUT, DEFAULT_ACQUIRE_TIMEOUT);
+		this.idleTimeout = json.getLong(IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT);
+		this.maxLifetime = json.getLong(MAX_LIFETIME, DEFAULT_MAX_LIFETIME);
+		this.keepAliveInterval = json.getLong(KEEP_ALIVE_INTERVAL, DEFAULT_KEEP_ALIVE_INTERVAL);
+		this.testOnBorrow = json.getBoolean(TEST_ON_BORROW, DEFAULT_TEST_ON_BORROW);
+		this.firstByteTimeout = json.getLong(FIRST_BYTE_TIMEOUT, DEFAULT_FIRST_BYTE_TIMEOUT);
+		this.pipelineDepth = json.getInteger(PIPELINE_DEPTH, DEFAULT_PIPELINE_DEPTH);
 
 		return this;
 	}
@@ -180,7 +420,16 @@ public abstract class AbstractFdfsOptions {
 	   */
 	public JsonObject toJson() {
 		return new JsonObject().put(CHARSET, charset).put(CONNECT_TIMEOUT, connectTimeout)
-				.put(NETWORK_TIMEOUT, networkTimeout).put(DEFAULT_EXT, defaultExt).put(POOLSIZE, poolSize);
+				.put(NETWORK_TIMEOUT, networkTimeout).put(DEFAULT_EXT, defaultExt).put(POOLSIZE, poolSize)
+				.put(MIN_POOL_SIZE, minPoolSize)
+				.put(MAX_WAIT_QUEUE_SIZE, maxWaitQueueSize)
+				.put(ACQUIRE_TIMEOUT, acquireTimeout)
+				.put(IDLE_TIMEOUT, idleTimeout)
+				.put(MAX_LIFETIME, maxLifetime)
+				.put(KEEP_ALIVE_INTERVAL, keepAliveInterval)
+				.put(TEST_ON_BORROW, testOnBorrow)
+				.put(FIRST_BYTE_TIMEOUT, firstByteTimeout)
+				.put(PIPELINE_DEPTH, pipelineDepth);
 	}
 
 	/**
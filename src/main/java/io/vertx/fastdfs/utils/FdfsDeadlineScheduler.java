@@ -0,0 +1,202 @@
+package io.vertx.fastdfs.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * A hashed wheel of deadlines driven by a single periodic timer.
+ * <p>
+ * Every context gets its own wheel, so the deadlines of the requests sent from
+ * an event loop expire on that event loop. The timer only runs while there are
+ * deadlines pending.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public final class FdfsDeadlineScheduler implements Shareable {
+
+	public static final long DEFAULT_TICK_DURATION = 50;
+	public static final int DEFAULT_WHEEL_SIZE = 512;
+
+	private static final String CONTEXT_KEY = "__vertx.FastDFS.deadlines";
+	private static final String SHARED_KEY = "shared";
+
+	private final Vertx vertx;
+	private final long tickDuration;
+	private final Deadline[] wheel;
+
+	private long currentTick;
+	private long timerId = -1;
+	private int pending;
+
+	public FdfsDeadlineScheduler(Vertx vertx) {
+		this(vertx, DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+	}
+
+	public FdfsDeadlineScheduler(Vertx vertx, long tickDuration, int wheelSize) {
+		this.vertx = vertx;
+		this.tickDuration = tickDuration;
+		this.wheel = new Deadline[wheelSize];
+	}
+
+	/**
+	 * get the scheduler of the current context, or the one shared by the threads
+	 * out of any context.
+	 *
+	 * @param vertx the vertx instance
+	 * @return the scheduler
+	 */
+	public static FdfsDeadlineScheduler get(Vertx vertx) {
+		Context context = Vertx.currentContext();
+
+		if (context != null && context.owner() == vertx) {
+			FdfsDeadlineScheduler scheduler = context.get(CONTEXT_KEY);
+
+			if (scheduler == null) {
+				scheduler = new FdfsDeadlineScheduler(vertx);
+				context.put(CONTEXT_KEY, scheduler);
+			}
+
+			return scheduler;
+		}
+
+		LocalMap<String, FdfsDeadlineScheduler> map = vertx.sharedData().getLocalMap(CONTEXT_KEY);
+		FdfsDeadlineScheduler scheduler = map.get(SHARED_KEY);
+
+		if (scheduler == null) {
+			FdfsDeadlineScheduler previous = map.putIfAbsent(SHARED_KEY, scheduler = new FdfsDeadlineScheduler(vertx));
+
+			if (previous != null) {
+				scheduler = previous;
+			}
+		}
+
+		return scheduler;
+	}
+
+	/**
+	 * schedule a deadline.
+	 *
+	 * @param delay the delay in milliseconds
+	 * @param handler the handler called when the deadline expires
+	 * @return the deadline, which can be cancelled
+	 */
+	public synchronized Deadline schedule(long delay, Handler<Void> handler) {
+		long now = System.currentTimeMillis();
+
+		if (timerId == -1) {
+			currentTick = now / tickDuration;
+			timerId = vertx.setPeriodic(tickDuration, id -> expire());
+		}
+
+		long tick = Math.max((now + delay + tickDuration - 1) / tickDuration, currentTick + 1);
+		Deadline deadline = new Deadline(handler, tick);
+
+		int index = (int) (tick % wheel.length);
+		deadline.next = wheel[index];
+		if (wheel[index] != null) {
+			wheel[index].prev = deadline;
+		}
+		wheel[index] = deadline;
+		++pending;
+
+		return deadline;
+	}
+
+	/**
+	 * get the number of pending deadlines.
+	 *
+	 * @return the number of pending deadlines
+	 */
+	public synchronized int pending() {
+		return pending;
+	}
+
+	private void expire() {
+		List<Deadline> expired = new ArrayList<>();
+
+		synchronized (this) {
+			long nowTick = System.currentTimeMillis() / tickDuration;
+			long ticks = Math.min(nowTick - currentTick, wheel.length);
+
+			for (long i = 1; i <= ticks; ++i) {
+				Deadline deadline = wheel[(int) ((currentTick + i) % wheel.length)];
+
+				while (deadline != null) {
+					Deadline next = deadline.next;
+
+					if (deadline.tick <= nowTick) {
+						unlink(deadline);
+						expired.add(deadline);
+					}
+
+					deadline = next;
+				}
+			}
+
+			currentTick = Math.max(currentTick, nowTick);
+
+			if (pending == 0) {
+				vertx.cancelTimer(timerId);
+				timerId = -1;
+			}
+		}
+
+		expired.forEach(deadline -> deadline.handler.handle(null));
+	}
+
+	private void unlink(Deadline deadline) {
+		int index = (int) (deadline.tick % wheel.length);
+
+		if (deadline.prev != null) {
+			deadline.prev.next = deadline.next;
+		} else {
+			wheel[index] = deadline.next;
+		}
+
+		if (deadline.next != null) {
+			deadline.next.prev = deadline.prev;
+		}
+
+		deadline.prev = null;
+		deadline.next = null;
+		deadline.linked = false;
+		--pending;
+	}
+
+	/**
+	 * A deadline in the wheel.
+	 */
+	public final class Deadline {
+		private final Handler<Void> handler;
+		private final long tick;
+		private Deadline prev;
+		private Deadline next;
+		private boolean linked = true;
+
+		private Deadline(Handler<Void> handler, long tick) {
+			this.handler = handler;
+			this.tick = tick;
+		}
+
+		/**
+		 * cancel this deadline, the handler will not be called.
+		 */
+		public void cancel() {
+			synchronized (FdfsDeadlineScheduler.this) {
+				if (linked) {
+					unlink(this);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,330 @@
+package io.vertx.fastdfs.utils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+import io.vertx.fastdfs.exp.FdfsException;
+import io.vertx.fastdfs.exp.FdfsStatusException;
+import io.vertx.fastdfs.impl.FdfsConnection;
+
+/**
+ * FastDFS response decoder, bound once to a connection.
+ * <p>
+ * The responses are matched in order with the expectations registered by
+ * {@link #expect}. The header is parsed in place unless it is split between two
+ * reads, and the body is handed over as slices of the received buffers. When
+ * the stream can not be trusted any more (unexpected command or data, receive
+ * timeout), the connection is closed.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public final class FdfsPacketDecoder implements Handler<Buffer> {
+
+	private final FdfsConnection connection;
+	private final Deque<Expectation> expectations = new ArrayDeque<>();
+	private final byte[] header = new byte[FdfsProtocol.HEADER_BYTE_LENGTH];
+
+	private Expectation current;
+	private int headerLength;
+	private long bodyLength = -1;
+	private long bodyReceived;
+	private Buffer body;
+	private boolean skipBody;
+
+	public FdfsPacketDecoder(FdfsConnection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * expect a response.
+	 *
+	 * @param scheduler the scheduler of the receive timeouts
+	 * @param firstByteTimeout the time to wait for the first byte
+	 * @param idleTimeout the time to wait between two reads
+	 * @param expectedCommand the expected command
+	 * @param expectedBodyLength the expected body length, 0 means any length
+	 * @param bodyWriteStream the stream the body is written to, or null to buffer the body
+	 * @param promise the promise completed with the packet
+	 */
+	public void expect(FdfsDeadlineScheduler scheduler, long firstByteTimeout, long idleTimeout, byte expectedCommand,
+			long expectedBodyLength, WriteStream<Buffer> bodyWriteStream, Promise<FdfsPacket> promise) {
+		expect(scheduler, firstByteTimeout, idleTimeout, expectedCommand, expectedBodyLength, bodyWriteStream, null,
+				promise);
+	}
+
+	/**
+	 * expect a response, and be told its body length before the body is received.
+	 *
+	 * @param scheduler the scheduler of the receive timeouts
+	 * @param firstByteTimeout the time to wait for the first byte
+	 * @param idleTimeout the time to wait between two reads
+	 * @param expectedCommand the expected command
+	 * @param expectedBodyLength the expected body length, 0 means any length
+	 * @param bodyWriteStream the stream the body is written to, or null to buffer the body
+	 * @param bodyLengthHandler the handler called with the body length of a successful response, can be null
+	 * @param promise the promise completed with the packet
+	 */
+	public void expect(FdfsDeadlineScheduler scheduler, long firstByteTimeout, long idleTimeout, byte expectedCommand,
+			long expectedBodyLength, WriteStream<Buffer> bodyWriteStream, Handler<Long> bodyLengthHandler,
+			Promise<FdfsPacket> promise) {
+		if (!connection.isConnected()) {
+			promise.tryFail(new FdfsException("socket closed before recv complete"));
+			return;
+		}
+
+		Expectation expectation = new Expectation(scheduler, idleTimeout, expectedCommand, expectedBodyLength,
+				bodyWriteStream, bodyLengthHandler, promise);
+
+		synchronized (this) {
+			expectations.addLast(expectation);
+		}
+
+		expectation.schedule(firstByteTimeout);
+	}
+
+	@Override
+	public void handle(Buffer buffer) {
+		int offset = 0;
+		int length = buffer.length();
+		long now = System.currentTimeMillis();
+
+		while (offset < length) {
+			if (current == null) {
+				synchronized (this) {
+					current = expectations.pollFirst();
+				}
+
+				if (current == null) {
+					close(new FdfsException("receive unexpected data"));
+					return;
+				}
+			}
+
+			current.lastRead = now;
+
+			if (bodyLength < 0) {
+				int n = Math.min(FdfsProtocol.HEADER_BYTE_LENGTH - headerLength, length - offset);
+
+				if (headerLength == 0 && n == FdfsProtocol.HEADER_BYTE_LENGTH) {
+					if (!onHeader(buffer.getLong(offset), buffer.getByte(offset + FdfsProtocol.PROTO_HEADER_CMD_INDEX),
+							buffer.getByte(offset + FdfsProtocol.PROTO_HEADER_STATUS_INDEX))) {
+						return;
+					}
+				} else {
+					buffer.getBytes(offset, offset + n, header, headerLength);
+					headerLength += n;
+
+					if (headerLength == FdfsProtocol.HEADER_BYTE_LENGTH && !onHeader(headerBodyLength(),
+							header[FdfsProtocol.PROTO_HEADER_CMD_INDEX], header[FdfsProtocol.PROTO_HEADER_STATUS_INDEX])) {
+						return;
+					}
+				}
+
+				offset += n;
+				continue;
+			}
+
+			int n = (int) Math.min(bodyLength - bodyReceived, length - offset);
+			onBody(buffer, offset, n, length);
+			offset += n;
+			bodyReceived += n;
+
+			if (bodyReceived == bodyLength) {
+				complete();
+			}
+		}
+	}
+
+	/**
+	 * fail all the expected responses.
+	 *
+	 * @param cause the cause
+	 */
+	public void fail(Throwable cause) {
+		Expectation expectation = current;
+		Deque<Expectation> failed;
+
+		synchronized (this) {
+			failed = new ArrayDeque<>(expectations);
+			expectations.clear();
+		}
+
+		reset();
+
+		FdfsException exception = cause instanceof FdfsException ? (FdfsException) cause : new FdfsException(cause);
+
+		if (expectation != null) {
+			expectation.fail(exception);
+		}
+
+		failed.forEach(e -> e.fail(exception));
+	}
+
+	private void close(FdfsException cause) {
+		fail(cause);
+		connection.close();
+	}
+
+	private long headerBodyLength() {
+		long value = 0;
+
+		for (int i = 0; i < FdfsProtocol.FDFS_PROTO_PKG_LEN_SIZE; ++i) {
+			value = (value << 8) | (header[i] & 0xFF);
+		}
+
+		return value;
+	}
+
+	private boolean onHeader(long length, byte command, byte status) {
+		headerLength = 0;
+
+		if (command != current.expectedCommand) {
+			close(new FdfsException(
+					"receive command: " + command + " is not equal to the expected command: " + current.expectedCommand));
+			return false;
+		}
+
+		if (length < 0) {
+			close(new FdfsException("receive packet body length: " + length + " is negative"));
+			return false;
+		}
+
+		bodyLength = length;
+		bodyReceived = 0;
+
+		if (status != FdfsProtocol.HEADER_STATUS_SUCCESS) {
+			skipBody = true;
+			current.fail(new FdfsStatusException(status));
+		} else if (current.expectedBodyLength > 0 && length != current.expectedBodyLength) {
+			skipBody = true;
+			current.fail(new FdfsException("receive packet body length: " + length
+					+ " is not equal to the expected: " + current.expectedBodyLength));
+		} else if (current.bodyLengthHandler != null) {
+			current.bodyLengthHandler.handle(length);
+		}
+
+		if (length == 0) {
+			complete();
+		}
+
+		return true;
+	}
+
+	private void onBody(Buffer buffer, int offset, int n, int length) {
+		if (skipBody) {
+			return;
+		}
+
+		Buffer slice = offset == 0 && n == length ? buffer : buffer.slice(offset, offset + n);
+
+		if (current.bodyWriteStream != null) {
+			WriteStream<Buffer> bodyWriteStream = current.bodyWriteStream;
+			bodyWriteStream.write(slice);
+
+			if (bodyWriteStream.writeQueueFull()) {
+				connection.pause();
+				bodyWriteStream.drainHandler(v -> connection.resume());
+			}
+		} else if (body == null && n == bodyLength) {
+			body = slice;
+		} else {
+			if (body == null) {
+				body = Buffer.buffer((int) bodyLength);
+			}
+
+			body.appendBuffer(slice);
+		}
+	}
+
+	private void complete() {
+		Expectation expectation = current;
+		Buffer packetBody = body;
+		boolean skipped = skipBody;
+		long packetBodyLength = bodyLength;
+
+		reset();
+		expectation.cancel();
+
+		if (!skipped) {
+			expectation.promise.tryComplete(new FdfsPacket().setBodyLength(packetBodyLength).setBodyBuffer(packetBody));
+		}
+	}
+
+	private void reset() {
+		current = null;
+		headerLength = 0;
+		bodyLength = -1;
+		bodyReceived = 0;
+		body = null;
+		skipBody = false;
+	}
+
+	/**
+	 * An expected response, and its read deadline. The deadline is not moved on
+	 * every read: when it expires after some bytes were received, it is scheduled
+	 * again for the rest of the idle timeout.
+	 */
+	private final class Expectation implements Handler<Void> {
+		private final FdfsDeadlineScheduler scheduler;
+		private final long idleTimeout;
+		private final byte expectedCommand;
+		private final long expectedBodyLength;
+		private final WriteStream<Buffer> bodyWriteStream;
+		private final Handler<Long> bodyLengthHandler;
+		private final Promise<FdfsPacket> promise;
+		private volatile long lastRead;
+		private FdfsDeadlineScheduler.Deadline deadline;
+		private boolean done;
+
+		private Expectation(FdfsDeadlineScheduler scheduler, long idleTimeout, byte expectedCommand,
+				long expectedBodyLength, WriteStream<Buffer> bodyWriteStream, Handler<Long> bodyLengthHandler,
+				Promise<FdfsPacket> promise) {
+			this.scheduler = scheduler;
+			this.idleTimeout = idleTimeout;
+			this.expectedCommand = expectedCommand;
+			this.expectedBodyLength = expectedBodyLength;
+			this.bodyWriteStream = bodyWriteStream;
+			this.bodyLengthHandler = bodyLengthHandler;
+			this.promise = promise;
+		}
+
+		private synchronized void schedule(long timeout) {
+			if (!done) {
+				deadline = scheduler.schedule(timeout, this);
+			}
+		}
+
+		private synchronized void cancel() {
+			done = true;
+			if (deadline != null) {
+				deadline.cancel();
+			}
+		}
+
+		private void fail(FdfsException cause) {
+			cancel();
+			promise.tryFail(cause);
+		}
+
+		@Override
+		public void handle(Void v) {
+			long last = lastRead;
+			long remaining = last == 0 ? 0 : last + idleTimeout - System.currentTimeMillis();
+
+			if (remaining > 0) {
+				schedule(remaining);
+			} else if (!promise.future().isComplete()) {
+				fail(new FdfsException("receive timeout"));
+				connection.close();
+			}
+		}
+	}
+}
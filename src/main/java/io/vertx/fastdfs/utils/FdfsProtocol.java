@@ -1,8 +1,7 @@
 package io.vertx.fastdfs.utils;
 
-import java.util.concurrent.atomic.AtomicLong;
-
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
@@ -13,6 +12,7 @@ import io.vertx.core.net.SocketAddress;
 import io.vertx.core.streams.WriteStream;
 import io.vertx.fastdfs.FdfsFileId;
 import io.vertx.fastdfs.exp.FdfsException;
+import io.vertx.fastdfs.exp.FdfsStatusException;
 import io.vertx.fastdfs.impl.FdfsConnection;
 
 /**
@@ -89,6 +89,23 @@ public final class FdfsProtocol {
 	public static final byte FDFS_FILENAME_BASE64_LENGTH = 27;
 	public static final byte FDFS_TRUNK_FILE_INFO_LEN = 16;
 
+	public static final int FDFS_NORMAL_LOGIC_FILENAME_LENGTH = FDFS_FILE_PATH_LEN + FDFS_FILENAME_BASE64_LENGTH
+			+ FDFS_FILE_EXT_NAME_MAX_LEN + 1;
+	public static final int FDFS_TRUNK_LOGIC_FILENAME_LENGTH = FDFS_NORMAL_LOGIC_FILENAME_LENGTH
+			+ FDFS_TRUNK_FILE_INFO_LEN;
+
+	/**
+	 * file size flags encoded in the file name
+	 */
+	public static final long FDFS_INFINITE_FILE_SIZE = 256L * 1024 * 1024 * 1024 * 1024 * 1024;
+	public static final long FDFS_APPENDER_FILE_SIZE = FDFS_INFINITE_FILE_SIZE;
+	public static final long FDFS_TRUNK_FILE_MARK_SIZE = 512L * 1024 * 1024 * 1024 * 1024 * 1024;
+
+	/**
+	 * the source server is a storage id instead of an ip address when it is not greater than this value
+	 */
+	public static final int FDFS_MAX_SERVER_ID = (1 << 24) - 1;
+
 	public static final byte ERR_NO_ENOENT = 2;
 	public static final byte ERR_NO_EIO = 5;
 	public static final byte ERR_NO_EBUSY = 16;
@@ -128,39 +145,6 @@ public final class FdfsProtocol {
 				.setByte(PROTO_HEADER_STATUS_INDEX, status);
 	}
 
-	/**
-	 * 为Buffer包装一层
-	 * 
-	 * @author GengTeng
-	 *
-	 */
-	private static class WrappedBuffer {
-		private Buffer buffer;
-
-		public WrappedBuffer allocate(int initialSizeHint) {
-			buffer = Buffer.buffer(initialSizeHint);
-			return this;
-		}
-
-		public Buffer buffer() {
-			return buffer;
-		}
-
-		public WrappedBuffer appendBuffer(Buffer buffer) {
-			this.buffer.appendBuffer(buffer);
-			return this;
-		}
-
-		public WrappedBuffer appendBuffer(Buffer buffer, int offset, int len) {
-			this.buffer.appendBuffer(buffer, offset, len);
-			return this;
-		}
-
-		public long length() {
-			return buffer.length();
-		}
-	}
-
 	/**
 	 * 从socket接收并解析报文。
 	 * 
@@ -178,161 +162,61 @@ public final class FdfsProtocol {
 	 */
 	public static Future<FdfsPacket> recvPacket(Vertx vertx, long timeoutMillis, FdfsConnection connection, byte expectedCommand, long expectedBodyLength,
 			WriteStream<Buffer> bodyWriteStream) {
+		return recvPacket(vertx, timeoutMillis, timeoutMillis, connection, expectedCommand, expectedBodyLength, bodyWriteStream);
+	}
 
-		return Future.future(promise -> {
-
-			Buffer headerBuffer = Buffer.buffer(HEADER_BYTE_LENGTH);
-			Promise<Long> promiseBodyLength = Promise.promise();
-			WrappedBuffer bodyBuffer = new WrappedBuffer();
-			AtomicLong bodyReceived = new AtomicLong();
-			AtomicLong lastReceiveTime = new AtomicLong(System.currentTimeMillis());
-			
-			vertx.setPeriodic(timeoutMillis, l -> {
-				if (System.currentTimeMillis() - lastReceiveTime.get() > timeoutMillis) {
-					
-					vertx.cancelTimer(l);
-					
-					if (!promise.future().isComplete()) {
-						if (promiseBodyLength.future().isComplete() && promiseBodyLength.future().result() == bodyReceived.get()) {
-							promise.complete(new FdfsPacket().setBodyLength(promiseBodyLength.future().result())
-									.setBodyBuffer(bodyBuffer.buffer()));
-						} else {
-							promise.fail(new FdfsException("receive timeout"));
-						}
-					}
-				} else {
-					if (promise.future().isComplete()) {
-						vertx.cancelTimer(l);
-					}
-				}
-			});
-
-			connection.handler(buffer -> {
-				
-				lastReceiveTime.set(System.currentTimeMillis());
-
-				if (!promiseBodyLength.future().isComplete()) {
-					final long currentLength = headerBuffer.length() + buffer.length();
-					final int lengthToFillHeader = HEADER_BYTE_LENGTH - headerBuffer.length();
-					if (currentLength >= HEADER_BYTE_LENGTH) {
-						headerBuffer.appendBuffer(buffer, 0, lengthToFillHeader);
-
-						// 非异步，直接返回
-						parseHeader(headerBuffer, expectedCommand, expectedBodyLength).onComplete(promiseBodyLength);
-
-						if (!promiseBodyLength.future().succeeded()) {
-							promise.fail(promiseBodyLength.future().cause());
-							// closeSocket(socket);
-							return;
-						}
-
-						if (promiseBodyLength.future().result() == 0) {
-							promise.complete(new FdfsPacket().setBodyLength(promiseBodyLength.future().result()));
-							// closeSocket(socket);
-							return;
-						}
-
-						if (bodyWriteStream != null) {
-							if (currentLength > HEADER_BYTE_LENGTH) {
-								Buffer bodytoWrite = buffer.getBuffer(lengthToFillHeader, buffer.length());
-								bodyWriteStream.write(bodytoWrite);
-								if (bodyWriteStream.writeQueueFull()) {
-									connection.pause();
-									connection.drainHandler(v -> {
-										connection.resume();
-									});
-								}
-
-								bodyReceived.addAndGet(bodytoWrite.length());
-								if (bodyReceived.get() >= promiseBodyLength.future().result()) {
-									promise.complete(new FdfsPacket().setBodyLength(promiseBodyLength.future().result()));
-									// closeSocket(socket);
-								}
-							}
-
-							return;
-						}
-
-						bodyBuffer.allocate(promiseBodyLength.future().result().intValue());
-
-						if (currentLength > HEADER_BYTE_LENGTH) {
-							int lengthToFillBody = buffer.length() - lengthToFillHeader;
-							bodyBuffer.appendBuffer(buffer, lengthToFillHeader, lengthToFillBody);
-							bodyReceived.addAndGet(lengthToFillBody);
-
-							if (bodyBuffer.length() >= promiseBodyLength.future().result()) {
-								promise.complete(new FdfsPacket().setBodyLength(promiseBodyLength.future().result())
-										.setBodyBuffer(bodyBuffer.buffer()));
-								// closeSocket(socket);
-							}
-						}
-					} else { // if (currentLength < HEADER_BYTE_LENGTH)
-						headerBuffer.appendBuffer(buffer);
-					}
-				} else { // if (futureBodyLength.isComplete())
-
-					if (bodyWriteStream != null) {
-						bodyWriteStream.write(buffer);
-						if (bodyWriteStream.writeQueueFull()) {
-							connection.pause();
-							connection.drainHandler(v -> {
-								connection.resume();
-							});
-						}
-
-						bodyReceived.addAndGet(buffer.length());
-						if (bodyReceived.get() >= promiseBodyLength.future().result()) {
-							promise.complete(new FdfsPacket().setBodyLength(promiseBodyLength.future().result()));
-							// closeSocket(socket);
-						}
-						return;
-					}
-
-					bodyBuffer.appendBuffer(buffer);
-					bodyReceived.addAndGet(buffer.length());
-					// 读取完毕
-					if (bodyBuffer.length() >= promiseBodyLength.future().result()) {
-						promise.complete(new FdfsPacket().setBodyLength(promiseBodyLength.future().result())
-								.setBodyBuffer(bodyBuffer.buffer()));
-						// closeSocket(socket);
-					}
-				}
-			});
-
-			connection.exceptionHandler(e -> {
-				if (!promise.future().isComplete()) {
-					if (promiseBodyLength.future().isComplete()
-							&& promiseBodyLength.future().result() == bodyReceived.get()) {
-						promise.complete(new FdfsPacket().setBodyLength(promiseBodyLength.future().result())
-								.setBodyBuffer(bodyBuffer.buffer()));
-					} else {
-						promise.fail(new FdfsException(e));
-					}
-				}
-			});
-
-			connection.endHandler(v -> {
-				if (!promise.future().isComplete()) {
-					if (promiseBodyLength.future().isComplete()
-							&& promiseBodyLength.future().result() == bodyReceived.get()) {
-						promise.complete(new FdfsPacket().setBodyLength(promiseBodyLength.future().result())
-								.setBodyBuffer(bodyBuffer.buffer()));
-					} else {
-						promise.fail(new FdfsException("socket closed before recv complete"));
-					}
-				}
-			});
-		});
+	/**
+	 * 从连接接收并解析报文，首字节超时与读取间隔超时分别计算。
+	 *
+	 * @param vertx {@code Vertx} 实例
+	 * @param firstByteTimeout 等待首字节的超时时间，设置为0则使用读取间隔超时时间
+	 * @param idleTimeout 两次读取之间的超时时间
+	 * @param connection
+	 *            等待接收报文的连接
+	 * @param expectedCommand
+	 *            期望的command
+	 * @param expectedBodyLength
+	 *            期望的body长度，设置为0则不进行检查.
+	 * @param bodyWriteStream
+	 *            报文体将被写入的流，如果该参数不为null，则报文体内容将被写入该流，不作为返回值返回。
+	 * @return 异步FdfsPacket对象，如果bodyWriteStream为null，则报文体也保存到该对象中；否则该对象仅包含报文长度。
+	 */
+	public static Future<FdfsPacket> recvPacket(Vertx vertx, long firstByteTimeout, long idleTimeout, FdfsConnection connection, byte expectedCommand, long expectedBodyLength,
+			WriteStream<Buffer> bodyWriteStream) {
+		Promise<FdfsPacket> promise = Promise.promise();
+
+		connection.decoder().expect(FdfsDeadlineScheduler.get(vertx), firstByteTimeout > 0 ? firstByteTimeout : idleTimeout,
+				idleTimeout, expectedCommand, expectedBodyLength, bodyWriteStream, promise);
+
+		return promise.future();
 	}
 
 	/**
-	 * 解析报文头。
+	 * 从连接接收报文，报文体写入流中，在接收报文体之前通知报文体长度。
 	 * 
-	 * @param headerBuffer header Buffer
-	 * @param expectedCommand expectedCommand
-	 * @param expectedBodyLength expectedBodyLength
-	 * @return async result of the length of the packet body
+	 * @param vertx {@code Vertx} 实例
+	 * @param firstByteTimeout 等待首字节的超时时间，设置为0则使用读取间隔超时时间
+	 * @param idleTimeout 两次读取之间的超时时间
+	 * @param connection
+	 *            等待接收报文的连接
+	 * @param expectedCommand
+	 *            期望的command
+	 * @param bodyWriteStream
+	 *            报文体将被写入的流
+	 * @param bodyLengthHandler
+	 *            报文头解析成功后，以报文体长度调用的处理器
+	 * @return 异步FdfsPacket对象，该对象仅包含报文长度。
 	 */
+	public static Future<FdfsPacket> recvPacket(Vertx vertx, long firstByteTimeout, long idleTimeout, FdfsConnection connection, byte expectedCommand,
+			WriteStream<Buffer> bodyWriteStream, Handler<Long> bodyLengthHandler) {
+		Promise<FdfsPacket> promise = Promise.promise();
+
+		connection.decoder().expect(FdfsDeadlineScheduler.get(vertx), firstByteTimeout > 0 ? firstByteTimeout : idleTimeout,
+				idleTimeout, expectedCommand, 0, bodyWriteStream, bodyLengthHandler, promise);
+
+		return promise.future();
+	}
+
 	public static Future<Long> parseHeader(Buffer headerBuffer, byte expectedCommand, long expectedBodyLength) {
 		if (headerBuffer.length() != HEADER_BYTE_LENGTH) {
 			return Future.failedFuture(new FdfsException("receive packet size" + headerBuffer.length()
@@ -347,7 +231,7 @@ public final class FdfsProtocol {
 
 		byte status = headerBuffer.getByte(PROTO_HEADER_STATUS_INDEX);
 		if (status != HEADER_STATUS_SUCCESS) {
-			return Future.failedFuture(new FdfsException("receive packet errno is: " + status));
+			return Future.failedFuture(new FdfsStatusException(status));
 		}
 
 		long bodyLength = headerBuffer.getLong(0);
@@ -433,13 +317,27 @@ public final class FdfsProtocol {
 			return json;
 		}
 
-		String[] md = meta.split(FDFS_RECORD_SEPERATOR);
+		// scanned in place with indexOf, without the arrays and substrings of split
+		int start = 0;
 
-		for (String item : md) {
-			String[] kv = item.split(FDFS_FIELD_SEPERATOR);
-			if (kv.length >= 2) {
-				json.put(FdfsUtils.fdfsTrim(kv[0]), FdfsUtils.fdfsTrim(kv[1]));
+		while (start < meta.length()) {
+			int end = meta.indexOf(FDFS_RECORD_SEPERATOR, start);
+			if (end < 0) {
+				end = meta.length();
 			}
+
+			int field = meta.indexOf(FDFS_FIELD_SEPERATOR, start);
+			if (field >= 0 && field < end) {
+				int valueEnd = meta.indexOf(FDFS_FIELD_SEPERATOR, field + 1);
+				if (valueEnd < 0 || valueEnd > end) {
+					valueEnd = end;
+				}
+
+				json.put(FdfsUtils.fdfsTrim(meta.substring(start, field)),
+						FdfsUtils.fdfsTrim(meta.substring(field + 1, valueEnd)));
+			}
+
+			start = end + 1;
 		}
 
 		return json;
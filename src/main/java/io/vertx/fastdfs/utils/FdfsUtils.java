@@ -40,6 +40,7 @@ public final class FdfsUtils {
 	 * @return new string
 	 */
 	public static String fdfsTrim(String src) {
-		return src.trim().replaceAll("^\u0000+|\u0000+$", "");
+		// trim removes every char up to ' ' at both ends, the NUL padding included
+		return src.trim();
 	}
 }
@@ -0,0 +1,123 @@
+package io.vertx.fastdfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Base64;
+
+import org.junit.Test;
+
+import io.vertx.fastdfs.utils.FdfsProtocol;
+
+/**
+ * Tests the decoding of the file information encoded in the file names.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsFileIdTest {
+
+	private static final String PATH = "M00/00/00/";
+	private static final int IP = 0xC0A80166;
+	private static final long TIMESTAMP = 1573088574L;
+	private static final int CRC32 = 0xACA0D0FB;
+
+	@Test
+	public void decodesSourceIp() {
+		FdfsFileId fileId = FdfsFileId.parse("group1/" + name(IP, 0x8012934A0000000CL, ".txt"));
+
+		assertEquals("group1", fileId.group());
+		assertTrue(fileId.isDecodable());
+		assertEquals("192.168.1.102", fileId.sourceIp());
+		assertNull(fileId.sourceId());
+		assertEquals(Instant.ofEpochSecond(TIMESTAMP), fileId.timestamp());
+		assertEquals(CRC32, fileId.crc32());
+		assertFalse(fileId.isAppender());
+		assertFalse(fileId.isTrunk());
+		assertFalse(fileId.isSlave());
+	}
+
+	@Test
+	public void decodesSourceId() {
+		FdfsFileId fileId = FdfsFileId.create("group1", name(100001, 1024, ".txt"));
+
+		assertEquals("100001", fileId.sourceId());
+		assertNull(fileId.sourceIp());
+	}
+
+	@Test
+	public void decodesSize() {
+		// a plain size is kept, a size with the high bit set carries random bits above 32 bits
+		assertEquals(5000, FdfsFileId.create("group1", name(IP, 5000, ".txt")).size());
+		assertEquals(12, FdfsFileId.create("group1", name(IP, 0x8012934A0000000CL, ".txt")).size());
+	}
+
+	@Test
+	public void decodesAppenderFlag() {
+		long encodedSize = Long.MIN_VALUE | FdfsProtocol.FDFS_APPENDER_FILE_SIZE | (0x1234L << 32) | 1024;
+		FdfsFileId fileId = FdfsFileId.create("group1", name(IP, encodedSize, ".log"));
+
+		assertTrue(fileId.isAppender());
+		assertFalse(fileId.isTrunk());
+		assertEquals(1024, fileId.size());
+	}
+
+	@Test
+	public void decodesTrunkFlag() {
+		long encodedSize = FdfsProtocol.FDFS_TRUNK_FILE_MARK_SIZE | (0x1234L << 32) | 2048;
+		String trunkInfo = "AAAAAAAAAAAAAAAA";
+		FdfsFileId fileId = FdfsFileId.create("group1", name(IP, encodedSize, trunkInfo + ".jpg"));
+
+		assertTrue(fileId.isTrunk());
+		assertFalse(fileId.isAppender());
+		assertFalse(fileId.isSlave());
+		assertEquals(2048, fileId.size());
+
+		// the trunk mark alone is not enough without the trunk information in the name
+		assertFalse(FdfsFileId.create("group1", name(IP, encodedSize, ".jpg")).isTrunk());
+	}
+
+	@Test
+	public void detectsSlaveFiles() {
+		assertTrue(FdfsFileId.create("group1", name(IP, 1024, "_150x150.jpg")).isSlave());
+		assertFalse(FdfsFileId.create("group1", name(IP, 1024, ".jpg")).isSlave());
+	}
+
+	@Test
+	public void ignoresNamesWhichCanNotBeDecoded() {
+		FdfsFileId fileId = FdfsFileId.parse("group1/M00/00/00/short.txt");
+
+		assertFalse(fileId.isDecodable());
+		assertNull(fileId.sourceIp());
+		assertNull(fileId.sourceId());
+		assertNull(fileId.timestamp());
+		assertEquals(-1, fileId.size());
+		assertEquals(0, fileId.crc32());
+		assertFalse(fileId.isAppender());
+		assertFalse(fileId.isSlave());
+	}
+
+	@Test
+	public void decodesAgainAfterRename() {
+		FdfsFileId fileId = FdfsFileId.create("group1", "M00/00/00/short.txt");
+		assertFalse(fileId.isDecodable());
+
+		fileId.setName(name(IP, 1024, ".txt"));
+		assertTrue(fileId.isDecodable());
+		assertEquals(1024, fileId.size());
+	}
+
+	private static String name(int sourceServer, long encodedSize, String suffix) {
+		ByteBuffer buffer = ByteBuffer.allocate(20);
+		buffer.putInt(sourceServer).putInt((int) TIMESTAMP).putLong(encodedSize).putInt(CRC32);
+
+		return PATH + Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array()) + suffix;
+	}
+}
@@ -0,0 +1,133 @@
+package io.vertx.fastdfs.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.fastdfs.FdfsBatchResult;
+import io.vertx.fastdfs.FdfsFileId;
+
+/**
+ * Tests the bounded pulling of the files, the flow control and the failures of
+ * the iterator of the batch streams.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsBatchStreamTest {
+
+	private static final FdfsFileId A = FdfsFileId.parse("group1/M00/00/00/a.txt");
+	private static final FdfsFileId B = FdfsFileId.parse("group1/M00/00/00/b.txt");
+	private static final FdfsFileId C = FdfsFileId.parse("group1/M00/00/00/c.txt");
+
+	@Test
+	public void emitsAllResultsThenEnds() {
+		List<String> emitted = new ArrayList<>();
+		AtomicBoolean ended = new AtomicBoolean();
+
+		FdfsBatchStream<String> stream = new FdfsBatchStream<>(Arrays.asList(A, B, C).iterator(), 2,
+				fileId -> fileId == B ? Future.failedFuture("missing") : Future.succeededFuture(fileId.name()));
+		stream.endHandler(v -> ended.set(true));
+		stream.handler(result -> emitted.add(result.succeeded() ? result.result() : result.cause().getMessage()));
+
+		assertEquals(Arrays.asList(A.name(), "missing", C.name()), emitted);
+		assertTrue(ended.get());
+	}
+
+	@Test
+	public void pullsOnlyWhatFitsTheConcurrency() {
+		List<Promise<String>> running = new ArrayList<>();
+		AtomicInteger pulled = new AtomicInteger();
+		Iterator<FdfsFileId> fileIds = counting(Arrays.asList(A, B, C).iterator(), pulled);
+
+		FdfsBatchStream<String> stream = new FdfsBatchStream<>(fileIds, 2, fileId -> {
+			Promise<String> promise = Promise.promise();
+			running.add(promise);
+			return promise.future();
+		});
+		List<FdfsBatchResult<String>> emitted = new ArrayList<>();
+		stream.pause();
+		stream.handler(emitted::add);
+		assertEquals(0, pulled.get());
+
+		stream.fetch(1);
+		assertEquals(2, pulled.get());
+
+		// a result that is not emitted yet keeps its slot
+		running.get(0).complete("a");
+		running.get(1).complete("b");
+		assertEquals(1, emitted.size());
+		assertEquals(2, pulled.get());
+
+		stream.resume();
+		assertEquals(3, pulled.get());
+		running.get(2).complete("c");
+		assertEquals(3, emitted.size());
+	}
+
+	@Test
+	public void reportsIteratorFailureOnce() {
+		RuntimeException cause = new RuntimeException("broken");
+		AtomicInteger calls = new AtomicInteger();
+		List<Throwable> failures = new ArrayList<>();
+		AtomicBoolean ended = new AtomicBoolean();
+
+		// an iterator which keeps failing once it failed
+		Iterator<FdfsFileId> fileIds = new Iterator<FdfsFileId>() {
+			@Override
+			public boolean hasNext() {
+				if (calls.incrementAndGet() > 2) {
+					throw cause;
+				}
+				return true;
+			}
+
+			@Override
+			public FdfsFileId next() {
+				return A;
+			}
+		};
+
+		FdfsBatchStream<String> stream = new FdfsBatchStream<>(fileIds, 4, fileId -> Future.succeededFuture("a"));
+		stream.exceptionHandler(failures::add);
+		stream.endHandler(v -> ended.set(true));
+		List<FdfsBatchResult<String>> emitted = new ArrayList<>();
+		stream.handler(emitted::add);
+
+		assertEquals(1, failures.size());
+		assertSame(cause, failures.get(0));
+		assertEquals(3, calls.get());
+		assertEquals(2, emitted.size());
+		assertFalse(ended.get());
+	}
+
+	private static Iterator<FdfsFileId> counting(Iterator<FdfsFileId> iterator, AtomicInteger pulled) {
+		return new Iterator<FdfsFileId>() {
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public FdfsFileId next() {
+				pulled.incrementAndGet();
+				return iterator.next();
+			}
+		};
+	}
+}
@@ -0,0 +1,178 @@
+package io.vertx.fastdfs.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+
+/**
+ * Tests the split in chunks, the concurrency, the retries and the ordered
+ * consumption of the chunked transfers.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsChunkedTransferTest {
+
+	@Test
+	public void splitsRangeInChunks() {
+		List<String> chunks = new ArrayList<>();
+		List<Long> progress = new ArrayList<>();
+
+		Future<Void> transfer = new FdfsChunkedTransfer<Void>(100, 25, 10, 1, 0, (offset, length) -> {
+			chunks.add(offset + "+" + length);
+			return Future.succeededFuture();
+		}, null).progressHandler(progress::add).start();
+
+		assertTrue(transfer.succeeded());
+		assertEquals(Arrays.asList("100+10", "110+10", "120+5"), chunks);
+		assertEquals(Arrays.asList(10L, 20L, 25L), progress);
+	}
+
+	@Test
+	public void completesEmptyRange() {
+		Future<Void> transfer = new FdfsChunkedTransfer<Void>(0, 0, 10, 2, 0, (offset, length) -> {
+			throw new AssertionError("no chunk to transfer");
+		}, null).start();
+
+		assertTrue(transfer.succeeded());
+	}
+
+	@Test
+	public void keepsConcurrencyBound() {
+		Map<Long, Promise<Void>> running = new LinkedHashMap<>();
+
+		Future<Void> transfer = new FdfsChunkedTransfer<Void>(0, 50, 10, 2, 0, (offset, length) -> {
+			Promise<Void> promise = Promise.promise();
+			running.put(offset, promise);
+			return promise.future();
+		}, null).start();
+
+		assertEquals(Arrays.asList(0L, 10L), new ArrayList<>(running.keySet()));
+
+		// a finished chunk makes room for the next one
+		running.remove(10L).complete();
+		assertEquals(Arrays.asList(0L, 20L), new ArrayList<>(running.keySet()));
+
+		while (!running.isEmpty()) {
+			assertTrue(running.size() <= 2);
+			running.remove(running.keySet().iterator().next()).complete();
+		}
+		assertTrue(transfer.succeeded());
+	}
+
+	@Test
+	public void retriesFailedChunk() {
+		AtomicInteger attempts = new AtomicInteger();
+
+		Future<Void> transfer = new FdfsChunkedTransfer<Void>(0, 30, 10, 1, 2, (offset, length) -> {
+			if (offset == 10 && attempts.incrementAndGet() <= 2) {
+				return Future.failedFuture("transient");
+			}
+			return Future.succeededFuture();
+		}, null).start();
+
+		assertTrue(transfer.succeeded());
+		assertEquals(3, attempts.get());
+	}
+
+	@Test
+	public void failsFastAfterRetries() {
+		List<Long> started = new ArrayList<>();
+		RuntimeException cause = new RuntimeException("broken");
+
+		Future<Void> transfer = new FdfsChunkedTransfer<Void>(0, 50, 10, 1, 1, (offset, length) -> {
+			started.add(offset);
+			return offset == 10 ? Future.failedFuture(cause) : Future.succeededFuture();
+		}, null).start();
+
+		assertTrue(transfer.failed());
+		assertSame(cause, transfer.cause());
+		// the failed chunk is tried twice, and no chunk is started after it
+		assertEquals(Arrays.asList(0L, 10L, 10L), started);
+	}
+
+	@Test
+	public void consumesInOrder() {
+		Map<Long, Promise<String>> running = new LinkedHashMap<>();
+		List<String> consumed = new ArrayList<>();
+
+		Future<Void> transfer = new FdfsChunkedTransfer<String>(0, 30, 10, 3, 0, (offset, length) -> {
+			Promise<String> promise = Promise.promise();
+			running.put(offset, promise);
+			return promise.future();
+		}, result -> {
+			consumed.add(result);
+			return Future.succeededFuture();
+		}).start();
+
+		// the chunks finish in reverse order, and are consumed in the order of the range
+		running.get(20L).complete("c");
+		running.get(10L).complete("b");
+		assertEquals(Collections.emptyList(), consumed);
+
+		running.get(0L).complete("a");
+		assertEquals(Arrays.asList("a", "b", "c"), consumed);
+		assertTrue(transfer.succeeded());
+	}
+
+	@Test
+	public void holdsSlotUntilConsumed() {
+		List<Long> started = new ArrayList<>();
+		List<Promise<Void>> consuming = new ArrayList<>();
+
+		Future<Void> transfer = new FdfsChunkedTransfer<Long>(0, 30, 10, 1, 0, (offset, length) -> {
+			started.add(offset);
+			return Future.succeededFuture(offset);
+		}, result -> {
+			Promise<Void> promise = Promise.promise();
+			consuming.add(promise);
+			return promise.future();
+		}).start();
+
+		// a slow consumer holds the chunk, so the next one does not start
+		assertEquals(Collections.singletonList(0L), started);
+
+		consuming.get(0).complete();
+		assertEquals(Arrays.asList(0L, 10L), started);
+		consuming.get(1).complete();
+		consuming.get(2).complete();
+		assertTrue(transfer.succeeded());
+	}
+
+	@Test
+	public void failsFastOnConsumerFailure() {
+		List<Long> started = new ArrayList<>();
+		List<Long> consumed = new ArrayList<>();
+
+		Future<Void> transfer = new FdfsChunkedTransfer<Long>(0, 50, 10, 1, 0, (offset, length) -> {
+			started.add(offset);
+			return Future.succeededFuture(offset);
+		}, result -> {
+			consumed.add(result);
+			return result == 10 ? Future.failedFuture("disk full") : Future.succeededFuture();
+		}).start();
+
+		assertTrue(transfer.failed());
+		assertEquals("disk full", transfer.cause().getMessage());
+		assertEquals(Arrays.asList(0L, 10L), started);
+		assertEquals(Arrays.asList(0L, 10L), consumed);
+		assertFalse(started.contains(20L));
+	}
+}
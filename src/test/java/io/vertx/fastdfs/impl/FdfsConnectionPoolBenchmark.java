@@ -0,0 +1,199 @@
+package io.vertx.fastdfs.impl;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetClientOptions;
+import io.vertx.core.net.NetSocket;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.fastdfs.options.FdfsTrackerOptions;
+import io.vertx.fastdfs.utils.FdfsProtocol;
+
+/**
+ * Compares the throughput of the shared pool with the pools owned by each
+ * context, against a local server answering active tests.
+ * <p>
+ * Every client context runs {@code concurrency} loops of get, active test and
+ * release, first to warm up, then measured for {@code seconds}. The shared pool
+ * holds as many connections as all the context pools together, and the server
+ * runs on event loops of its own. The two pools are measured twice, one after
+ * the other, so a run can be compared with the next one. Run with:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; \
+ *     io.vertx.fastdfs.impl.FdfsConnectionPoolBenchmark [contexts] [connections per context] [concurrency per context] [seconds]
+ * </pre>
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsConnectionPoolBenchmark {
+
+	private static final Buffer ACTIVE_TEST = FdfsProtocol.packHeader(FdfsProtocol.FDFS_PROTO_CMD_ACTIVE_TEST,
+			(byte) 0, 0);
+	private static final Buffer RESPONSE = FdfsProtocol.packHeader(FdfsProtocol.TRACKER_PROTO_CMD_RESP,
+			FdfsProtocol.HEADER_STATUS_SUCCESS, 0);
+	private static final long TIMEOUT = 10_000;
+
+	public static void main(String[] args) throws Exception {
+		int contexts = arg(args, 0, 4);
+		int connections = arg(args, 1, 2);
+		int concurrency = arg(args, 2, 8);
+		int seconds = arg(args, 3, 5);
+
+		Vertx vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(2 * contexts));
+
+		try {
+			int port = freePort();
+			for (int i = 0; i < contexts; ++i) {
+				await(listen(vertx, port));
+			}
+
+			// the contexts are spread over the event loops in turn, so the clients get event loops
+			// other than those of the server
+			List<Context> clients = new ArrayList<>();
+			for (int i = 0; i < contexts; ++i) {
+				clients.add(vertx.getOrCreateContext());
+			}
+
+			System.out.printf("%d contexts, %d connections and %d requests in flight per context, %d cpus%n",
+					contexts, connections, concurrency, Runtime.getRuntime().availableProcessors());
+
+			for (int run = 0; run < 2; ++run) {
+				for (boolean contextLocal : new boolean[] { false, true }) {
+					double throughput = measure(vertx, SocketAddress.inetSocketAddress(port, "127.0.0.1"),
+							contextLocal, clients, connections, concurrency, seconds);
+					System.out.printf("%-8s pool: %,12.0f requests/s%n", contextLocal ? "context" : "shared",
+							throughput);
+				}
+			}
+		} finally {
+			await(vertx.close());
+		}
+	}
+
+	private static double measure(Vertx vertx, SocketAddress address, boolean contextLocal, List<Context> clients,
+			int connections, int concurrency, int seconds) throws Exception {
+		FdfsTrackerOptions options = new FdfsTrackerOptions();
+		options.setPoolSize(contextLocal ? connections : connections * clients.size()).setIdleTimeout(0);
+
+		FdfsConnectionPool pool = new FdfsConnectionPool(vertx, new NetClientOptions(), options, contextLocal,
+				vertx.sharedData().getLocalMap("__vertx.FastDFS.benchmark"), "pool");
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicInteger loops = new AtomicInteger(clients.size() * concurrency);
+		LongAdder done = new LongAdder();
+		LongAdder failed = new LongAdder();
+
+		for (Context context : clients) {
+			context.runOnContext(v -> {
+				for (int j = 0; j < concurrency; ++j) {
+					loop(vertx, context, pool, address, running, loops, done, failed);
+				}
+			});
+		}
+
+		Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+		done.reset();
+		long start = System.nanoTime();
+		Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+		long requests = done.sum();
+		long elapsed = System.nanoTime() - start;
+
+		running.set(false);
+		while (loops.get() > 0) {
+			Thread.sleep(10);
+		}
+		pool.close();
+
+		if (failed.sum() > 0) {
+			throw new IllegalStateException(failed.sum() + " requests failed");
+		}
+
+		return requests * 1e9 / elapsed;
+	}
+
+	/**
+	 * get a connection, send an active test on it and release it, then start
+	 * again until the benchmark stops.
+	 */
+	private static void loop(Vertx vertx, Context context, FdfsConnectionPool pool, SocketAddress address,
+			AtomicBoolean running, AtomicInteger loops, LongAdder done, LongAdder failed) {
+		if (!running.get()) {
+			loops.decrementAndGet();
+			return;
+		}
+
+		pool.get(address).compose(connection -> connection.request(ACTIVE_TEST,
+				() -> FdfsProtocol.recvPacket(vertx, TIMEOUT, connection, FdfsProtocol.TRACKER_PROTO_CMD_RESP, 0, null))
+				.onComplete(ar -> connection.release())).onComplete(ar -> {
+					if (ar.succeeded()) {
+						done.increment();
+					} else {
+						failed.increment();
+					}
+
+					// the next request starts from the context of the loop, as an application would
+					context.runOnContext(v -> loop(vertx, context, pool, address, running, loops, done, failed));
+				});
+	}
+
+	/**
+	 * listen on an event loop of its own, and answer each active test received.
+	 */
+	private static Future<Void> listen(Vertx vertx, int port) {
+		Promise<Void> promise = Promise.promise();
+
+		vertx.getOrCreateContext().runOnContext(v -> vertx.createNetServer()
+				.connectHandler(FdfsConnectionPoolBenchmark::answer).listen(port, "127.0.0.1").<Void>mapEmpty()
+				.onComplete(promise));
+
+		return promise.future();
+	}
+
+	private static void answer(NetSocket socket) {
+		int[] received = new int[1];
+
+		socket.handler(buffer -> {
+			received[0] += buffer.length();
+			int requests = received[0] / FdfsProtocol.HEADER_BYTE_LENGTH;
+			received[0] %= FdfsProtocol.HEADER_BYTE_LENGTH;
+
+			if (requests > 0) {
+				Buffer responses = Buffer.buffer(requests * FdfsProtocol.HEADER_BYTE_LENGTH);
+				for (int i = 0; i < requests; ++i) {
+					responses.appendBuffer(RESPONSE);
+				}
+				socket.write(responses);
+			}
+		});
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private static int arg(String[] args, int index, int defaultValue) {
+		return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+	}
+
+	private static <T> T await(Future<T> future) throws Exception {
+		return future.toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+	}
+}
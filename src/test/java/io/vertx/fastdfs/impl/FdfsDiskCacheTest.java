@@ -0,0 +1,241 @@
+package io.vertx.fastdfs.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.fastdfs.FdfsFileId;
+
+/**
+ * Tests the index rebuilt from the cache directory, the versions of a file, the
+ * eviction and the cleanup of the temporary files of the disk cache.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsDiskCacheTest {
+
+	private static final FdfsFileId A = FdfsFileId.parse("group1/M00/00/00/a.txt");
+	private static final FdfsFileId B = FdfsFileId.parse("group1/M00/00/00/b.txt");
+	private static final FdfsFileId C = FdfsFileId.parse("group1/M00/00/00/c.txt");
+
+	private Vertx vertx;
+	private Path dir;
+
+	@Before
+	public void setUp() throws IOException {
+		vertx = Vertx.vertx();
+		dir = Files.createTempDirectory("fastdfs-disk-cache");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		await(vertx.close());
+
+		try (Stream<Path> paths = Files.walk(dir)) {
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public void rebuildsIndexFromDirectory() throws Exception {
+		FdfsDiskCache cache = new FdfsDiskCache(vertx, dir.toString(), 100);
+		await(cache.put(A, Buffer.buffer("aaaa"), cache.stamp()));
+		await(cache.close());
+
+		FdfsDiskCache reopened = new FdfsDiskCache(vertx, dir.toString(), 100);
+		String path = await(reopened.get(A));
+
+		assertNotNull(path);
+		assertEquals("aaaa", read(path));
+		assertEquals(1, reopened.stats().getSize());
+		assertEquals(4, reopened.stats().getBytes());
+	}
+
+	@Test
+	public void evictsOldestFilesOnLoad() throws Exception {
+		Path a = write(A, "aaaa", 1000);
+		Path b = write(B, "bbbb", 2000);
+		Path c = write(C, "cccc", 3000);
+
+		FdfsDiskCache cache = new FdfsDiskCache(vertx, dir.toString(), 8);
+
+		// the modification times give the order of use
+		assertNull(await(cache.get(A)));
+		assertNotNull(await(cache.get(B)));
+		assertNotNull(await(cache.get(C)));
+		assertFalse(Files.exists(a));
+		assertTrue(Files.exists(b));
+		assertTrue(Files.exists(c));
+		assertEquals(1, cache.stats().getEvictions());
+	}
+
+	@Test
+	public void keepsNewestVersionOnLoad() throws Exception {
+		Path old = write(A, 1, "old", 1000);
+		write(A, 2, "new", 1000);
+
+		FdfsDiskCache cache = new FdfsDiskCache(vertx, dir.toString(), 100);
+
+		assertEquals("new", read(await(cache.get(A))));
+		assertFalse(Files.exists(old));
+		assertEquals(3, cache.stats().getBytes());
+
+		// the next version is newer than those found on load
+		await(cache.put(A, Buffer.buffer("next"), cache.stamp()));
+		assertEquals("next", read(await(cache.get(A))));
+		assertEquals(1, files(A).size());
+	}
+
+	@Test
+	public void removesLeftoverTempFilesOnLoad() throws Exception {
+		Path a = write(A, "aaaa", 1000);
+		Path temp = a.resolveSibling(a.getFileName() + ".tmp");
+		Files.write(temp, "partial".getBytes(StandardCharsets.UTF_8));
+
+		FdfsDiskCache cache = new FdfsDiskCache(vertx, dir.toString(), 100);
+
+		assertNotNull(await(cache.get(A)));
+		assertFalse(Files.exists(temp));
+		assertEquals(1, cache.stats().getSize());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedOnPut() throws Exception {
+		FdfsDiskCache cache = new FdfsDiskCache(vertx, dir.toString(), 8);
+
+		await(cache.put(A, Buffer.buffer("aaaa"), cache.stamp()));
+		await(cache.put(B, Buffer.buffer("bbbb"), cache.stamp()));
+		assertNotNull(await(cache.get(A)));
+		await(cache.put(C, Buffer.buffer("cccc"), cache.stamp()));
+
+		assertNull(await(cache.get(B)));
+		assertNotNull(await(cache.get(A)));
+		assertNotNull(await(cache.get(C)));
+		assertTrue(files(B).isEmpty());
+		assertEquals(8, cache.stats().getBytes());
+	}
+
+	@Test
+	public void dropsDownloadsStartedBeforeInvalidation() throws Exception {
+		FdfsDiskCache cache = new FdfsDiskCache(vertx, dir.toString(), 100);
+
+		long stamp = cache.stamp();
+		cache.invalidate(B);
+		await(cache.put(A, Buffer.buffer("old"), stamp));
+
+		assertNull(await(cache.get(A)));
+		assertTrue(files(A).isEmpty());
+	}
+
+	@Test
+	public void keepsNewerFileOverStaleDownload() throws Exception {
+		FdfsDiskCache cache = new FdfsDiskCache(vertx, dir.toString(), 100);
+
+		// the stale download completes after the newer one was cached
+		long stamp = cache.stamp();
+		cache.invalidate(A);
+		await(cache.put(A, Buffer.buffer("new"), cache.stamp()));
+		await(cache.put(A, Buffer.buffer("old"), stamp));
+
+		assertEquals("new", read(await(cache.get(A))));
+		assertEquals(1, files(A).size());
+	}
+
+	@Test
+	public void replacesPreviousVersion() throws Exception {
+		FdfsDiskCache cache = new FdfsDiskCache(vertx, dir.toString(), 100);
+
+		await(cache.put(A, Buffer.buffer("first"), cache.stamp()));
+		String first = await(cache.get(A));
+		await(cache.put(A, Buffer.buffer("second"), cache.stamp()));
+
+		// a reader of the previous version never sees it overwritten, only deleted
+		assertFalse(Files.exists(Paths.get(first)));
+		assertEquals("second", read(await(cache.get(A))));
+		assertEquals(1, files(A).size());
+		assertEquals(6, cache.stats().getBytes());
+	}
+
+	@Test
+	public void closeWaitsForPendingFiles() throws Exception {
+		FdfsDiskCache cache = new FdfsDiskCache(vertx, dir.toString(), 100);
+
+		cache.put(A, Buffer.buffer("aaaa"), cache.stamp());
+		await(cache.close());
+		assertEquals(1, files(A).size());
+
+		// nothing is added once the cache is closed
+		await(cache.put(B, Buffer.buffer("bbbb"), cache.stamp()));
+		assertTrue(files(B).isEmpty());
+	}
+
+	private Path write(FdfsFileId fileId, String content, long lastModified) throws Exception {
+		return write(fileId, 1, content, lastModified);
+	}
+
+	private Path write(FdfsFileId fileId, long version, String content, long lastModified) throws Exception {
+		Path path = dir.resolve(key(fileId).substring(0, 2)).resolve(key(fileId) + "." + version);
+		Files.createDirectories(path.getParent());
+		Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(path, FileTime.fromMillis(lastModified));
+		return path;
+	}
+
+	private List<Path> files(FdfsFileId fileId) throws Exception {
+		String key = key(fileId);
+		Path parent = dir.resolve(key.substring(0, 2));
+		if (!Files.isDirectory(parent)) {
+			return Collections.emptyList();
+		}
+
+		try (Stream<Path> paths = Files.list(parent)) {
+			return paths.filter(path -> path.getFileName().toString().startsWith(key + ".")).collect(Collectors.toList());
+		}
+	}
+
+	private static String key(FdfsFileId fileId) throws Exception {
+		byte[] digest = MessageDigest.getInstance("SHA-1").digest(fileId.toString().getBytes(StandardCharsets.UTF_8));
+		StringBuilder key = new StringBuilder();
+		for (byte b : digest) {
+			key.append(String.format("%02x", b));
+		}
+
+		return key.toString();
+	}
+
+	private static String read(String path) throws IOException {
+		return new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
+	}
+
+	private static <T> T await(Future<T> future) throws Exception {
+		return future.toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+	}
+}
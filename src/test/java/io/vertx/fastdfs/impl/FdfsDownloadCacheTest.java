@@ -0,0 +1,130 @@
+package io.vertx.fastdfs.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ReadOnlyBufferException;
+
+import org.junit.Test;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.fastdfs.FdfsCacheStats;
+import io.vertx.fastdfs.FdfsFileId;
+
+/**
+ * Tests the eviction, the expiry and the stamp guard of the download cache.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsDownloadCacheTest {
+
+	private static final FdfsFileId A = FdfsFileId.parse("group1/M00/00/00/a.txt");
+	private static final FdfsFileId B = FdfsFileId.parse("group1/M00/00/00/b.txt");
+	private static final FdfsFileId C = FdfsFileId.parse("group1/M00/00/00/c.txt");
+
+	@Test
+	public void evictsLeastRecentlyUsedOverMaxBytes() {
+		FdfsDownloadCache cache = new FdfsDownloadCache(10, 10, 0, false);
+
+		put(cache, A, 0, 0, "aaaa");
+		put(cache, B, 0, 0, "bbbb");
+		assertNotNull(cache.get(A, 0, 0));
+		put(cache, C, 0, 0, "cccc");
+
+		assertNull(cache.get(B, 0, 0));
+		assertEquals("aaaa", cache.get(A, 0, 0).toString());
+		assertEquals("cccc", cache.get(C, 0, 0).toString());
+
+		FdfsCacheStats stats = cache.stats();
+		assertEquals(1, stats.getEvictions());
+		assertEquals(2, stats.getSize());
+		assertEquals(8, stats.getBytes());
+	}
+
+	@Test
+	public void skipsRangesOverMaxEntryBytes() {
+		FdfsDownloadCache cache = new FdfsDownloadCache(100, 4, 0, false);
+
+		assertTrue(cache.accepts(4));
+		assertFalse(cache.accepts(5));
+
+		put(cache, A, 0, 0, "aaaaa");
+		assertNull(cache.get(A, 0, 0));
+		assertEquals(0, cache.stats().getBytes());
+	}
+
+	@Test
+	public void expiresAfterTtl() throws Exception {
+		FdfsDownloadCache cache = new FdfsDownloadCache(100, 100, 50, false);
+
+		put(cache, A, 0, 0, "aaaa");
+		assertNotNull(cache.get(A, 0, 0));
+
+		Thread.sleep(100);
+		assertNull(cache.get(A, 0, 0));
+		assertEquals(1, cache.stats().getEvictions());
+		assertEquals(0, cache.stats().getBytes());
+	}
+
+	@Test
+	public void dropsDownloadsStartedBeforeInvalidation() {
+		FdfsDownloadCache cache = new FdfsDownloadCache(100, 100, 0, false);
+
+		// a file modified while a download is in flight may be read in its old content
+		long stamp = cache.stamp();
+		cache.invalidate(B);
+		cache.put(A, 0, 0, Buffer.buffer("old"), stamp);
+		assertNull(cache.get(A, 0, 0));
+
+		put(cache, A, 0, 0, "new");
+		assertEquals("new", cache.get(A, 0, 0).toString());
+	}
+
+	@Test
+	public void invalidatesAllRangesOfFile() {
+		FdfsDownloadCache cache = new FdfsDownloadCache(100, 100, 0, false);
+
+		put(cache, A, 0, 0, "aaaa");
+		put(cache, A, 2, 2, "aa");
+		put(cache, B, 0, 0, "bbbb");
+
+		cache.invalidate(A);
+		assertNull(cache.get(A, 0, 0));
+		assertNull(cache.get(A, 2, 2));
+		assertEquals("bbbb", cache.get(B, 0, 0).toString());
+		assertEquals(4, cache.stats().getBytes());
+	}
+
+	@Test
+	public void servesReadOnlyCopies() {
+		for (boolean directBuffers : new boolean[] { false, true }) {
+			FdfsDownloadCache cache = new FdfsDownloadCache(100, 100, 0, directBuffers);
+			Buffer body = Buffer.buffer("aaaa");
+
+			cache.put(A, 0, 0, body, cache.stamp());
+			body.setByte(0, (byte) 'x');
+
+			Buffer cached = cache.get(A, 0, 0);
+			assertEquals("aaaa", cached.toString());
+
+			try {
+				cached.setByte(0, (byte) 'x');
+				fail("the cached buffer is writable");
+			} catch (ReadOnlyBufferException e) {
+				// expected
+			}
+		}
+	}
+
+	private static void put(FdfsDownloadCache cache, FdfsFileId fileId, long offset, long bytes, String body) {
+		cache.put(fileId, offset, bytes, Buffer.buffer(body), cache.stamp());
+	}
+}
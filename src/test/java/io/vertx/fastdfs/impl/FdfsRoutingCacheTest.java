@@ -0,0 +1,121 @@
+package io.vertx.fastdfs.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import io.vertx.core.net.SocketAddress;
+import io.vertx.fastdfs.FdfsFileId;
+import io.vertx.fastdfs.options.FdfsStorageOptions;
+
+/**
+ * Tests the keys, the eviction, the expiry and the invalidation of the routing
+ * cache.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsRoutingCacheTest {
+
+	private static final FdfsStorageOptions STORAGE1 = storage("192.168.1.101");
+	private static final FdfsStorageOptions STORAGE2 = storage("192.168.1.102");
+
+	@Test
+	public void keysFetchPerFileAndUpdatePerSource() {
+		FdfsFileId a = FdfsFileId.create("group1", name(0xC0A80165, 1));
+		FdfsFileId b = FdfsFileId.create("group1", name(0xC0A80165, 2));
+		FdfsFileId c = FdfsFileId.create("group1", name(0xC0A80166, 3));
+
+		assertNotEquals(FdfsRoutingCache.fetchKey(a), FdfsRoutingCache.fetchKey(b));
+		assertNotEquals(FdfsRoutingCache.replicasKey(a), FdfsRoutingCache.replicasKey(b));
+		assertEquals(FdfsRoutingCache.updateKey(a), FdfsRoutingCache.updateKey(b));
+		assertNotEquals(FdfsRoutingCache.updateKey(a), FdfsRoutingCache.updateKey(c));
+
+		// a file id which can not be decoded gets a key of its own
+		FdfsFileId d = FdfsFileId.parse("group1/M00/00/00/d.txt");
+		FdfsFileId e = FdfsFileId.parse("group1/M00/00/00/e.txt");
+		assertNotEquals(FdfsRoutingCache.updateKey(d), FdfsRoutingCache.updateKey(e));
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedOverMaxSize() {
+		FdfsRoutingCache cache = new FdfsRoutingCache(60_000, 2);
+
+		cache.put("a", STORAGE1);
+		cache.put("b", STORAGE1);
+		assertNotNull(cache.get("a"));
+		cache.put("c", STORAGE2);
+
+		assertNull(cache.get("b"));
+		assertSame(STORAGE1, cache.get("a"));
+		assertSame(STORAGE2, cache.get("c"));
+		assertEquals(1, cache.stats().getEvictions());
+	}
+
+	@Test
+	public void expiresAfterTtl() throws Exception {
+		FdfsRoutingCache cache = new FdfsRoutingCache(50, 10);
+
+		cache.put("a", STORAGE1);
+		cache.putReplicas("r", Arrays.asList(STORAGE1, STORAGE2));
+		assertNotNull(cache.get("a"));
+		assertNotNull(cache.getReplicas("r"));
+
+		Thread.sleep(100);
+		assertNull(cache.get("a"));
+		assertNull(cache.getReplicas("r"));
+		assertEquals(2, cache.stats().getEvictions());
+	}
+
+	@Test
+	public void invalidatesRoutesToStorage() {
+		FdfsRoutingCache cache = new FdfsRoutingCache(60_000, 10);
+
+		cache.put("a", STORAGE1);
+		cache.put("b", STORAGE2);
+		cache.putReplicas("r1", Arrays.asList(STORAGE2, STORAGE1));
+		cache.putReplicas("r2", Collections.singletonList(STORAGE2));
+		cache.putStorages("group1", Collections.emptyList());
+
+		cache.invalidate(STORAGE1);
+
+		assertNull(cache.get("a"));
+		assertSame(STORAGE2, cache.get("b"));
+		assertNull(cache.getReplicas("r1"));
+		assertNotNull(cache.getReplicas("r2"));
+		assertNull(cache.getStorages("group1"));
+	}
+
+	@Test
+	public void cachesNothingWhenDisabled() {
+		FdfsRoutingCache cache = new FdfsRoutingCache(0, 10);
+
+		assertFalse(cache.isEnabled());
+		cache.put("a", STORAGE1);
+		assertNull(cache.get("a"));
+	}
+
+	private static FdfsStorageOptions storage(String host) {
+		return new FdfsStorageOptions().setGroup("group1").setAddress(SocketAddress.inetSocketAddress(23000, host));
+	}
+
+	private static String name(int sourceServer, int crc32) {
+		ByteBuffer buffer = ByteBuffer.allocate(20);
+		buffer.putInt(sourceServer).putInt(1573088574).putLong(1024).putInt(crc32);
+
+		return "M00/00/00/" + Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array()) + ".txt";
+	}
+}
@@ -0,0 +1,139 @@
+package io.vertx.fastdfs.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.fastdfs.FdfsFileId;
+
+/**
+ * Tests the bookkeeping of the resumable uploads, written in order or as
+ * chunks of an extended appender file, and the checkpoints saved as json.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsUploadCheckpointTest {
+
+	private static final FdfsFileId FILE_ID = FdfsFileId.parse("group1/M00/00/00/a.bin");
+	private static final SocketAddress STORAGE = SocketAddress.inetSocketAddress(23000, "192.168.1.101");
+
+	@Test
+	public void confirmsInOrder() {
+		FdfsUploadCheckpoint checkpoint = checkpoint(40, 10);
+
+		checkpoint.confirm(0, 10).confirm(10, 10);
+		assertEquals(20, checkpoint.getConfirmed());
+		assertTrue(checkpoint.isConfirmed(0));
+		assertTrue(checkpoint.isConfirmed(10));
+		assertFalse(checkpoint.isConfirmed(20));
+
+		// a chunk confirmed again after a retry does not move the length back
+		checkpoint.confirm(10, 10);
+		assertEquals(20, checkpoint.getConfirmed());
+	}
+
+	@Test
+	public void confirmsShortLastChunkInOrder() {
+		FdfsUploadCheckpoint checkpoint = checkpoint(25, 10);
+
+		checkpoint.confirm(0, 10).confirm(10, 10);
+		assertFalse(checkpoint.isConfirmed(20));
+
+		checkpoint.confirm(20, 5);
+		assertTrue(checkpoint.isConfirmed(20));
+	}
+
+	@Test
+	public void confirmsChunksOutOfOrderOnceExtended() {
+		FdfsUploadCheckpoint checkpoint = checkpoint(40, 10);
+
+		// the chunks written in order before the file was extended are kept
+		checkpoint.confirm(0, 10).setExtended();
+		assertTrue(checkpoint.isExtended());
+		assertTrue(checkpoint.isConfirmed(0));
+
+		checkpoint.confirm(30, 10).confirm(20, 10);
+		assertFalse(checkpoint.isConfirmed(10));
+		assertTrue(checkpoint.isConfirmed(20));
+		assertTrue(checkpoint.isConfirmed(30));
+
+		checkpoint.setExtended();
+		assertTrue(checkpoint.isConfirmed(30));
+	}
+
+	@Test
+	public void syncKeepsChunksOfExtendedFile() {
+		FdfsUploadCheckpoint checkpoint = checkpoint(40, 10).setExtended().confirm(20, 10);
+
+		checkpoint.sync(40);
+		assertTrue(checkpoint.isExtended());
+		assertTrue(checkpoint.isConfirmed(20));
+		assertFalse(checkpoint.isConfirmed(0));
+	}
+
+	@Test
+	public void syncFallsBackToInOrderOnUnexpectedSize() {
+		FdfsUploadCheckpoint checkpoint = checkpoint(40, 10).setExtended().confirm(20, 10);
+
+		// an extended file that lost its size is written again in order from its current size
+		checkpoint.sync(15);
+		assertFalse(checkpoint.isExtended());
+		assertEquals(15, checkpoint.getConfirmed());
+		assertTrue(checkpoint.isConfirmed(0));
+		assertFalse(checkpoint.isConfirmed(10));
+		assertFalse(checkpoint.isConfirmed(20));
+
+		// a file written in order is confirmed up to its size, and never past the local file
+		assertEquals(30, checkpoint.sync(30).getConfirmed());
+		assertEquals(40, checkpoint.sync(50).getConfirmed());
+	}
+
+	@Test
+	public void matchesSameFileAndChunkSize() {
+		FdfsUploadCheckpoint checkpoint = checkpoint(40, 10);
+
+		assertTrue(checkpoint.matches(40, 1000, 10));
+		assertFalse(checkpoint.matches(41, 1000, 10));
+		assertFalse(checkpoint.matches(40, 1001, 10));
+		assertFalse(checkpoint.matches(40, 1000, 20));
+	}
+
+	@Test
+	public void roundTripsThroughJson() {
+		FdfsUploadCheckpoint checkpoint = checkpoint(40, 10).confirm(0, 10).setExtended().confirm(30, 10);
+
+		FdfsUploadCheckpoint loaded = new FdfsUploadCheckpoint(new JsonObject(checkpoint.toJson().encode()));
+		assertTrue(loaded.matches(40, 1000, 10));
+		assertEquals("/tmp/a.bin", loaded.getPath());
+		assertEquals(FILE_ID.toString(), loaded.getFileId().toString());
+		assertEquals(STORAGE, loaded.getStorage());
+		assertTrue(loaded.isExtended());
+		assertTrue(loaded.isConfirmed(0));
+		assertFalse(loaded.isConfirmed(10));
+		assertTrue(loaded.isConfirmed(30));
+	}
+
+	@Test
+	public void loadsCheckpointWithoutStorage() {
+		JsonObject json = checkpoint(40, 10).confirm(0, 10).toJson();
+		json.remove(FdfsUploadCheckpoint.STORAGE_HOST);
+		json.remove(FdfsUploadCheckpoint.STORAGE_PORT);
+
+		FdfsUploadCheckpoint loaded = new FdfsUploadCheckpoint(json);
+		assertNull(loaded.getStorage());
+		assertEquals(10, loaded.getConfirmed());
+	}
+
+	private static FdfsUploadCheckpoint checkpoint(long size, int chunkSize) {
+		return new FdfsUploadCheckpoint("/tmp/a.bin", size, 1000, chunkSize, FILE_ID, STORAGE);
+	}
+}
@@ -0,0 +1,98 @@
+package io.vertx.fastdfs.utils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+/**
+ * A {@code Vertx} which only counts the timers set and cancelled, for the
+ * benchmarks. The timers never fire by themselves, {@link #tick()} fires them
+ * all once, as if their delay had passed.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+final class FdfsCountingVertx {
+
+	private final Map<Long, Handler<Long>> live = new LinkedHashMap<>();
+	private final Vertx vertx;
+
+	private long ids;
+	private long periodics;
+	private long timers;
+	private long cancels;
+	private int peak;
+
+	FdfsCountingVertx() {
+		vertx = (Vertx) Proxy.newProxyInstance(Vertx.class.getClassLoader(), new Class<?>[] { Vertx.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "setPeriodic":
+						++periodics;
+						return set(args);
+					case "setTimer":
+						++timers;
+						return set(args);
+					case "cancelTimer":
+						++cancels;
+						return live.remove((Long) args[0]) != null;
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					case "equals":
+						return proxy == args[0];
+					case "toString":
+						return "FdfsCountingVertx";
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	@SuppressWarnings("unchecked")
+	private long set(Object[] args) {
+		long id = ++ids;
+		live.put(id, (Handler<Long>) args[args.length - 1]);
+		peak = Math.max(peak, live.size());
+		return id;
+	}
+
+	Vertx vertx() {
+		return vertx;
+	}
+
+	/**
+	 * fire every live timer once.
+	 */
+	void tick() {
+		List<Map.Entry<Long, Handler<Long>>> timers = new ArrayList<>(live.entrySet());
+		timers.forEach(timer -> timer.getValue().handle(timer.getKey()));
+	}
+
+	long periodics() {
+		return periodics;
+	}
+
+	long timers() {
+		return timers;
+	}
+
+	long cancels() {
+		return cancels;
+	}
+
+	int live() {
+		return live.size();
+	}
+
+	int peak() {
+		return peak;
+	}
+}
@@ -0,0 +1,136 @@
+package io.vertx.fastdfs.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.fastdfs.impl.FdfsConnection;
+
+/**
+ * Counts the timers set to receive the responses, with a periodic timer per
+ * request as before and with the deadline scheduler.
+ * <p>
+ * The requests are started in waves of {@code inFlight} requests, and each
+ * wave is answered once it is all started. The timers tick once every
+ * {@code perTick} requests started, while requests are in flight: 1000 is 20k
+ * requests/s with the default tick of 50 ms. The counts do not depend on the
+ * machine. Run with:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; \
+ *     io.vertx.fastdfs.utils.FdfsDeadlineSchedulerBenchmark [requests] [perTick]
+ * </pre>
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsDeadlineSchedulerBenchmark {
+
+	private static final byte RESP = FdfsProtocol.STORAGE_PROTO_CMD_RESP;
+	private static final long TIMEOUT = 30_000;
+	private static final Buffer RESPONSE = FdfsProtocol.packHeader(RESP, FdfsProtocol.HEADER_STATUS_SUCCESS, 0);
+
+	public static void main(String[] args) {
+		int requests = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int perTick = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+		System.out.printf("%,d requests, a tick every %,d requests%n", requests, perTick);
+		System.out.printf("%-9s %9s %12s %9s %12s %12s%n", "receive", "in flight", "setPeriodic", "setTimer",
+				"cancelTimer", "peak timers");
+
+		for (int inFlight : new int[] { 1, 100, 10_000 }) {
+			print("legacy", inFlight, legacy(requests, inFlight, perTick));
+			print("decoder", inFlight, decoder(requests, inFlight, perTick));
+		}
+	}
+
+	private static FdfsCountingVertx legacy(int requests, int inFlight, int perTick) {
+		FdfsCountingVertx counting = new FdfsCountingVertx();
+		List<FdfsLegacyReceiver.Connection> connections = new ArrayList<>();
+		for (int i = 0; i < inFlight; ++i) {
+			connections.add(new FdfsLegacyReceiver.Connection());
+		}
+
+		run(requests, inFlight, perTick, counting,
+				i -> FdfsLegacyReceiver.recvPacket(counting.vertx(), TIMEOUT, connections.get(i), RESP, 0),
+				i -> connections.get(i).read(RESPONSE));
+		return counting;
+	}
+
+	private static FdfsCountingVertx decoder(int requests, int inFlight, int perTick) {
+		FdfsCountingVertx counting = new FdfsCountingVertx();
+		FdfsDeadlineScheduler scheduler = new FdfsDeadlineScheduler(counting.vertx());
+		List<FdfsPacketDecoder> decoders = new ArrayList<>();
+		for (int i = 0; i < inFlight; ++i) {
+			decoders.add(new FdfsPacketDecoder(new BenchmarkConnection()));
+		}
+
+		run(requests, inFlight, perTick, counting, i -> {
+			Promise<FdfsPacket> promise = Promise.promise();
+			decoders.get(i).expect(scheduler, TIMEOUT, TIMEOUT, RESP, 0, null, promise);
+			return promise.future();
+		}, i -> decoders.get(i).handle(RESPONSE));
+		return counting;
+	}
+
+	private static void run(int requests, int inFlight, int perTick, FdfsCountingVertx counting,
+			Receive receive, Answer answer) {
+		List<Future<FdfsPacket>> responses = new ArrayList<>();
+		int started = 0;
+
+		while (started < requests) {
+			int wave = Math.min(inFlight, requests - started);
+			responses.clear();
+
+			for (int i = 0; i < wave; ++i) {
+				responses.add(receive.start(i));
+				if (++started % perTick == 0) {
+					counting.tick();
+				}
+			}
+
+			for (int i = 0; i < wave; ++i) {
+				answer.read(i);
+				if (!responses.get(i).succeeded()) {
+					throw new IllegalStateException("the response was not received");
+				}
+			}
+		}
+
+		// the last tick lets the timers of the completed requests be cancelled
+		counting.tick();
+	}
+
+	private static void print(String receive, int inFlight, FdfsCountingVertx counting) {
+		System.out.printf("%-9s %,9d %,12d %,9d %,12d %,12d%n", receive, inFlight, counting.periodics(),
+				counting.timers(), counting.cancels(), counting.peak());
+	}
+
+	private interface Receive {
+		Future<FdfsPacket> start(int connection);
+	}
+
+	private interface Answer {
+		void read(int connection);
+	}
+
+	/**
+	 * A connection without a socket, which is always connected.
+	 */
+	private static final class BenchmarkConnection extends FdfsConnection {
+
+		private BenchmarkConnection() {
+			super(null, null);
+		}
+
+		@Override
+		public boolean isConnected() {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package io.vertx.fastdfs.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.vertx.core.Vertx;
+
+/**
+ * Tests the expiry and the cancellation of the deadlines, on a small wheel so
+ * that the deadlines go around it.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsDeadlineSchedulerTest {
+
+	private static final long TICK = 10;
+	private static final int WHEEL_SIZE = 4;
+
+	private Vertx vertx;
+	private FdfsDeadlineScheduler scheduler;
+
+	@Before
+	public void setUp() {
+		vertx = Vertx.vertx();
+		scheduler = new FdfsDeadlineScheduler(vertx, TICK, WHEEL_SIZE);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void expiresAfterRollover() throws Exception {
+		CountDownLatch latch = new CountDownLatch(2);
+		List<String> order = new CopyOnWriteArrayList<>();
+		AtomicLong farElapsed = new AtomicLong();
+		long start = System.currentTimeMillis();
+
+		// the far deadline is several turns of the wheel away, and passes its slot before it is due
+		long farDelay = TICK * WHEEL_SIZE * 4;
+		scheduler.schedule(farDelay, v -> {
+			farElapsed.set(System.currentTimeMillis() - start);
+			order.add("far");
+			latch.countDown();
+		});
+		scheduler.schedule(TICK * 2, v -> {
+			order.add("near");
+			latch.countDown();
+		});
+
+		assertEquals(2, scheduler.pending());
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals("near", order.get(0));
+		assertEquals("far", order.get(1));
+		assertTrue("expired after " + farElapsed.get() + " ms", farElapsed.get() >= farDelay);
+		assertEquals(0, scheduler.pending());
+	}
+
+	@Test
+	public void cancelledDeadlineDoesNotExpire() throws Exception {
+		AtomicInteger expired = new AtomicInteger();
+		CountDownLatch latch = new CountDownLatch(2);
+
+		// three deadlines in the same slot, the one in the middle of the list is cancelled
+		scheduler.schedule(TICK * 3, v -> {
+			expired.incrementAndGet();
+			latch.countDown();
+		});
+		FdfsDeadlineScheduler.Deadline cancelled = scheduler.schedule(TICK * 3, v -> expired.addAndGet(100));
+		scheduler.schedule(TICK * 3, v -> {
+			expired.incrementAndGet();
+			latch.countDown();
+		});
+
+		cancelled.cancel();
+		cancelled.cancel();
+		assertEquals(2, scheduler.pending());
+
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		Thread.sleep(TICK * WHEEL_SIZE * 2);
+		assertEquals(2, expired.get());
+		assertEquals(0, scheduler.pending());
+	}
+
+	@Test
+	public void restartsAfterIdle() throws Exception {
+		CountDownLatch first = new CountDownLatch(1);
+		scheduler.schedule(TICK, v -> first.countDown());
+		assertTrue(first.await(5, TimeUnit.SECONDS));
+
+		// the timer stops once nothing is pending, and starts again with the next deadline
+		Thread.sleep(TICK * WHEEL_SIZE * 2);
+
+		CountDownLatch second = new CountDownLatch(1);
+		scheduler.schedule(TICK, v -> second.countDown());
+		assertTrue(second.await(5, TimeUnit.SECONDS));
+	}
+}
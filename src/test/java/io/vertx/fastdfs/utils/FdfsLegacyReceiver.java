@@ -0,0 +1,206 @@
+package io.vertx.fastdfs.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.fastdfs.exp.FdfsException;
+
+/**
+ * The receive of a response as it was before {@link FdfsPacketDecoder} and
+ * {@link FdfsDeadlineScheduler}, kept for the benchmarks to compare with: a
+ * periodic timer and a new parsing state for every request. The body written
+ * to a stream is left out, only the body received in a buffer is kept.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+final class FdfsLegacyReceiver {
+
+	private FdfsLegacyReceiver() {
+	}
+
+	static Future<FdfsPacket> recvPacket(Vertx vertx, long timeoutMillis, ReadStream<Buffer> connection,
+			byte expectedCommand, long expectedBodyLength) {
+
+		return Future.future(promise -> {
+
+			Buffer headerBuffer = Buffer.buffer(FdfsProtocol.HEADER_BYTE_LENGTH);
+			Promise<Long> promiseBodyLength = Promise.promise();
+			WrappedBuffer bodyBuffer = new WrappedBuffer();
+			AtomicLong bodyReceived = new AtomicLong();
+			AtomicLong lastReceiveTime = new AtomicLong(System.currentTimeMillis());
+
+			vertx.setPeriodic(timeoutMillis, l -> {
+				if (System.currentTimeMillis() - lastReceiveTime.get() > timeoutMillis) {
+
+					vertx.cancelTimer(l);
+
+					if (!promise.future().isComplete()) {
+						if (promiseBodyLength.future().isComplete()
+								&& promiseBodyLength.future().result() == bodyReceived.get()) {
+							promise.complete(new FdfsPacket().setBodyLength(promiseBodyLength.future().result())
+									.setBodyBuffer(bodyBuffer.buffer()));
+						} else {
+							promise.fail(new FdfsException("receive timeout"));
+						}
+					}
+				} else {
+					if (promise.future().isComplete()) {
+						vertx.cancelTimer(l);
+					}
+				}
+			});
+
+			connection.handler(buffer -> {
+
+				lastReceiveTime.set(System.currentTimeMillis());
+
+				if (!promiseBodyLength.future().isComplete()) {
+					final long currentLength = headerBuffer.length() + buffer.length();
+					final int lengthToFillHeader = FdfsProtocol.HEADER_BYTE_LENGTH - headerBuffer.length();
+					if (currentLength >= FdfsProtocol.HEADER_BYTE_LENGTH) {
+						headerBuffer.appendBuffer(buffer, 0, lengthToFillHeader);
+
+						FdfsProtocol.parseHeader(headerBuffer, expectedCommand, expectedBodyLength)
+								.onComplete(promiseBodyLength);
+
+						if (!promiseBodyLength.future().succeeded()) {
+							promise.fail(promiseBodyLength.future().cause());
+							return;
+						}
+
+						if (promiseBodyLength.future().result() == 0) {
+							promise.complete(new FdfsPacket().setBodyLength(promiseBodyLength.future().result()));
+							return;
+						}
+
+						bodyBuffer.allocate(promiseBodyLength.future().result().intValue());
+
+						if (currentLength > FdfsProtocol.HEADER_BYTE_LENGTH) {
+							int lengthToFillBody = buffer.length() - lengthToFillHeader;
+							bodyBuffer.appendBuffer(buffer, lengthToFillHeader, lengthToFillBody);
+							bodyReceived.addAndGet(lengthToFillBody);
+
+							if (bodyBuffer.length() >= promiseBodyLength.future().result()) {
+								promise.complete(new FdfsPacket().setBodyLength(promiseBodyLength.future().result())
+										.setBodyBuffer(bodyBuffer.buffer()));
+							}
+						}
+					} else {
+						headerBuffer.appendBuffer(buffer);
+					}
+				} else {
+					bodyBuffer.appendBuffer(buffer);
+					bodyReceived.addAndGet(buffer.length());
+
+					if (bodyBuffer.length() >= promiseBodyLength.future().result()) {
+						promise.complete(new FdfsPacket().setBodyLength(promiseBodyLength.future().result())
+								.setBodyBuffer(bodyBuffer.buffer()));
+					}
+				}
+			});
+
+			connection.exceptionHandler(e -> {
+				if (!promise.future().isComplete()) {
+					if (promiseBodyLength.future().isComplete()
+							&& promiseBodyLength.future().result() == bodyReceived.get()) {
+						promise.complete(new FdfsPacket().setBodyLength(promiseBodyLength.future().result())
+								.setBodyBuffer(bodyBuffer.buffer()));
+					} else {
+						promise.fail(new FdfsException(e));
+					}
+				}
+			});
+
+			connection.endHandler(v -> {
+				if (!promise.future().isComplete()) {
+					if (promiseBodyLength.future().isComplete()
+							&& promiseBodyLength.future().result() == bodyReceived.get()) {
+						promise.complete(new FdfsPacket().setBodyLength(promiseBodyLength.future().result())
+								.setBodyBuffer(bodyBuffer.buffer()));
+					} else {
+						promise.fail(new FdfsException("socket closed before recv complete"));
+					}
+				}
+			});
+		});
+	}
+
+	private static class WrappedBuffer {
+		private Buffer buffer;
+
+		public WrappedBuffer allocate(int initialSizeHint) {
+			buffer = Buffer.buffer(initialSizeHint);
+			return this;
+		}
+
+		public Buffer buffer() {
+			return buffer;
+		}
+
+		public WrappedBuffer appendBuffer(Buffer buffer) {
+			this.buffer.appendBuffer(buffer);
+			return this;
+		}
+
+		public WrappedBuffer appendBuffer(Buffer buffer, int offset, int len) {
+			this.buffer.appendBuffer(buffer, offset, len);
+			return this;
+		}
+
+		public long length() {
+			return buffer.length();
+		}
+	}
+
+	/**
+	 * A connection without a socket, which hands the reads to the last handler
+	 * set, as the socket did.
+	 */
+	static final class Connection implements ReadStream<Buffer> {
+		private Handler<Buffer> handler;
+
+		void read(Buffer buffer) {
+			handler.handle(buffer);
+		}
+
+		@Override
+		public Connection handler(Handler<Buffer> handler) {
+			this.handler = handler;
+			return this;
+		}
+
+		@Override
+		public Connection exceptionHandler(Handler<Throwable> handler) {
+			return this;
+		}
+
+		@Override
+		public Connection endHandler(Handler<Void> endHandler) {
+			return this;
+		}
+
+		@Override
+		public Connection pause() {
+			return this;
+		}
+
+		@Override
+		public Connection resume() {
+			return this;
+		}
+
+		@Override
+		public Connection fetch(long amount) {
+			return this;
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package io.vertx.fastdfs.utils;
+
+import java.lang.management.ManagementFactory;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.fastdfs.impl.FdfsConnection;
+
+/**
+ * Measures the bytes allocated to receive a response, by the former receive
+ * with a new parsing state and a periodic timer per request, and by the
+ * decoder bound to the connection.
+ * <p>
+ * The responses are read whole, or as the header then the body, for a few body
+ * sizes. Each case is warmed up, then the bytes allocated by the thread are
+ * divided by the number of requests. The timers of the former receive go to a
+ * stub, whose own allocations are measured apart and left out: a real Vert.x
+ * timer allocates more. Run with:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; \
+ *     io.vertx.fastdfs.utils.FdfsPacketDecoderBenchmark [requests]
+ * </pre>
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsPacketDecoderBenchmark {
+
+	private static final byte RESP = FdfsProtocol.STORAGE_PROTO_CMD_RESP;
+	private static final long TIMEOUT = 30_000;
+	private static final int PER_TICK = 1000;
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	public static void main(String[] args) {
+		int requests = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+		System.out.printf("%,d requests per case, %s %s%n", requests, System.getProperty("java.vm.name"),
+				System.getProperty("java.version"));
+		System.out.printf("%-7s %-13s %-8s %14s %12s%n", "body", "reads", "receive", "bytes/request", "ns/request");
+
+		double stub = stub(requests);
+
+		for (int bodyLength : new int[] { 0, 64, 4096 }) {
+			Buffer packet = FdfsProtocol.packHeader(RESP, FdfsProtocol.HEADER_STATUS_SUCCESS, bodyLength)
+					.appendBuffer(Buffer.buffer(new byte[bodyLength]));
+
+			for (boolean split : new boolean[] { false, true }) {
+				if (split && bodyLength == 0) {
+					continue;
+				}
+
+				Buffer[] reads = split
+						? new Buffer[] { packet.slice(0, FdfsProtocol.HEADER_BYTE_LENGTH),
+								packet.slice(FdfsProtocol.HEADER_BYTE_LENGTH, packet.length()) }
+						: new Buffer[] { packet };
+
+				legacy(requests, bodyLength, reads, stub);
+				decoder(requests, bodyLength, reads);
+			}
+		}
+
+		System.out.printf("the timer stub of the legacy receive, left out above: %.0f bytes/request%n", stub);
+	}
+
+	private static void legacy(int requests, int bodyLength, Buffer[] reads, double stub) {
+		FdfsCountingVertx counting = new FdfsCountingVertx();
+		FdfsLegacyReceiver.Connection connection = new FdfsLegacyReceiver.Connection();
+
+		Runnable request = () -> {
+			Future<FdfsPacket> response = FdfsLegacyReceiver.recvPacket(counting.vertx(), TIMEOUT, connection, RESP,
+					0);
+			for (Buffer read : reads) {
+				connection.read(read);
+			}
+			check(response, bodyLength);
+		};
+
+		measure("legacy", requests, bodyLength, reads, counting, request, stub);
+	}
+
+	private static void decoder(int requests, int bodyLength, Buffer[] reads) {
+		FdfsCountingVertx counting = new FdfsCountingVertx();
+		FdfsDeadlineScheduler scheduler = new FdfsDeadlineScheduler(counting.vertx());
+		FdfsPacketDecoder decoder = new FdfsPacketDecoder(new BenchmarkConnection());
+
+		Runnable request = () -> {
+			Promise<FdfsPacket> promise = Promise.promise();
+			decoder.expect(scheduler, TIMEOUT, TIMEOUT, RESP, 0, null, promise);
+			for (Buffer read : reads) {
+				decoder.handle(read);
+			}
+			check(promise.future(), bodyLength);
+		};
+
+		measure("decoder", requests, bodyLength, reads, counting, request, 0);
+	}
+
+	/**
+	 * measure the bytes allocated by the timer stub for a periodic timer which is
+	 * set, and cancelled on its first tick.
+	 */
+	private static double stub(int requests) {
+		FdfsCountingVertx counting = new FdfsCountingVertx();
+		Vertx vertx = counting.vertx();
+		Handler<Long> cancel = vertx::cancelTimer;
+
+		return bytes(requests, counting, () -> vertx.setPeriodic(TIMEOUT, cancel));
+	}
+
+	private static void measure(String receive, int requests, int bodyLength, Buffer[] reads,
+			FdfsCountingVertx counting, Runnable request, double stub) {
+		long start = System.nanoTime();
+		double bytes = bytes(requests, counting, request) - stub;
+		long elapsed = System.nanoTime() - start;
+
+		System.out.printf("%-7d %-13s %-8s %,14.0f %,12.0f%n", bodyLength, reads.length == 1 ? "whole" : "header, body",
+				receive, bytes, (double) elapsed / (2 * requests));
+	}
+
+	/**
+	 * run the requests twice, to warm up then to measure, and tick the timers as
+	 * they would at 20k requests/s.
+	 */
+	private static double bytes(int requests, FdfsCountingVertx counting, Runnable request) {
+		long thread = Thread.currentThread().getId();
+		long allocated = 0;
+
+		for (int round = 0; round < 2; ++round) {
+			allocated = THREADS.getThreadAllocatedBytes(thread);
+			for (int i = 1; i <= requests; ++i) {
+				request.run();
+				if (i % PER_TICK == 0) {
+					counting.tick();
+				}
+			}
+			allocated = THREADS.getThreadAllocatedBytes(thread) - allocated;
+		}
+
+		return (double) allocated / requests;
+	}
+
+	private static void check(Future<FdfsPacket> response, int bodyLength) {
+		if (!response.succeeded() || response.result().getBodyLength() != bodyLength) {
+			throw new IllegalStateException("the response was not received");
+		}
+	}
+
+	/**
+	 * A connection without a socket, which is always connected.
+	 */
+	private static final class BenchmarkConnection extends FdfsConnection {
+
+		private BenchmarkConnection() {
+			super(null, null);
+		}
+
+		@Override
+		public boolean isConnected() {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package io.vertx.fastdfs.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.fastdfs.exp.FdfsStatusException;
+import io.vertx.fastdfs.impl.FdfsConnection;
+
+/**
+ * Tests the framing of the responses split over several reads or coalesced in
+ * one read, and the receive timeouts.
+ *
+ * @author GengTeng
+ * <p>
+ * me@gteng.org
+ *
+ * @version 4.2
+ */
+public class FdfsPacketDecoderTest {
+
+	private static final byte RESP = FdfsProtocol.STORAGE_PROTO_CMD_RESP;
+	private static final long NO_TIMEOUT = 60_000;
+
+	private Vertx vertx;
+	private FdfsDeadlineScheduler scheduler;
+	private TestConnection connection;
+	private FdfsPacketDecoder decoder;
+
+	@Before
+	public void setUp() {
+		vertx = Vertx.vertx();
+		scheduler = new FdfsDeadlineScheduler(vertx, 10, 64);
+		connection = new TestConnection();
+		decoder = new FdfsPacketDecoder(connection);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void decodesPacketSplitInHeaderAndBody() {
+		Future<FdfsPacket> response = expect(NO_TIMEOUT, NO_TIMEOUT, 0);
+		Buffer packet = packet(FdfsProtocol.HEADER_STATUS_SUCCESS, "hello");
+
+		decoder.handle(packet.slice(0, 3));
+		decoder.handle(packet.slice(3, 10));
+		decoder.handle(packet.slice(10, 12));
+		assertFalse(response.isComplete());
+
+		decoder.handle(packet.slice(12, packet.length()));
+		assertTrue(response.succeeded());
+		assertEquals(5, response.result().getBodyLength());
+		assertEquals("hello", response.result().getBodyBuffer().toString());
+		assertFalse(connection.closed);
+	}
+
+	@Test
+	public void decodesCoalescedPackets() {
+		Future<FdfsPacket> first = expect(NO_TIMEOUT, NO_TIMEOUT, 0);
+		Future<FdfsPacket> second = expect(NO_TIMEOUT, NO_TIMEOUT, 0);
+		Future<FdfsPacket> third = expect(NO_TIMEOUT, NO_TIMEOUT, 0);
+
+		// the third header starts in the same read and ends in the next one
+		Buffer thirdPacket = packet(FdfsProtocol.HEADER_STATUS_SUCCESS, "third");
+		decoder.handle(packet(FdfsProtocol.HEADER_STATUS_SUCCESS, "first")
+				.appendBuffer(packet(FdfsProtocol.HEADER_STATUS_SUCCESS, ""))
+				.appendBuffer(thirdPacket.slice(0, 4)));
+
+		assertEquals("first", first.result().getBodyBuffer().toString());
+		assertEquals(0, second.result().getBodyLength());
+		assertFalse(third.isComplete());
+
+		decoder.handle(thirdPacket.slice(4, thirdPacket.length()));
+		assertEquals("third", third.result().getBodyBuffer().toString());
+		assertFalse(connection.closed);
+	}
+
+	@Test
+	public void skipsBodyOfErrorStatus() {
+		Future<FdfsPacket> failed = expect(NO_TIMEOUT, NO_TIMEOUT, 0);
+		Future<FdfsPacket> next = expect(NO_TIMEOUT, NO_TIMEOUT, 0);
+
+		decoder.handle(packet(FdfsProtocol.ERR_NO_ENOENT, "err")
+				.appendBuffer(packet(FdfsProtocol.HEADER_STATUS_SUCCESS, "ok")));
+
+		assertTrue(failed.failed());
+		assertEquals(FdfsProtocol.ERR_NO_ENOENT, ((FdfsStatusException) failed.cause()).getStatus());
+		assertEquals("ok", next.result().getBodyBuffer().toString());
+		assertFalse(connection.closed);
+	}
+
+	@Test
+	public void checksExpectedBodyLength() {
+		Future<FdfsPacket> failed = expect(NO_TIMEOUT, NO_TIMEOUT, 4);
+		Future<FdfsPacket> next = expect(NO_TIMEOUT, NO_TIMEOUT, 0);
+
+		decoder.handle(packet(FdfsProtocol.HEADER_STATUS_SUCCESS, "12345")
+				.appendBuffer(packet(FdfsProtocol.HEADER_STATUS_SUCCESS, "ok")));
+
+		assertTrue(failed.failed());
+		assertEquals("ok", next.result().getBodyBuffer().toString());
+	}
+
+	@Test
+	public void closesOnUnexpectedCommand() {
+		Future<FdfsPacket> first = expect(NO_TIMEOUT, NO_TIMEOUT, 0);
+		Future<FdfsPacket> second = expect(NO_TIMEOUT, NO_TIMEOUT, 0);
+
+		decoder.handle(FdfsProtocol.packHeader((byte) (RESP + 1), FdfsProtocol.HEADER_STATUS_SUCCESS, 0));
+
+		assertTrue(first.failed());
+		assertTrue(second.failed());
+		assertTrue(connection.closed);
+	}
+
+	@Test
+	public void closesOnUnexpectedData() {
+		decoder.handle(packet(FdfsProtocol.HEADER_STATUS_SUCCESS, "stray"));
+
+		assertTrue(connection.closed);
+	}
+
+	@Test
+	public void failsWithoutFirstByte() throws Exception {
+		long start = System.currentTimeMillis();
+		Future<FdfsPacket> response = expect(50, NO_TIMEOUT, 0);
+
+		assertEquals("receive timeout", failure(response).getMessage());
+		assertTrue(System.currentTimeMillis() - start >= 50);
+		awaitClosed();
+	}
+
+	@Test
+	public void failsWhenIdleAfterFirstByte() throws Exception {
+		Future<FdfsPacket> response = expect(50, 100, 0);
+		Buffer packet = packet(FdfsProtocol.HEADER_STATUS_SUCCESS, "hello");
+
+		long start = System.currentTimeMillis();
+		decoder.handle(packet.slice(0, 4));
+
+		// the first byte timeout is passed, the idle timeout counts from the last read
+		assertEquals("receive timeout", failure(response).getMessage());
+		assertTrue(System.currentTimeMillis() - start >= 100);
+		awaitClosed();
+	}
+
+	@Test
+	public void keepsWaitingWhileDataArrives() throws Exception {
+		Future<FdfsPacket> response = expect(200, 200, 0);
+		Buffer packet = packet(FdfsProtocol.HEADER_STATUS_SUCCESS, "slowly");
+
+		// the 16 reads take longer than both timeouts, but no read is far from the previous one. The
+		// gaps stay well below the timeouts, so a stall of the machine does not fail the test
+		for (int i = 0; i < packet.length(); ++i) {
+			decoder.handle(packet.slice(i, i + 1));
+			Thread.sleep(15);
+		}
+
+		assertEquals("slowly", response.toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS)
+				.getBodyBuffer().toString());
+		assertFalse(connection.closed);
+	}
+
+	private Future<FdfsPacket> expect(long firstByteTimeout, long idleTimeout, long expectedBodyLength) {
+		Promise<FdfsPacket> promise = Promise.promise();
+		decoder.expect(scheduler, firstByteTimeout, idleTimeout, RESP, expectedBodyLength, null, promise);
+		return promise.future();
+	}
+
+	private void awaitClosed() throws InterruptedException {
+		// the timer fails the requests before it closes the connection
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!connection.closed && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+
+		assertTrue(connection.closed);
+	}
+
+	private static Throwable failure(Future<FdfsPacket> response) throws Exception {
+		CompletableFuture<FdfsPacket> future = response.toCompletionStage().toCompletableFuture();
+
+		try {
+			future.get(5, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			return e.getCause();
+		}
+
+		throw new AssertionError("the response did not fail");
+	}
+
+	private static Buffer packet(byte status, String body) {
+		return FdfsProtocol.packHeader(RESP, status, body.length()).appendString(body);
+	}
+
+	/**
+	 * A connection without a socket, which records whether it was closed.
+	 */
+	private static final class TestConnection extends FdfsConnection {
+		private volatile boolean closed;
+
+		private TestConnection() {
+			super(null, null);
+		}
+
+		@Override
+		public boolean isConnected() {
+			return !closed;
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}